@@ -2,9 +2,13 @@
 
 package ca.fuwafuwa.kaku
 
-// Thanks to the fact that SqliteOpenHelper.onUpgrade() doesn't work (due to multi-threading and getDao() being called before onUpgrade()),
-// we version/upgrade the DBs by changing the name. Lol. Should probably fix this if this becomes an issue in the future.
+// A new dictionary release gets new file names, so the old files are left behind and the new ones copied from assets.
+// Schema changes within a release bump JmDatabaseHelper.DATABASE_VERSION and migrate in its onUpgrade() instead.
 const val JMDICT_DATABASE_NAME = "DB_KakuDict-02-16-2019.db"
+const val JMDICT_BINARY_NAME = "DB_KakuDict-02-16-2019.bin"
+const val JMDICT_KEY_FILTER_NAME = "DB_KakuDict-02-16-2019.bloom"
+const val JMDICT_LOOKUP_BOUNDS_NAME = "DB_KakuDict-02-16-2019.bounds"
+const val KANJIDIC_TABLE_NAME = "DB_KakuKanji-02-16-2019.bin"
 const val TESS_FOLDER_NAME = "tessdata"
 const val TESS_DATA_NAME = "jpn.traineddata"
 const val SCREENSHOT_FOLDER_NAME = "screenshots"
@@ -22,6 +26,9 @@ const val KAKU_PREF_INSTANT_MODE = "InstantMode"
 const val KAKU_PREF_FIRST_LAUNCH = "FirstLaunch"
 const val KAKU_PREF_TIMES_LAUNCHED = "TimesLaunched"
 const val KAKU_PREF_PLAY_STORE_RATED = "PlayStoreRated"
+const val KAKU_PREF_LOOKUP_ENGINE = "LookupEngine"
+const val KAKU_PREF_DEINFLECTION_STRATEGY = "DeinflectionStrategy"
+const val KAKU_PREF_OCR_CHOICE_LOOKUP = "OcrChoiceLookup"
 
 const val EXTRA_PROJECTION_RESULT_CODE = "ca.fuwafuwa.kaku.PROJECTION_RESULT_CODE"
 const val EXTRA_PROJECTION_RESULT_INTENT = "ca.fuwafuwa.kaku.PROJECTION_RESULT_INTENT"
@@ -42,4 +49,7 @@ const val REQUEST_SERVICE_TOGGLE_IMAGE_PREVIEW = 300
 const val REQUEST_SERVICE_TOGGLE_PAGE_MODE = 400
 const val REQUEST_SERVICE_TOGGLE_INSTANT_MODE = 500
 const val REQUEST_SERVICE_SHUTDOWN = 600
-const val REQUEST_SERVICE_TOGGLE_SHOW_HIDE = 700
\ No newline at end of file
+const val REQUEST_SERVICE_TOGGLE_SHOW_HIDE = 700
+const val REQUEST_SERVICE_CYCLE_LOOKUP_ENGINE = 800
+const val REQUEST_SERVICE_CYCLE_DEINFLECTION_STRATEGY = 900
+const val REQUEST_SERVICE_TOGGLE_OCR_CHOICE_LOOKUP = 1000
\ No newline at end of file
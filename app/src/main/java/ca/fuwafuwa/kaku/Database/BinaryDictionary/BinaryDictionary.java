@@ -0,0 +1,298 @@
+package ca.fuwafuwa.kaku.Database.BinaryDictionary;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import ca.fuwafuwa.kaku.Constants;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryOptimized;
+
+/**
+ * Read-only, memory-mapped dictionary written by {@link BinaryDictionaryWriter}. Keys are compared straight out of the
+ * mapped file and records are only decoded into Strings when a field is actually read, so a lookup that doesn't match
+ * anything allocates nothing.
+ *
+ * Only absolute reads are used on the buffer, so one instance can be shared between threads.
+ */
+public class BinaryDictionary {
+
+    private static final String TAG = BinaryDictionary.class.getName();
+
+    static final int MAGIC = 0x4B414B55; // "KAKU"
+    static final int VERSION = 5;
+
+    static final int FLAG_PRIMARY_ENTRY = 1;
+    static final int FLAG_ONLY_KANA = 2;
+
+    // Bits 2-3 of the flags are EntryOptimized.getDictionaryId(), so ranking never decodes the dictionary field
+    static final int FLAG_DICTIONARY_ID_SHIFT = 2;
+    static final int FLAG_DICTIONARY_ID_MASK = 3;
+
+    static final int FIELD_READINGS = 0;
+    static final int FIELD_MEANINGS = 1;
+    static final int FIELD_POS = 2;
+    static final int FIELD_PRIORITIES = 3;
+    static final int FIELD_DICTIONARY = 4;
+    static final int FIELD_COUNT = 5;
+
+    private static final int HEADER_SIZE = 5 * 4;
+
+    private static BinaryDictionary instance;
+
+    private ByteBuffer mBuffer;
+    private int mKeyCount;
+    private int mEntryCount;
+    private int mKeyCharOffsetsPos;
+    private int mKeyEntryStartsPos;
+    private int mRecordOffsetsPos;
+    private int mKeyCharsPos;
+    private int mRecordsPos;
+
+    private BinaryDictionary(ByteBuffer buffer) throws IOException {
+
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION){
+            throw new IOException("Not a Kaku binary dictionary, or the wrong version of one");
+        }
+
+        mBuffer = buffer;
+        mKeyCount = buffer.getInt(8);
+        mEntryCount = buffer.getInt(12);
+        int keyCharCount = buffer.getInt(16);
+
+        mKeyCharOffsetsPos = HEADER_SIZE;
+        mKeyEntryStartsPos = mKeyCharOffsetsPos + 4 * (mKeyCount + 1);
+        mRecordOffsetsPos = mKeyEntryStartsPos + 4 * (mKeyCount + 1);
+        mKeyCharsPos = mRecordOffsetsPos + 4 * mEntryCount;
+        mRecordsPos = mKeyCharsPos + 2 * keyCharCount;
+    }
+
+    public static BinaryDictionary open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")){
+            // The mapping stays valid after the channel is closed
+            FileChannel channel = raf.getChannel();
+            return new BinaryDictionary(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * @return The dictionary in filesDir, or null if it hasn't been compiled/copied there
+     */
+    public static synchronized BinaryDictionary instance(Context context) {
+
+        if (instance == null){
+
+            File file = new File(context.getFilesDir(), Constants.JMDICT_BINARY_NAME);
+            if (!file.exists()){
+                return null;
+            }
+
+            try {
+                long startTime = System.currentTimeMillis();
+                instance = open(file);
+                Log.d(TAG, String.format("Mapped %d keys (%d entries) in %dms", instance.getKeyCount(), instance.getEntryCount(), System.currentTimeMillis() - startTime));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        return instance;
+    }
+
+    /**
+     * Drops the mapped dictionary, the file is mapped again on the next {@link #instance(Context)}. Entries already
+     * handed out keep the old mapping alive, so the file has to be replaced (not rewritten in place) while it's in use.
+     */
+    public static synchronized void clear() {
+        instance = null;
+    }
+
+    public int getKeyCount() {
+        return mKeyCount;
+    }
+
+    public int getEntryCount() {
+        return mEntryCount;
+    }
+
+    /**
+     * @return All entries whose kanji is exactly key, in the order they were compiled
+     */
+    public List<EntryOptimized> find(CharSequence key) {
+
+        int keyIndex = findKey(key);
+        if (keyIndex < 0){
+            return Collections.emptyList();
+        }
+
+        return getEntries(keyIndex);
+    }
+
+    /**
+     * @return All entries for the key at keyIndex, in the order they were compiled
+     */
+    public List<EntryOptimized> getEntries(int keyIndex) {
+
+        int start = mBuffer.getInt(mKeyEntryStartsPos + 4 * keyIndex);
+        int end = mBuffer.getInt(mKeyEntryStartsPos + 4 * (keyIndex + 1));
+        String kanji = getKey(keyIndex);
+
+        List<EntryOptimized> entries = new ArrayList<>(end - start);
+        for (int i = start; i < end; i++){
+            entries.add(new MappedEntryOptimized(this, i, kanji));
+        }
+        return entries;
+    }
+
+    public String getKey(int keyIndex) {
+
+        int start = mBuffer.getInt(mKeyCharOffsetsPos + 4 * keyIndex);
+        int length = mBuffer.getInt(mKeyCharOffsetsPos + 4 * (keyIndex + 1)) - start;
+        int charPos = mKeyCharsPos + 2 * start;
+
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++){
+            chars[i] = mBuffer.getChar(charPos + 2 * i);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Binary search over the sorted keys, comparing chars in place
+     *
+     * @return Index of key, or -1 if it isn't in the dictionary
+     */
+    public int findKey(CharSequence key) {
+
+        int low = 0;
+        int high = mKeyCount - 1;
+
+        while (low <= high){
+            int mid = (low + high) >>> 1;
+            int cmp = compareKey(mid, key);
+
+            if (cmp < 0){
+                low = mid + 1;
+            }
+            else if (cmp > 0){
+                high = mid - 1;
+            }
+            else {
+                return mid;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Binary search for the first key that isn't less than prefix, keys starting with prefix sort right from there
+     *
+     * @return True if any key starts with prefix
+     */
+    public boolean hasKeyWithPrefix(CharSequence prefix) {
+
+        int low = 0;
+        int high = mKeyCount;
+
+        while (low < high){
+            int mid = (low + high) >>> 1;
+            if (compareKey(mid, prefix) < 0){
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+
+        return low < mKeyCount && keyStartsWith(low, prefix);
+    }
+
+    private boolean keyStartsWith(int keyIndex, CharSequence prefix) {
+
+        int start = mBuffer.getInt(mKeyCharOffsetsPos + 4 * keyIndex);
+        int length = mBuffer.getInt(mKeyCharOffsetsPos + 4 * (keyIndex + 1)) - start;
+        if (length < prefix.length()){
+            return false;
+        }
+
+        int charPos = mKeyCharsPos + 2 * start;
+        for (int i = 0; i < prefix.length(); i++){
+            if (mBuffer.getChar(charPos + 2 * i) != prefix.charAt(i)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Same ordering as String.compareTo, which is what the writer sorted with
+     */
+    private int compareKey(int keyIndex, CharSequence key) {
+
+        int start = mBuffer.getInt(mKeyCharOffsetsPos + 4 * keyIndex);
+        int length = mBuffer.getInt(mKeyCharOffsetsPos + 4 * (keyIndex + 1)) - start;
+        int minLength = Math.min(length, key.length());
+        int charPos = mKeyCharsPos + 2 * start;
+
+        for (int i = 0; i < minLength; i++){
+            char c = mBuffer.getChar(charPos + 2 * i);
+            if (c != key.charAt(i)){
+                return c - key.charAt(i);
+            }
+        }
+
+        return length - key.length();
+    }
+
+    int getFlags(int recordIndex) {
+        return mBuffer.get(getRecordPos(recordIndex));
+    }
+
+    /**
+     * @return Id of the entry in the DB it was compiled from, or null
+     */
+    Integer getEntryId(int recordIndex) {
+        int id = mBuffer.getInt(getRecordPos(recordIndex) + 1);
+        return id < 0 ? null : id;
+    }
+
+    int getPosMask(int recordIndex) {
+        return mBuffer.getInt(getRecordPos(recordIndex) + 1 + 4);
+    }
+
+    int getPriorityRank(int recordIndex) {
+        return mBuffer.getInt(getRecordPos(recordIndex) + 1 + 4 + 4);
+    }
+
+    String getField(int recordIndex, int field) {
+
+        int pos = getRecordPos(recordIndex) + 1 + 4 + 4 + 4;
+        for (int i = 0; i < field; i++){
+            pos += 4 + 2 * Math.max(mBuffer.getInt(pos), 0);
+        }
+
+        int length = mBuffer.getInt(pos);
+        if (length < 0){
+            return null;
+        }
+
+        char[] chars = new char[length];
+        pos += 4;
+        for (int i = 0; i < length; i++){
+            chars[i] = mBuffer.getChar(pos + 2 * i);
+        }
+        return new String(chars);
+    }
+
+    private int getRecordPos(int recordIndex) {
+        return mRecordsPos + mBuffer.getInt(mRecordOffsetsPos + 4 * recordIndex);
+    }
+}
@@ -0,0 +1,192 @@
+package ca.fuwafuwa.kaku.Database.BinaryDictionary;
+
+import com.j256.ormlite.dao.CloseableIterator;
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.dao.GenericRawResults;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import ca.fuwafuwa.kaku.Constants;
+import ca.fuwafuwa.kaku.Database.IDatabaseHelper;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryOptimized;
+
+/**
+ * Compiles the EntryOptimized rows of a finished DB into the file {@link BinaryDictionary} maps. Entries for the same
+ * key keep the order of their ids.
+ *
+ * Rows are streamed from the DB twice, so memory doesn't grow with the size of the entries: once for the keys, once
+ * for the records, which go through a temp file next to the output.
+ *
+ * Layout, everything big-endian:
+ *
+ *   header          int magic, int version, int keyCount, int entryCount, int keyCharCount
+ *   keyCharOffsets  int[keyCount + 1], start of each key in keyChars
+ *   keyEntryStarts  int[keyCount + 1], first record of each key
+ *   recordOffsets   int[entryCount], start of each record relative to the records section
+ *   keyChars        char[keyCharCount], all keys sorted by String.compareTo
+ *   records         byte flags (primary entry, only kana, dictionary id), int id, int posMask, int priorityRank, then readings, meanings, pos, priorities,
+ *                   dictionary as (int length, char[length]), length -1 for null
+ */
+public class BinaryDictionaryWriter {
+
+    private static class KeyRow {
+
+        String kanji;
+        int id;
+
+        KeyRow(String kanji, int id){
+            this.kanji = kanji;
+            this.id = id;
+        }
+    }
+
+    private Dao<EntryOptimized, Integer> mEntryDao;
+
+    public BinaryDictionaryWriter(IDatabaseHelper dbHelper) throws SQLException {
+        mEntryDao = dbHelper.getDbDao(EntryOptimized.class);
+    }
+
+    public void writeTo(File file) throws SQLException, IOException {
+
+        KeyRow[] keyRows = readKeys();
+
+        // SQLite orders by UTF-8 bytes, which puts surrogate pairs after U+E000-U+FFFF where String.compareTo puts them
+        // before. The rows are already almost in order, and the sort is stable, so ids stay in order within a key.
+        Arrays.sort(keyRows, new Comparator<KeyRow>() {
+            @Override
+            public int compare(KeyRow o1, KeyRow o2) {
+                return o1.kanji.compareTo(o2.kanji);
+            }
+        });
+
+        int maxId = 0;
+        for (KeyRow keyRow : keyRows){
+            maxId = Math.max(maxId, keyRow.id);
+        }
+
+        // Records are written in id order, recordOffsets puts them back in key order
+        int[] recordIndexes = new int[maxId + 1];
+        Arrays.fill(recordIndexes, -1);
+
+        ByteArrayOutputStream keyCharOffsetBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream keyEntryStartBytes = new ByteArrayOutputStream();
+        DataOutputStream keyCharOffsets = new DataOutputStream(keyCharOffsetBytes);
+        DataOutputStream keyEntryStarts = new DataOutputStream(keyEntryStartBytes);
+        StringBuilder keyChars = new StringBuilder();
+        int keyCount = 0;
+
+        for (int i = 0; i < keyRows.length; i++){
+            if (i == 0 || !keyRows[i - 1].kanji.equals(keyRows[i].kanji)){
+                keyCharOffsets.writeInt(keyChars.length());
+                keyEntryStarts.writeInt(i);
+                keyChars.append(keyRows[i].kanji);
+                keyCount++;
+            }
+            recordIndexes[keyRows[i].id] = i;
+        }
+        keyCharOffsets.writeInt(keyChars.length());
+        keyEntryStarts.writeInt(keyRows.length);
+
+        int entryCount = keyRows.length;
+        keyRows = null;
+
+        int[] recordOffsets = new int[entryCount];
+        File recordsFile = new File(file.getPath() + ".records");
+        try {
+            writeRecords(recordsFile, recordIndexes, recordOffsets);
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))){
+                out.writeInt(BinaryDictionary.MAGIC);
+                out.writeInt(BinaryDictionary.VERSION);
+                out.writeInt(keyCount);
+                out.writeInt(entryCount);
+                out.writeInt(keyChars.length());
+
+                keyCharOffsetBytes.writeTo(out);
+                keyEntryStartBytes.writeTo(out);
+                for (int recordOffset : recordOffsets){
+                    out.writeInt(recordOffset);
+                }
+                out.writeChars(keyChars.toString());
+
+                try (InputStream records = new BufferedInputStream(new FileInputStream(recordsFile))){
+                    byte[] buffer = new byte[64 * 1024];
+                    for (int read = records.read(buffer); read > 0; read = records.read(buffer)){
+                        out.write(buffer, 0, read);
+                    }
+                }
+            }
+        } finally {
+            recordsFile.delete();
+        }
+    }
+
+    private KeyRow[] readKeys() throws SQLException, IOException {
+
+        int rowCount = (int) mEntryDao.queryRawValue(String.format("SELECT COUNT(*) FROM %s WHERE kanji IS NOT NULL", EntryOptimized.TABLE_NAME));
+        KeyRow[] keyRows = new KeyRow[rowCount];
+
+        GenericRawResults<String[]> rows = mEntryDao.queryRaw(String.format("SELECT kanji, id FROM %s WHERE kanji IS NOT NULL ORDER BY kanji, id", EntryOptimized.TABLE_NAME));
+        try {
+            int i = 0;
+            for (String[] row : rows){
+                keyRows[i++] = new KeyRow(row[0], Integer.parseInt(row[1]));
+            }
+        } finally {
+            rows.close();
+        }
+
+        return keyRows;
+    }
+
+    private void writeRecords(File recordsFile, int[] recordIndexes, int[] recordOffsets) throws SQLException, IOException {
+
+        CloseableIterator<EntryOptimized> entries = mEntryDao.iterator(mEntryDao.queryBuilder().orderBy("id", true).prepare());
+        try (DataOutputStream records = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(recordsFile)))){
+            while (entries.hasNext()){
+                EntryOptimized entry = entries.next();
+                if (entry.getKanji() == null){
+                    continue;
+                }
+
+                // Not stored, JmParser only leaves readings empty for entries that have no kanji
+                entry.setOnlyKana(Constants.DB_JMDICT_NAME.equals(entry.getDictionary()) && entry.getReadings().isEmpty());
+
+                recordOffsets[recordIndexes[entry.getId()]] = records.size();
+                records.writeByte((entry.isPrimaryEntry() ? BinaryDictionary.FLAG_PRIMARY_ENTRY : 0) |
+                                  (entry.isOnlyKana() ? BinaryDictionary.FLAG_ONLY_KANA : 0) |
+                                  (entry.getDictionaryId() << BinaryDictionary.FLAG_DICTIONARY_ID_SHIFT));
+                records.writeInt(entry.getId());
+                records.writeInt(entry.getPosMask());
+                records.writeInt(entry.getPriorityRank());
+                writeString(records, entry.getReadings());
+                writeString(records, entry.getMeanings());
+                writeString(records, entry.getPos());
+                writeString(records, entry.getPriorities());
+                writeString(records, entry.getDictionary());
+            }
+        } finally {
+            entries.closeQuietly();
+        }
+    }
+
+    private void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null){
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(s.length());
+        out.writeChars(s);
+    }
+}
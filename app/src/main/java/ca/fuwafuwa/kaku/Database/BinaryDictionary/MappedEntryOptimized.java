@@ -0,0 +1,126 @@
+package ca.fuwafuwa.kaku.Database.BinaryDictionary;
+
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryOptimized;
+
+/**
+ * EntryOptimized backed by a record in a {@link BinaryDictionary}. Each field is decoded the first time it's read,
+ * so entries that get filtered out or never displayed never have their meanings turned into Strings.
+ */
+class MappedEntryOptimized extends EntryOptimized {
+
+    private BinaryDictionary mDictionary;
+    private int mRecordIndex;
+
+    private String[] mFields = new String[BinaryDictionary.FIELD_COUNT];
+    private boolean[] mDecoded = new boolean[BinaryDictionary.FIELD_COUNT];
+    private int mFlags = -1;
+
+    MappedEntryOptimized(BinaryDictionary dictionary, int recordIndex, String kanji) {
+        mDictionary = dictionary;
+        mRecordIndex = recordIndex;
+        setKanji(kanji);
+    }
+
+    @Override
+    public Integer getId() {
+        return mDictionary.getEntryId(mRecordIndex);
+    }
+
+    @Override
+    public String getReadings() {
+        String readings = getField(BinaryDictionary.FIELD_READINGS);
+        return readings == null ? "" : readings;
+    }
+
+    @Override
+    public void setReadings(String readings) {
+        setField(BinaryDictionary.FIELD_READINGS, readings);
+    }
+
+    @Override
+    public String getMeanings() {
+        return getField(BinaryDictionary.FIELD_MEANINGS);
+    }
+
+    @Override
+    public void setMeanings(String meanings) {
+        setField(BinaryDictionary.FIELD_MEANINGS, meanings);
+    }
+
+    @Override
+    public String getPos() {
+        String pos = getField(BinaryDictionary.FIELD_POS);
+        return pos == null ? "" : pos;
+    }
+
+    @Override
+    public void setPos(String pos) {
+        setField(BinaryDictionary.FIELD_POS, pos);
+    }
+
+    @Override
+    public int getPosMask() {
+        return mDictionary.getPosMask(mRecordIndex);
+    }
+
+    @Override
+    public String getPriorities() {
+        String priorities = getField(BinaryDictionary.FIELD_PRIORITIES);
+        return priorities == null ? "" : priorities;
+    }
+
+    @Override
+    public void setPriorities(String priorities) {
+        setField(BinaryDictionary.FIELD_PRIORITIES, priorities);
+    }
+
+    @Override
+    public int getPriorityRank() {
+        return mDictionary.getPriorityRank(mRecordIndex);
+    }
+
+    @Override
+    public String getDictionary() {
+        return getField(BinaryDictionary.FIELD_DICTIONARY);
+    }
+
+    @Override
+    public void setDictionary(String dictionary) {
+        setField(BinaryDictionary.FIELD_DICTIONARY, dictionary);
+    }
+
+    @Override
+    public int getDictionaryId() {
+        return (getFlags() >> BinaryDictionary.FLAG_DICTIONARY_ID_SHIFT) & BinaryDictionary.FLAG_DICTIONARY_ID_MASK;
+    }
+
+    @Override
+    public boolean isPrimaryEntry() {
+        return (getFlags() & BinaryDictionary.FLAG_PRIMARY_ENTRY) != 0;
+    }
+
+    @Override
+    public boolean isOnlyKana() {
+        return (getFlags() & BinaryDictionary.FLAG_ONLY_KANA) != 0;
+    }
+
+    private int getFlags() {
+        if (mFlags < 0){
+            mFlags = mDictionary.getFlags(mRecordIndex);
+        }
+        return mFlags;
+    }
+
+    private String getField(int field) {
+        if (!mDecoded[field]){
+            mFields[field] = mDictionary.getField(mRecordIndex, field);
+            mDecoded[field] = true;
+        }
+        return mFields[field];
+    }
+
+    private void setField(int field, String value) {
+        mFields[field] = value;
+        mDecoded[field] = true;
+    }
+}
@@ -0,0 +1,106 @@
+package ca.fuwafuwa.kaku.Database.JmDictDatabase;
+
+import com.google.common.base.Joiner;
+import com.j256.ormlite.dao.Dao;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Inserts rows into one table during a dictionary load, instead of a Dao.create per row. Rows are buffered and
+ * inserted as many at a time as fit in one statement with one multi-row INSERT, the same SQL every time so SQLite keeps
+ * it prepared, and without going through ORMLite's reflective mapping.
+ *
+ * Columns that aren't given, like a generated id, get their default. Call {@link #flush()} once the last row is in.
+ */
+public class BulkInserter {
+
+    // SQLite allows 999 parameters per statement
+    private static final int MAX_PARAMETERS = 999;
+
+    private Dao<?, Integer> mDao;
+    private String mTable;
+    private String[] mColumns;
+    private int mBatchSize;
+    private String mBatchInsert;
+    private List<String> mBatchArgs;
+    private int mBatchCount = 0;
+
+    private int mRowCount = 0;
+    private long mInsertNanos = 0;
+
+    public BulkInserter(Dao<?, Integer> dao, String table, String... columns) {
+        mDao = dao;
+        mTable = table;
+        mColumns = columns;
+        mBatchSize = MAX_PARAMETERS / columns.length;
+        mBatchInsert = getInsertSql(mBatchSize);
+        mBatchArgs = new ArrayList<>(mBatchSize * columns.length);
+    }
+
+    /**
+     * Buffers a row, values are in the order of the columns. The row is inserted with the rest of its batch.
+     */
+    public void insert(String... values) throws SQLException {
+
+        Collections.addAll(mBatchArgs, values);
+
+        if (++mBatchCount == mBatchSize){
+            flush(mBatchInsert);
+        }
+    }
+
+    /**
+     * Inserts what's left in the buffer
+     */
+    public void flush() throws SQLException {
+        if (mBatchCount > 0){
+            flush(getInsertSql(mBatchCount));
+        }
+    }
+
+    public int getRowCount() {
+        return mRowCount;
+    }
+
+    public long getInsertNanos() {
+        return mInsertNanos;
+    }
+
+    /**
+     * Drops every index on table, building them again in one go once a load is done is much faster than keeping them
+     * up to date row by row
+     *
+     * @return The SQL to create them again with
+     */
+    public static List<String> dropIndexes(Dao<?, Integer> dao, String table) throws SQLException {
+
+        List<String> indexSql = new ArrayList<>();
+        List<String[]> indexes = dao.queryRaw("SELECT name, sql FROM sqlite_master WHERE type = 'index' AND tbl_name = ? AND sql IS NOT NULL",
+                table).getResults();
+        for (String[] index : indexes){
+            dao.executeRaw(String.format("DROP INDEX %s", index[0]));
+            indexSql.add(index[1]);
+        }
+        return indexSql;
+    }
+
+    private void flush(String insertSql) throws SQLException {
+
+        long startTime = System.nanoTime();
+        mDao.executeRaw(insertSql, mBatchArgs.toArray(new String[mBatchArgs.size()]));
+        mInsertNanos += System.nanoTime() - startTime;
+
+        mRowCount += mBatchCount;
+        mBatchArgs.clear();
+        mBatchCount = 0;
+    }
+
+    private String getInsertSql(int rowCount) {
+        String row = String.format("(%s)", Joiner.on(", ").join(Collections.nCopies(mColumns.length, "?")));
+        return String.format("INSERT INTO %s (%s) VALUES %s",
+                mTable, Joiner.on(", ").join(mColumns), Joiner.on(", ").join(Collections.nCopies(rowCount, row)));
+    }
+}
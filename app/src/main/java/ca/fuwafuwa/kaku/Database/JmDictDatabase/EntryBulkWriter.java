@@ -0,0 +1,104 @@
+package ca.fuwafuwa.kaku.Database.JmDictDatabase;
+
+import android.util.Log;
+
+import com.j256.ormlite.dao.Dao;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import ca.fuwafuwa.kaku.Database.IDatabaseHelper;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryOptimized;
+
+/**
+ * Inserts the EntryOptimized rows of a dictionary load through a BulkInserter, instead of a Dao.create per row.
+ *
+ * Ids are handed out here when a row is buffered, so EntryWriters that need the id can run right away. A full build
+ * drops the indexes of the table with {@link #dropIndexes(IDatabaseHelper)} once before loading every dictionary and
+ * builds them again with {@link #createIndexes(IDatabaseHelper, List)} once after.
+ */
+public class EntryBulkWriter {
+
+    private static final String TAG = EntryBulkWriter.class.getName();
+
+    private static final String[] COLUMNS = { "id", "kanji", "readings", "meanings", "pos", EntryOptimized.POS_MASK_COLUMN,
+                                              "priorities", EntryOptimized.PRIORITY_RANK_COLUMN, "dictionary", "primaryEntry",
+                                              EntryOptimized.ENT_SEQ_COLUMN, EntryOptimized.CONTENT_HASH_COLUMN };
+
+    private Dao<EntryOptimized, Integer> mEntryDao;
+    private BulkInserter mInserter;
+
+    private int mNextId;
+
+    public EntryBulkWriter(IDatabaseHelper dbHelper) throws SQLException {
+        mEntryDao = dbHelper.getDbDao(EntryOptimized.class);
+    }
+
+    /**
+     * Ids carry on from the rows already there, KANJIDIC is loaded into the same table after JMdict
+     */
+    public void begin() throws SQLException {
+        mNextId = (int) mEntryDao.queryRawValue(String.format("SELECT MAX(id) FROM %s", EntryOptimized.TABLE_NAME)) + 1;
+        mInserter = new BulkInserter(mEntryDao, EntryOptimized.TABLE_NAME, COLUMNS);
+    }
+
+    /**
+     * Gives entry its id and buffers it, the row is inserted with the rest of its batch
+     */
+    public void write(EntryOptimized entry) throws SQLException {
+
+        entry.setId(mNextId++);
+
+        mInserter.insert(String.valueOf(entry.getId()),
+                         entry.getKanji(),
+                         entry.getReadings(),
+                         entry.getMeanings(),
+                         entry.getPos(),
+                         String.valueOf(entry.getPosMask()),
+                         entry.getPriorities(),
+                         String.valueOf(entry.getPriorityRank()),
+                         entry.getDictionary(),
+                         entry.isPrimaryEntry() ? "1" : "0",
+                         String.valueOf(entry.getEntSeq()),
+                         String.valueOf(entry.getContentHash()));
+    }
+
+    /**
+     * @return Id the next row written gets
+     */
+    public int getNextId() {
+        return mNextId;
+    }
+
+    /**
+     * Inserts what's left in the buffer
+     */
+    public void finish() throws SQLException {
+
+        mInserter.flush();
+
+        Log.d(TAG, String.format("Inserted %d entries in %dms", mInserter.getRowCount(), mInserter.getInsertNanos() / 1000000));
+    }
+
+    /**
+     * Drops the indexes of the EntryOptimized table, for loading every dictionary of a full build into it
+     *
+     * @return The SQL to create them again with in {@link #createIndexes(IDatabaseHelper, List)}
+     */
+    public static List<String> dropIndexes(IDatabaseHelper dbHelper) throws SQLException {
+        Dao<EntryOptimized, Integer> entryDao = dbHelper.getDbDao(EntryOptimized.class);
+        return BulkInserter.dropIndexes(entryDao, EntryOptimized.TABLE_NAME);
+    }
+
+    public static void createIndexes(IDatabaseHelper dbHelper, List<String> indexSql) throws SQLException {
+
+        Dao<EntryOptimized, Integer> entryDao = dbHelper.getDbDao(EntryOptimized.class);
+
+        long startTime = System.nanoTime();
+        for (String sql : indexSql){
+            entryDao.executeRaw(sql);
+        }
+
+        Log.d(TAG, String.format("Indexed entries in %dms", (System.nanoTime() - startTime) / 1000000));
+    }
+}
@@ -0,0 +1,96 @@
+package ca.fuwafuwa.kaku.Database.JmDictDatabase;
+
+import android.util.Log;
+
+import com.j256.ormlite.dao.Dao;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import ca.fuwafuwa.kaku.Constants;
+import ca.fuwafuwa.kaku.Database.IDatabaseHelper;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryOptimized;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryReading;
+import ca.fuwafuwa.kaku.XmlParsers.Interfaces.EntryWriter;
+
+/**
+ * Writes the EntryReading rows of each JMdict entry the parser creates through a BulkInserter, needs the entry to have
+ * its id already. KANJIDIC readings are left out, they'd make every kana match dozens of single kanji.
+ *
+ * The readingKey index is dropped in {@link #begin()} and built again in {@link #finish()}, unless the writer only adds
+ * a few rows to a full table.
+ */
+public class EntryReadingWriter implements EntryWriter {
+
+    private static final String TAG = EntryReadingWriter.class.getName();
+
+    private Dao<EntryReading, Integer> mEntryReadingDao;
+    private boolean mDropIndexes;
+    private BulkInserter mInserter;
+    private List<String> mIndexSql = new ArrayList<>();
+
+    public EntryReadingWriter(IDatabaseHelper dbHelper) throws SQLException {
+        this(dbHelper, true);
+    }
+
+    /**
+     * @param dropIndexes False to keep the index up to date row by row instead, cheaper when only a few rows are added
+     *                    to a full table
+     */
+    public EntryReadingWriter(IDatabaseHelper dbHelper, boolean dropIndexes) throws SQLException {
+        mEntryReadingDao = dbHelper.getDbDao(EntryReading.class);
+        mDropIndexes = dropIndexes;
+    }
+
+    @Override
+    public void begin() throws IOException {
+
+        mInserter = new BulkInserter(mEntryReadingDao, EntryReading.TABLE_NAME, "readingKey", "entryId");
+
+        try {
+            mIndexSql = mDropIndexes ? BulkInserter.dropIndexes(mEntryReadingDao, EntryReading.TABLE_NAME) : new ArrayList<String>();
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void write(EntryOptimized entry) throws IOException {
+
+        if (entry.getId() == null || !Constants.DB_JMDICT_NAME.equals(entry.getDictionary())){
+            return;
+        }
+
+        try {
+            for (String readingKey : EntryReading.getReadingKeys(entry.getKanji(), entry.getReadings())){
+                mInserter.insert(readingKey, String.valueOf(entry.getId()));
+            }
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Inserts what's left in the buffer and builds the index dropped in {@link #begin()}
+     */
+    @Override
+    public void finish() throws IOException {
+
+        try {
+            mInserter.flush();
+
+            long indexStart = System.nanoTime();
+            for (String indexSql : mIndexSql){
+                mEntryReadingDao.executeRaw(indexSql);
+            }
+            mIndexSql.clear();
+
+            Log.d(TAG, String.format("Inserted %d readings in %dms, indexed in %dms",
+                    mInserter.getRowCount(), mInserter.getInsertNanos() / 1000000, (System.nanoTime() - indexStart) / 1000000));
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+}
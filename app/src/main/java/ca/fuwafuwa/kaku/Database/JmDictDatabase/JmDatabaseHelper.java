@@ -1,7 +1,9 @@
 package ca.fuwafuwa.kaku.Database.JmDictDatabase;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
 
 import com.j256.ormlite.dao.Dao;
@@ -12,8 +14,11 @@ import java.sql.SQLException;
 
 import ca.fuwafuwa.kaku.Constants;
 import ca.fuwafuwa.kaku.Database.DatabaseHelper;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.Conjugation;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.ConjugationChain;
 import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.Entry;
 import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryOptimized;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryReading;
 import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.Kanji;
 import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.KanjiIrregularity;
 import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.KanjiPriority;
@@ -33,7 +38,6 @@ import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.Reading;
 import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.ReadingIrregularity;
 import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.ReadingPriority;
 import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.ReadingRestriction;
-import ca.fuwafuwa.kaku.Exceptions.NotImplementedException;
 import ca.fuwafuwa.kaku.KakuTools;
 
 /**
@@ -44,7 +48,7 @@ public class JmDatabaseHelper extends DatabaseHelper {
     private static final String TAG = JmDatabaseHelper.class.getName();
 
     private static final String DATABASE_NAME = Constants.JMDICT_DATABASE_NAME;
-    private static final int DATABASE_VERSION = 1;
+    public static final int DATABASE_VERSION = 2;
 
     private static JmDatabaseHelper instance;
 
@@ -68,6 +72,9 @@ public class JmDatabaseHelper extends DatabaseHelper {
         Log.d(TAG, "JmDatabaseHelper onCreate");
         try {
             TableUtils.createTable(connectionSource, EntryOptimized.class);
+            TableUtils.createTable(connectionSource, Conjugation.class);
+            TableUtils.createTable(connectionSource, ConjugationChain.class);
+            TableUtils.createTable(connectionSource, EntryReading.class);
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -75,8 +82,125 @@ public class JmDatabaseHelper extends DatabaseHelper {
 
     @Override
     public void onUpgrade(SQLiteDatabase database, ConnectionSource connectionSource, int oldVersion, int newVersion) {
-        // Can't use onUpgrade, because getDbDao() will sometimes run first due to being on another thread, opening a DB connection and causing issues when we try to delete the DB
-        throw new NotImplementedException();
+        // Runs in the transaction getWritableDatabase() opens, a getDbDao() from another thread waits for it. Only
+        // migrate in place here, the DB can't be deleted while it's being opened.
+        Log.d(TAG, String.format("JmDatabaseHelper onUpgrade %d -> %d", oldVersion, newVersion));
+        upgrade(database, oldVersion);
+    }
+
+    /**
+     * Migrates the tables in database from oldVersion to DATABASE_VERSION. Kd2DatabaseHelper opens the same file and
+     * upgrades it through here too, whichever helper opens it first.
+     */
+    public static void upgrade(SQLiteDatabase database, int oldVersion) {
+        if (oldVersion < 2){
+            upgradeToVersion2(database);
+        }
+    }
+
+    /**
+     * Indexes, columns and tables added after version 1 shipped. Each step checks whether it's still needed, DBs built
+     * on a device by a newer ParserRunnable can already have some of them.
+     */
+    private static void upgradeToVersion2(SQLiteDatabase database) {
+        // DBs generated before EntryOptimized.kanji was indexed don't have the index yet, every lookup would be a full table scan
+        database.execSQL(String.format("CREATE INDEX IF NOT EXISTS %s ON %s (kanji)", EntryOptimized.KANJI_INDEX_NAME, EntryOptimized.TABLE_NAME));
+
+        // posMask was added after the DB shipped, compute it from pos once
+        if (!hasColumn(database, EntryOptimized.TABLE_NAME, EntryOptimized.POS_MASK_COLUMN)){
+            Log.d(TAG, "Adding posMask to " + EntryOptimized.TABLE_NAME);
+            database.execSQL(String.format("ALTER TABLE %s ADD COLUMN %s INTEGER NOT NULL DEFAULT 0", EntryOptimized.TABLE_NAME, EntryOptimized.POS_MASK_COLUMN));
+            database.execSQL(String.format("UPDATE %s SET %s = %s", EntryOptimized.TABLE_NAME, EntryOptimized.POS_MASK_COLUMN, EntryOptimized.getPosMaskSql()));
+        }
+
+        // Same for priorityRank, parsing the priorities string can't be done in SQL so it's filled in row by row
+        if (!hasColumn(database, EntryOptimized.TABLE_NAME, EntryOptimized.PRIORITY_RANK_COLUMN)){
+            Log.d(TAG, "Adding priorityRank to " + EntryOptimized.TABLE_NAME);
+            database.execSQL(String.format("ALTER TABLE %s ADD COLUMN %s INTEGER NOT NULL DEFAULT %d", EntryOptimized.TABLE_NAME, EntryOptimized.PRIORITY_RANK_COLUMN, EntryOptimized.NO_PRIORITY_RANK));
+            backfillPriorityRank(database);
+        }
+
+        // entSeq and contentHash can't be recovered from the rows, they stay 0 and the first JmUpdater run replaces
+        // every JMdict row that has them unset
+        if (!hasColumn(database, EntryOptimized.TABLE_NAME, EntryOptimized.ENT_SEQ_COLUMN)){
+            Log.d(TAG, "Adding entSeq and contentHash to " + EntryOptimized.TABLE_NAME);
+            database.execSQL(String.format("ALTER TABLE %s ADD COLUMN %s INTEGER NOT NULL DEFAULT 0", EntryOptimized.TABLE_NAME, EntryOptimized.ENT_SEQ_COLUMN));
+            database.execSQL(String.format("ALTER TABLE %s ADD COLUMN %s BIGINT NOT NULL DEFAULT 0", EntryOptimized.TABLE_NAME, EntryOptimized.CONTENT_HASH_COLUMN));
+        }
+
+        // Reading keys were added after the DB shipped, build them from the readings of every JMdict entry once
+        if (!hasTable(database, EntryReading.TABLE_NAME)){
+            Log.d(TAG, "Building " + EntryReading.TABLE_NAME);
+            // Same DDL ORMLite generates, the connection source can't be used while the DB is still being opened
+            database.execSQL(String.format("CREATE TABLE %s (id INTEGER PRIMARY KEY AUTOINCREMENT, readingKey VARCHAR, entryId INTEGER)", EntryReading.TABLE_NAME));
+            database.execSQL(String.format("CREATE INDEX %s ON %s (readingKey)", EntryReading.READING_KEY_INDEX_NAME, EntryReading.TABLE_NAME));
+            backfillEntryReadings(database);
+        }
+
+        // Conjugations take too long to generate while the DB is being opened, the tables are only created here and
+        // ConjugationIndex fills them in the background the first time the INDEX strategy is used
+        if (!hasTable(database, ConjugationChain.TABLE_NAME)){
+            Log.d(TAG, "Adding " + Conjugation.TABLE_NAME + " and " + ConjugationChain.TABLE_NAME);
+            database.execSQL(String.format("CREATE TABLE %s (id INTEGER PRIMARY KEY AUTOINCREMENT, surface VARCHAR, entryId INTEGER, chainId INTEGER)", Conjugation.TABLE_NAME));
+            database.execSQL(String.format("CREATE INDEX %s ON %s (surface)", Conjugation.SURFACE_INDEX_NAME, Conjugation.TABLE_NAME));
+            database.execSQL(String.format("CREATE TABLE %s (id INTEGER PRIMARY KEY AUTOINCREMENT, rules VARCHAR, type INTEGER)", ConjugationChain.TABLE_NAME));
+        }
+    }
+
+    private static void backfillPriorityRank(SQLiteDatabase database) {
+        SQLiteStatement update = database.compileStatement(String.format("UPDATE %s SET %s = ? WHERE id = ?", EntryOptimized.TABLE_NAME, EntryOptimized.PRIORITY_RANK_COLUMN));
+        Cursor cursor = database.rawQuery(String.format("SELECT id, priorities FROM %s WHERE priorities IS NOT NULL AND priorities != ''", EntryOptimized.TABLE_NAME), null);
+        try {
+            while (cursor.moveToNext()){
+                update.bindLong(1, EntryOptimized.getPriorityRank(cursor.getString(1)));
+                update.bindLong(2, cursor.getInt(0));
+                update.executeUpdateDelete();
+            }
+        } finally {
+            cursor.close();
+            update.close();
+        }
+    }
+
+    private static void backfillEntryReadings(SQLiteDatabase database) {
+        SQLiteStatement insert = database.compileStatement(String.format("INSERT INTO %s (readingKey, entryId) VALUES (?, ?)", EntryReading.TABLE_NAME));
+        Cursor cursor = database.rawQuery(String.format("SELECT id, kanji, readings FROM %s WHERE dictionary = ?", EntryOptimized.TABLE_NAME), new String[]{ Constants.DB_JMDICT_NAME });
+        try {
+            while (cursor.moveToNext()){
+                for (String readingKey : EntryReading.getReadingKeys(cursor.getString(1), cursor.getString(2))){
+                    insert.bindString(1, readingKey);
+                    insert.bindLong(2, cursor.getInt(0));
+                    insert.executeInsert();
+                }
+            }
+        } finally {
+            cursor.close();
+            insert.close();
+        }
+    }
+
+    private static boolean hasTable(SQLiteDatabase database, String table) {
+        Cursor cursor = database.rawQuery("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?", new String[]{ table });
+        try {
+            return cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static boolean hasColumn(SQLiteDatabase database, String table, String column) {
+        Cursor cursor = database.rawQuery(String.format("PRAGMA table_info(%s)", table), null);
+        try {
+            int nameIndex = cursor.getColumnIndex("name");
+            while (cursor.moveToNext()){
+                if (column.equals(cursor.getString(nameIndex))){
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            cursor.close();
+        }
     }
 
     public void deleteDatabase(){
@@ -0,0 +1,46 @@
+package ca.fuwafuwa.kaku.Database.JmDictDatabase.Models;
+
+import com.j256.ormlite.field.DatabaseField;
+
+/**
+ * One inflected surface form of an EntryOptimized, generated at dictionary compile time by applying the deinflect.dat
+ * rules forwards. Lets a lookup find the base entry of an inflected word with one index probe.
+ */
+public class Conjugation {
+
+    public static final String TABLE_NAME = "conjugation";
+    public static final String SURFACE_INDEX_NAME = "conjugation_surface_idx";
+
+    @DatabaseField(generatedId = true)
+    private Integer id;
+
+    @DatabaseField(index = true, indexName = SURFACE_INDEX_NAME)
+    private String surface;
+
+    @DatabaseField
+    private int entryId;
+
+    @DatabaseField
+    private int chainId;
+
+    public Conjugation(){
+    }
+
+    public Conjugation(String surface, int entryId, int chainId){
+        this.surface = surface;
+        this.entryId = entryId;
+        this.chainId = chainId;
+    }
+
+    public String getSurface() {
+        return surface;
+    }
+
+    public int getEntryId() {
+        return entryId;
+    }
+
+    public int getChainId() {
+        return chainId;
+    }
+}
@@ -0,0 +1,47 @@
+package ca.fuwafuwa.kaku.Database.JmDictDatabase.Models;
+
+import com.j256.ormlite.field.DatabaseField;
+
+/**
+ * The deinflect.dat rules that turn a base form into a Conjugation's surface form. Shared by every Conjugation that
+ * took the same path, there are only a few hundred of them.
+ */
+public class ConjugationChain {
+
+    public static final String TABLE_NAME = "conjugationchain";
+
+    @DatabaseField(generatedId = true)
+    private Integer id;
+
+    /**
+     * Comma separated rule indexes into deinflect.dat, in the order they were applied to the base form
+     */
+    @DatabaseField
+    private String rules;
+
+    /**
+     * Type the deinflected word ends up with, same as DeinflectionInfo.type
+     */
+    @DatabaseField
+    private int type;
+
+    public ConjugationChain(){
+    }
+
+    public ConjugationChain(String rules, int type){
+        this.rules = rules;
+        this.type = type;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getRules() {
+        return rules;
+    }
+
+    public int getType() {
+        return type;
+    }
+}
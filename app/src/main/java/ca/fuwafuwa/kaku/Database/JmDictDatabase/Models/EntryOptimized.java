@@ -4,18 +4,41 @@ import com.google.gson.annotations.Expose;
 import com.j256.ormlite.field.DataType;
 import com.j256.ormlite.field.DatabaseField;
 
+import ca.fuwafuwa.kaku.Constants;
+
 /**
  * Created by 0xbad1d3a5 on 12/1/2016.
  */
 
 public class EntryOptimized implements Comparable<EntryOptimized> {
 
+    public static final String TABLE_NAME = "entryoptimized";
+    public static final String KANJI_INDEX_NAME = "entryoptimized_kanji_idx";
+    public static final String POS_MASK_COLUMN = "posMask";
+    public static final String PRIORITY_RANK_COLUMN = "priorityRank";
+    public static final String ENT_SEQ_COLUMN = "entSeq";
+    public static final String CONTENT_HASH_COLUMN = "contentHash";
+
+    // Everything lookups filter and rank by, the long text columns are only read for the results that get displayed
+    public static final String[] SUMMARY_COLUMNS = { "id", "kanji", "pos", POS_MASK_COLUMN, PRIORITY_RANK_COLUMN, "dictionary", "primaryEntry" };
+
+    // priorityRank of an entry without any priority tags, ranks after every tagged entry
+    public static final int NO_PRIORITY_RANK = Integer.MAX_VALUE;
+
+    // getDictionaryId() of JMdict, KANJIDIC and any other dictionary, in the order results are ranked in
+    public static final int DICTIONARY_ID_JMDICT = 0;
+    public static final int DICTIONARY_ID_KANJIDIC = 1;
+    public static final int DICTIONARY_ID_OTHER = 2;
+
+    // Bit i of posMask is set if pos contains POS_MASK_TAGS[i], same bits as the deinflection types in deinflect.dat
+    private static final String[] POS_MASK_TAGS = { "v1", "v5", "adj-i", "vk", "vs-" };
+
     @Expose(serialize = false)
     @DatabaseField(generatedId = true)
     private Integer id;
 
     @Expose
-    @DatabaseField
+    @DatabaseField(index = true, indexName = KANJI_INDEX_NAME)
     private String kanji;
 
     @Expose
@@ -30,10 +53,18 @@ public class EntryOptimized implements Comparable<EntryOptimized> {
     @DatabaseField(dataType = DataType.LONG_STRING)
     private String pos;
 
+    @Expose(serialize = false)
+    @DatabaseField(columnName = POS_MASK_COLUMN)
+    private int posMask;
+
     @Expose
     @DatabaseField(dataType = DataType.LONG_STRING)
     private String priorities;
 
+    @Expose(serialize = false)
+    @DatabaseField(columnName = PRIORITY_RANK_COLUMN)
+    private int priorityRank = NO_PRIORITY_RANK;
+
     @Expose
     @DatabaseField(dataType = DataType.LONG_STRING)
     private String dictionary;
@@ -42,11 +73,32 @@ public class EntryOptimized implements Comparable<EntryOptimized> {
     @DatabaseField(dataType = DataType.BOOLEAN)
     private boolean primaryEntry = false;
 
+    // ent_seq of the JMdict entry this row came from, every row of an entry has the same one. 0 for KANJIDIC rows.
+    @Expose(serialize = false)
+    @DatabaseField(columnName = ENT_SEQ_COLUMN)
+    private int entSeq;
+
+    // Hash of every row of the entry, JmUpdater compares it to tell which entries a newer JMdict changed
+    @Expose(serialize = false)
+    @DatabaseField(columnName = CONTENT_HASH_COLUMN)
+    private long contentHash;
+
     private boolean onlyKana = false;
 
+    // False while readings, meanings and priorities haven't been read, for entries queried with SUMMARY_COLUMNS
+    private boolean detailsLoaded = true;
+
     public EntryOptimized(){
     }
 
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
     public String getKanji() {
         return kanji;
     }
@@ -90,6 +142,42 @@ public class EntryOptimized implements Comparable<EntryOptimized> {
         this.pos = pos;
     }
 
+    public int getPosMask()
+    {
+        return posMask;
+    }
+
+    public void setPosMask(int posMask)
+    {
+        this.posMask = posMask;
+    }
+
+    public static int getPosMask(String pos)
+    {
+        int mask = 0;
+        for (int i = 0; i < POS_MASK_TAGS.length; i++)
+        {
+            if (pos != null && pos.contains(POS_MASK_TAGS[i]))
+            {
+                mask |= 1 << i;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * @return SQL expression that computes posMask from the pos column, for DBs generated before it existed
+     */
+    public static String getPosMaskSql()
+    {
+        StringBuilder sb = new StringBuilder("0");
+        for (int i = 0; i < POS_MASK_TAGS.length; i++)
+        {
+            sb.append(String.format(" | (CASE WHEN instr(pos, '%s') > 0 THEN %d ELSE 0 END)", POS_MASK_TAGS[i], 1 << i));
+        }
+        return sb.toString();
+    }
+
     public boolean isOnlyKana() {
         return onlyKana;
     }
@@ -98,6 +186,14 @@ public class EntryOptimized implements Comparable<EntryOptimized> {
         this.onlyKana = onlyKana;
     }
 
+    public boolean isDetailsLoaded() {
+        return detailsLoaded;
+    }
+
+    public void setDetailsLoaded(boolean detailsLoaded) {
+        this.detailsLoaded = detailsLoaded;
+    }
+
     public boolean isPrimaryEntry()
     {
         return primaryEntry;
@@ -122,6 +218,65 @@ public class EntryOptimized implements Comparable<EntryOptimized> {
         this.priorities = priorities;
     }
 
+    public int getPriorityRank()
+    {
+        return priorityRank;
+    }
+
+    public void setPriorityRank(int priorityRank)
+    {
+        this.priorityRank = priorityRank;
+    }
+
+    /**
+     * @return Best (lowest) rank of the comma separated priority tags, nf01-nf48 rank ahead of news/ichi/spec/gai
+     */
+    public static int getPriorityRank(String priorities)
+    {
+        int lowestPriority = NO_PRIORITY_RANK;
+        if (priorities == null || priorities.isEmpty())
+        {
+            return lowestPriority;
+        }
+
+        for (String priority : priorities.split(","))
+        {
+            int pri = NO_PRIORITY_RANK;
+
+            if (priority.contains("nf")){ // looks like the range is nf01-nf48
+                pri = Integer.parseInt(priority.substring(2));
+            }
+            else if (priority.equals("news1")){
+                pri = 60;
+            }
+            else if (priority.equals("news2")){
+                pri = 70;
+            }
+            else if (priority.equals("ichi1")){
+                pri = 80;
+            }
+            else if (priority.equals("ichi2")){
+                pri = 90;
+            }
+            else if (priority.equals("spec1")){
+                pri = 100;
+            }
+            else if (priority.equals("spec2")){
+                pri = 110;
+            }
+            else if (priority.equals("gai1")){
+                pri = 120;
+            }
+            else if (priority.equals("gai2")){
+                pri = 130;
+            }
+
+            lowestPriority = Math.min(pri, lowestPriority);
+        }
+
+        return lowestPriority;
+    }
+
     public String getDictionary()
     {
         return dictionary;
@@ -132,6 +287,48 @@ public class EntryOptimized implements Comparable<EntryOptimized> {
         this.dictionary = dictionary;
     }
 
+    /**
+     * @return One of the DICTIONARY_ID constants for getDictionary(), lookups rank and cost entries by this instead
+     * of comparing the name
+     */
+    public int getDictionaryId()
+    {
+        return getDictionaryId(dictionary);
+    }
+
+    public static int getDictionaryId(String dictionary)
+    {
+        if (Constants.DB_JMDICT_NAME.equals(dictionary))
+        {
+            return DICTIONARY_ID_JMDICT;
+        }
+        else if (Constants.DB_KANJIDICT_NAME.equals(dictionary))
+        {
+            return DICTIONARY_ID_KANJIDIC;
+        }
+        return DICTIONARY_ID_OTHER;
+    }
+
+    public int getEntSeq()
+    {
+        return entSeq;
+    }
+
+    public void setEntSeq(int entSeq)
+    {
+        this.entSeq = entSeq;
+    }
+
+    public long getContentHash()
+    {
+        return contentHash;
+    }
+
+    public void setContentHash(long contentHash)
+    {
+        this.contentHash = contentHash;
+    }
+
     // Sort by kanji length for results
     @Override
     public int compareTo(EntryOptimized another) {
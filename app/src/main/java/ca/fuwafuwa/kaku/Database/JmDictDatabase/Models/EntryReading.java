@@ -0,0 +1,101 @@
+package ca.fuwafuwa.kaku.Database.JmDictDatabase.Models;
+
+import com.j256.ormlite.field.DatabaseField;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ca.fuwafuwa.kaku.LangUtils;
+
+/**
+ * One reading of an EntryOptimized folded to hiragana, so kana text finds entries however they're written: タベル
+ * finds 食べる through たべる, and たばこ finds タバコ.
+ */
+public class EntryReading {
+
+    public static final String TABLE_NAME = "entryreading";
+    public static final String READING_KEY_INDEX_NAME = "entryreading_readingkey_idx";
+
+    @DatabaseField(generatedId = true)
+    private Integer id;
+
+    @DatabaseField(index = true, indexName = READING_KEY_INDEX_NAME)
+    private String readingKey;
+
+    @DatabaseField
+    private int entryId;
+
+    public EntryReading(){
+    }
+
+    public EntryReading(String readingKey, int entryId){
+        this.readingKey = readingKey;
+        this.entryId = entryId;
+    }
+
+    public String getReadingKey() {
+        return readingKey;
+    }
+
+    public int getEntryId() {
+        return entryId;
+    }
+
+    public static String toReadingKey(String kana) {
+        return LangUtils.Companion.ConvertKanatanaToHiragana(kana);
+    }
+
+    /**
+     * @return First char of toReadingKey(text starting with c), without building any Strings for full-width kana
+     */
+    public static char toReadingKeyChar(char c) {
+        if (c >= 0x30A1 && c <= 0x30F3){
+            return (char) (c - 0x60);
+        }
+        if (c >= 0xFF66 && c <= 0xFF9D){
+            return toReadingKey(String.valueOf(c)).charAt(0);
+        }
+        return c;
+    }
+
+    /**
+     * @param readings EntryOptimized.readings, joined with ", "
+     * @return Distinct reading keys of an entry. Kana only entries have no readings, their kanji is the reading.
+     */
+    public static List<String> getReadingKeys(String kanji, String readings) {
+
+        List<String> keys = new ArrayList<>();
+
+        if (readings != null && !readings.isEmpty()){
+            for (String reading : readings.split(", ")){
+                addKey(keys, reading);
+            }
+        }
+        else if (kanji != null && isKana(kanji)){
+            addKey(keys, kanji);
+        }
+
+        return keys;
+    }
+
+    public static boolean isKana(CharSequence text) {
+        for (int i = 0; i < text.length(); i++){
+            char c = text.charAt(i);
+            if (!LangUtils.Companion.IsHiragana(c) && !LangUtils.Companion.IsKatakana(c) && !(c >= 0xFF66 && c <= 0xFF9F)){
+                return false;
+            }
+        }
+        return text.length() > 0;
+    }
+
+    private static void addKey(List<String> keys, String reading) {
+        if (reading.isEmpty() || !isKana(reading)){
+            return;
+        }
+
+        String key = toReadingKey(reading);
+        if (!keys.contains(key)){
+            keys.add(key);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package ca.fuwafuwa.kaku.Database.KanjiDict2Database;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import ca.fuwafuwa.kaku.Constants;
+import ca.fuwafuwa.kaku.Database.KanjiDict2Database.Models.CharacterOptimized;
+
+/**
+ * Read-only, memory-mapped KANJIDIC written by {@link KanjiTableWriter}, addressed directly by codepoint.
+ *
+ * Codepoints are split into pages of PAGE_SIZE. A lookup is two array reads, one in the page index and one in the
+ * page, and only pages that have a kanji in them are stored, so the whole table is a few hundred KB.
+ *
+ * Only absolute reads are used on the buffer, so one instance can be shared between threads.
+ */
+public class KanjiTable {
+
+    private static final String TAG = KanjiTable.class.getName();
+
+    static final int MAGIC = 0x4B414E4A; // "KANJ"
+    static final int VERSION = 1;
+
+    static final int PAGE_BITS = 8;
+    static final int PAGE_SIZE = 1 << PAGE_BITS;
+    static final int PAGE_MASK = PAGE_SIZE - 1;
+    static final int PAGE_INDEX_SIZE = (Character.MAX_CODE_POINT + 1) >>> PAGE_BITS;
+
+    private static final int HEADER_SIZE = 4 * 4;
+
+    private static KanjiTable instance;
+
+    private ByteBuffer mBuffer;
+    private int mCharacterCount;
+    private int mPagesPos;
+    private int mRecordsPos;
+
+    private KanjiTable(ByteBuffer buffer) throws IOException {
+
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION){
+            throw new IOException("Not a Kaku kanji table, or the wrong version of one");
+        }
+
+        mBuffer = buffer;
+        int pageCount = buffer.getInt(8);
+        mCharacterCount = buffer.getInt(12);
+
+        mPagesPos = HEADER_SIZE + 4 * PAGE_INDEX_SIZE;
+        mRecordsPos = mPagesPos + 4 * pageCount * PAGE_SIZE;
+    }
+
+    public static KanjiTable open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")){
+            // The mapping stays valid after the channel is closed
+            FileChannel channel = raf.getChannel();
+            return new KanjiTable(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * @return The table in filesDir, or null if it hasn't been compiled there
+     */
+    public static synchronized KanjiTable instance(Context context) {
+
+        if (instance == null){
+
+            File file = new File(context.getFilesDir(), Constants.KANJIDIC_TABLE_NAME);
+            if (!file.exists()){
+                return null;
+            }
+
+            try {
+                long startTime = System.currentTimeMillis();
+                instance = open(file);
+                Log.d(TAG, String.format("Mapped %d kanji in %dms", instance.getCharacterCount(), System.currentTimeMillis() - startTime));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        return instance;
+    }
+
+    /**
+     * Drops the mapped table, the file is mapped again on the next {@link #instance(Context)}. Characters already
+     * handed out keep the old mapping alive, so the file has to be replaced (not rewritten in place) while it's in use.
+     */
+    public static synchronized void clear() {
+        instance = null;
+    }
+
+    public int getCharacterCount() {
+        return mCharacterCount;
+    }
+
+    /**
+     * @return The kanji for codePoint, or null if it isn't in KANJIDIC
+     */
+    public CharacterOptimized find(int codePoint) {
+
+        if (codePoint < 0 || codePoint > Character.MAX_CODE_POINT){
+            return null;
+        }
+
+        int page = mBuffer.getInt(HEADER_SIZE + 4 * (codePoint >>> PAGE_BITS));
+        if (page < 0){
+            return null;
+        }
+
+        int recordOffset = mBuffer.getInt(mPagesPos + 4 * (page * PAGE_SIZE + (codePoint & PAGE_MASK)));
+        if (recordOffset < 0){
+            return null;
+        }
+
+        int pos = mRecordsPos + recordOffset;
+
+        CharacterOptimized character = new CharacterOptimized();
+        character.setKanji(new String(Character.toChars(codePoint)));
+        character.setStrokeCount(mBuffer.get(pos) & 0xFF);
+        character.setGrade(mBuffer.get(pos + 1) & 0xFF);
+        character.setRadical(mBuffer.getShort(pos + 2));
+        pos += 4;
+
+        character.setOnyomi(readString(pos));
+        pos = skipString(pos);
+        character.setKunyomi(readString(pos));
+        pos = skipString(pos);
+        character.setMeaning(readString(pos));
+
+        return character;
+    }
+
+    private String readString(int pos) {
+
+        int length = mBuffer.getInt(pos);
+        if (length < 0){
+            return null;
+        }
+
+        char[] chars = new char[length];
+        pos += 4;
+        for (int i = 0; i < length; i++){
+            chars[i] = mBuffer.getChar(pos + 2 * i);
+        }
+        return new String(chars);
+    }
+
+    private int skipString(int pos) {
+        return pos + 4 + 2 * Math.max(mBuffer.getInt(pos), 0);
+    }
+}
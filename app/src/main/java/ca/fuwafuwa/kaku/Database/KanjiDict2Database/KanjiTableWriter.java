@@ -0,0 +1,100 @@
+package ca.fuwafuwa.kaku.Database.KanjiDict2Database;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import ca.fuwafuwa.kaku.Database.KanjiDict2Database.Models.CharacterOptimized;
+import ca.fuwafuwa.kaku.XmlParsers.Interfaces.CharacterWriter;
+
+/**
+ * Collects the CharacterOptimized produced by the Kd2Parser and compiles them into the {@link KanjiTable} file.
+ *
+ * Layout, everything big-endian:
+ *
+ *   header     int magic, int version, int pageCount, int recordCount
+ *   pageIndex  int[PAGE_INDEX_SIZE], for each block of PAGE_SIZE codepoints the page holding it, -1 if it has no kanji
+ *   pages      int[pageCount * PAGE_SIZE], start of the record of each codepoint relative to the records section, -1
+ *              if it isn't a kanji
+ *   records    byte strokeCount, byte grade, short radical, then onyomi, kunyomi, meaning as
+ *              (int length, char[length]), length -1 for null
+ */
+public class KanjiTableWriter implements CharacterWriter {
+
+    // Sorted by codepoint, so pages come out in order
+    private Map<Integer, CharacterOptimized> mCharacters = new TreeMap<>();
+
+    @Override
+    public void write(CharacterOptimized character) {
+        String kanji = character.getKanji();
+        if (kanji != null && !kanji.isEmpty()){
+            mCharacters.put(kanji.codePointAt(0), character);
+        }
+    }
+
+    public void writeTo(File file) throws IOException {
+
+        int[] pageIndex = new int[KanjiTable.PAGE_INDEX_SIZE];
+        Arrays.fill(pageIndex, -1);
+
+        int pageCount = 0;
+        for (int codePoint : mCharacters.keySet()){
+            int page = codePoint >>> KanjiTable.PAGE_BITS;
+            if (pageIndex[page] < 0){
+                pageIndex[page] = pageCount++;
+            }
+        }
+
+        int[] pages = new int[pageCount * KanjiTable.PAGE_SIZE];
+        Arrays.fill(pages, -1);
+
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+        DataOutputStream records = new DataOutputStream(recordBytes);
+
+        for (Map.Entry<Integer, CharacterOptimized> entry : mCharacters.entrySet()){
+            int codePoint = entry.getKey();
+            CharacterOptimized character = entry.getValue();
+
+            pages[pageIndex[codePoint >>> KanjiTable.PAGE_BITS] * KanjiTable.PAGE_SIZE + (codePoint & KanjiTable.PAGE_MASK)] = records.size();
+            records.writeByte(Math.min(character.getStrokeCount(), 0xFF));
+            records.writeByte(Math.min(character.getGrade(), 0xFF));
+            records.writeShort(character.getRadical());
+            writeString(records, character.getOnyomi());
+            writeString(records, character.getKunyomi());
+            writeString(records, character.getMeaning());
+        }
+        records.flush();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))){
+            out.writeInt(KanjiTable.MAGIC);
+            out.writeInt(KanjiTable.VERSION);
+            out.writeInt(pageCount);
+            out.writeInt(mCharacters.size());
+
+            for (int page : pageIndex){
+                out.writeInt(page);
+            }
+
+            for (int recordOffset : pages){
+                out.writeInt(recordOffset);
+            }
+
+            recordBytes.writeTo(out);
+        }
+    }
+
+    private void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null){
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(s.length());
+        out.writeChars(s);
+    }
+}
@@ -11,9 +11,9 @@ import java.sql.SQLException;
 
 import ca.fuwafuwa.kaku.Constants;
 import ca.fuwafuwa.kaku.Database.DatabaseHelper;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.JmDatabaseHelper;
 import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryOptimized;
 import ca.fuwafuwa.kaku.Database.KanjiDict2Database.Models.CharacterOptimized;
-import ca.fuwafuwa.kaku.Exceptions.NotImplementedException;
 
 /**
  * Created by 0xbad1d3a5 on 12/1/2016.
@@ -22,7 +22,8 @@ import ca.fuwafuwa.kaku.Exceptions.NotImplementedException;
 public class Kd2DatabaseHelper extends DatabaseHelper {
 
     private static final String DATABASE_NAME = Constants.JMDICT_DATABASE_NAME;
-    private static final int DATABASE_VERSION = 1;
+    // Same file as JmDatabaseHelper, the versions have to match or one of them would see a downgrade
+    private static final int DATABASE_VERSION = JmDatabaseHelper.DATABASE_VERSION;
 
     private static Kd2DatabaseHelper instance;
 
@@ -52,7 +53,7 @@ public class Kd2DatabaseHelper extends DatabaseHelper {
 
     @Override
     public void onUpgrade(SQLiteDatabase database, ConnectionSource connectionSource, int oldVersion, int newVersion) {
-        throw new NotImplementedException();
+        JmDatabaseHelper.upgrade(database, oldVersion);
     }
 
     @Override
@@ -30,6 +30,20 @@ public class CharacterOptimized {
     @DatabaseField(dataType = DataType.LONG_STRING)
     private String meaning;
 
+    // 0 if KANJIDIC doesn't list one
+    @Expose
+    @DatabaseField
+    private int strokeCount;
+
+    @Expose
+    @DatabaseField
+    private int grade;
+
+    // Classical (Kangxi) radical number
+    @Expose
+    @DatabaseField
+    private int radical;
+
     public String getKanji() {
         return kanji;
     }
@@ -61,4 +75,28 @@ public class CharacterOptimized {
     public void setMeaning(String meaning) {
         this.meaning = meaning;
     }
+
+    public int getStrokeCount() {
+        return strokeCount;
+    }
+
+    public void setStrokeCount(int strokeCount) {
+        this.strokeCount = strokeCount;
+    }
+
+    public int getGrade() {
+        return grade;
+    }
+
+    public void setGrade(int grade) {
+        this.grade = grade;
+    }
+
+    public int getRadical() {
+        return radical;
+    }
+
+    public void setRadical(int radical) {
+        this.radical = radical;
+    }
 }
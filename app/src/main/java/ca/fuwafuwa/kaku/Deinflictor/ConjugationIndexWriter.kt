@@ -0,0 +1,86 @@
+package ca.fuwafuwa.kaku.Deinflictor
+
+import ca.fuwafuwa.kaku.Database.IDatabaseHelper
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.BulkInserter
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.Conjugation
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.ConjugationChain
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryOptimized
+import ca.fuwafuwa.kaku.XmlParsers.Interfaces.EntryWriter
+
+/**
+ * Writes every conjugated form of each entry the parser creates into the [Conjugation] table through a
+ * [BulkInserter]. Has to run after the entry has its id.
+ *
+ * The surface index is dropped in [begin] and built again in [finish], unless [dropIndexes] is false because only a
+ * few rows are added to a full table.
+ */
+class ConjugationIndexWriter @JvmOverloads constructor(dbHelper: IDatabaseHelper,
+                                                       private val deinflector: Deinflector,
+                                                       maxDepth: Int = DEFAULT_MAX_DEPTH,
+                                                       private val dropIndexes: Boolean = true) : EntryWriter
+{
+    private val conjugationDao = dbHelper.getDbDao<Conjugation>(Conjugation::class.java)
+    private val chainDao = dbHelper.getDbDao<ConjugationChain>(ConjugationChain::class.java)
+    private val conjugator = Conjugator(deinflector, maxDepth)
+    private val chainIds = HashMap<String, Int>()
+    private lateinit var inserter: BulkInserter
+    private var indexSql: List<String> = emptyList()
+
+    var conjugationCount = 0
+        private set
+
+    init
+    {
+        // JmUpdater adds to a DB that already has chains, reuse them instead of adding duplicates
+        for (chain in chainDao.queryForAll())
+        {
+            chainIds[chain.rules] = chain.id
+        }
+    }
+
+    override fun begin()
+    {
+        inserter = BulkInserter(conjugationDao, Conjugation.TABLE_NAME, "surface", "entryId", "chainId")
+        indexSql = if (dropIndexes) BulkInserter.dropIndexes(conjugationDao, Conjugation.TABLE_NAME) else emptyList()
+    }
+
+    override fun write(entry: EntryOptimized)
+    {
+        val kanji = entry.kanji ?: return
+        val id = entry.id ?: return
+
+        conjugator.conjugate(kanji, entry.posMask) { surface, rules ->
+            inserter.insert(surface, id.toString(), getChainId(rules).toString())
+            conjugationCount++
+        }
+    }
+
+    /**
+     * Inserts what's left in the buffer and builds the index dropped in [begin]
+     */
+    override fun finish()
+    {
+        inserter.flush()
+
+        for (sql in indexSql)
+        {
+            conjugationDao.executeRaw(sql)
+        }
+        indexSql = emptyList()
+    }
+
+    private fun getChainId(rules: IntArray): Int
+    {
+        val key = rules.joinToString(",")
+        return chainIds.getOrPut(key) {
+            val chain = ConjugationChain(key, deinflector.getRule(rules[0]).type shr 8)
+            chainDao.create(chain)
+            chain.id
+        }
+    }
+
+    companion object
+    {
+        const val DEFAULT_MAX_DEPTH = 2
+    }
+}
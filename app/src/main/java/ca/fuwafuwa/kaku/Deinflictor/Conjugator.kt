@@ -0,0 +1,69 @@
+package ca.fuwafuwa.kaku.Deinflictor
+
+/**
+ * Runs the [Deinflector] rules forwards: a rule inflects a word ending in [DeinflectionRule.to] that has one of the
+ * types in [DeinflectionRule.type] shr 8 by swapping the ending for [DeinflectionRule.from]. Everything this produces
+ * from a base form deinflects back to it.
+ *
+ * Every rule that's applied multiplies the number of forms by ~6, so chains are cut off at [maxDepth] rules.
+ */
+class Conjugator(private val deinflector: Deinflector, private val maxDepth: Int)
+{
+    /**
+     * @param posMask Types of the base form, see EntryOptimized.posMask
+     * @param onForm Called once per surface form with the rules applied to get there, first applied first
+     */
+    fun conjugate(base: String, posMask: Int, onForm: (surface: String, rules: IntArray) -> Unit)
+    {
+        // Deinflector never produces a word shorter than 2 chars, so it could never get back to this one
+        if (base.length <= 1 || posMask == 0)
+        {
+            return
+        }
+
+        val seenSurfaces = HashSet<String>()
+        val seenStates = HashSet<String>()
+        var frontier = listOf(Form(base, posMask, IntArray(0)))
+
+        for (depth in 1..maxDepth)
+        {
+            val nextFrontier = ArrayList<Form>()
+
+            for (form in frontier)
+            {
+                for (ruleIndex in 0 until deinflector.ruleCount)
+                {
+                    val rule = deinflector.getRule(ruleIndex)
+                    if ((rule.type shr 8) and form.mask == 0 || !form.word.endsWith(rule.to))
+                    {
+                        continue
+                    }
+
+                    // Intermediate words have to be deinflectable too
+                    if (depth > 1 && form.word.length <= 1)
+                    {
+                        continue
+                    }
+
+                    val surface = form.word.substring(0, form.word.length - rule.to.length) + rule.from
+                    val mask = rule.type and 0xFF
+                    if (!seenStates.add("$mask:$surface"))
+                    {
+                        continue
+                    }
+
+                    val rules = form.rules + ruleIndex
+                    if (seenSurfaces.add(surface) && surface != base)
+                    {
+                        onForm(surface, rules)
+                    }
+                    nextFrontier.add(Form(surface, mask, rules))
+                }
+            }
+
+            frontier = nextFrontier
+        }
+    }
+
+    private class Form(val word: String, val mask: Int, val rules: IntArray)
+}
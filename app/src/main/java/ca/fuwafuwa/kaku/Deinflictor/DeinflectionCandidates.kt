@@ -0,0 +1,24 @@
+package ca.fuwafuwa.kaku.Deinflictor
+
+/**
+ * Words an inflected word might be the inflection of, index 0 is always the word itself
+ */
+interface DeinflectionCandidates
+{
+    val size: Int
+
+    fun getWord(index: Int): CharSequence
+
+    /**
+     * Bitmask of the types the word at [index] can be, same bits as EntryOptimized.posMask
+     */
+    fun getType(index: Int): Int
+
+    /**
+     * @return Id of the only entry the word at [index] is the base form of, or -1 if it could be any entry with that
+     * kanji
+     */
+    fun getEntryId(index: Int): Int
+
+    fun getDeinflectionInfo(index: Int): DeinflectionInfo
+}
@@ -0,0 +1,231 @@
+package ca.fuwafuwa.kaku.Deinflictor
+
+import java.nio.CharBuffer
+import java.util.Arrays
+
+/**
+ * Every deinflection of one word, filled in by [Deinflector.deinflect].
+ *
+ * Most candidates never match a dictionary entry, so instead of a [DeinflectionInfo] and a String per candidate each
+ * one is a record of parallel arrays (parent, rule, type) and its word lives in a shared char buffer. Reasons are only
+ * put together for the candidates that get turned into a [DeinflectionInfo]. A chain can be reused for the next word,
+ * which overwrites it.
+ *
+ * Index 0 is always the word itself.
+ */
+class DeinflectionChain : DeinflectionCandidates
+{
+    override var size: Int = 0
+        private set
+
+    private var rules: List<DeinflectionRule> = emptyList()
+
+    private var parents = IntArray(INITIAL_CAPACITY)
+    private var ruleIndexes = IntArray(INITIAL_CAPACITY)
+    private var types = IntArray(INITIAL_CAPACITY)
+    private var wordStarts = IntArray(INITIAL_CAPACITY)
+    private var wordLengths = IntArray(INITIAL_CAPACITY)
+
+    private var chars = CharArray(INITIAL_CAPACITY * 8)
+    private var charCount = 0
+
+    // Open addressing table of chain indexes by word, -1 is empty
+    private var table = IntArray(INITIAL_CAPACITY * 2)
+
+    internal var matchedRules = IntArray(0)
+        private set
+
+    override fun getType(index: Int): Int
+    {
+        return types[index]
+    }
+
+    fun getWordLength(index: Int): Int
+    {
+        return wordLengths[index]
+    }
+
+    /**
+     * @return View of the word at [index] over the shared buffer, only valid until the chain is reused
+     */
+    override fun getWord(index: Int): CharSequence
+    {
+        return CharBuffer.wrap(chars, wordStarts[index], wordLengths[index])
+    }
+
+    override fun getEntryId(index: Int): Int
+    {
+        return -1
+    }
+
+    override fun getDeinflectionInfo(index: Int): DeinflectionInfo
+    {
+        var depth = 0
+        var i = index
+        while (parents[i] >= 0)
+        {
+            depth++
+            i = parents[i]
+        }
+
+        i = index
+        val reasonPath = Array(depth) {
+            val reason = rules[ruleIndexes[i]].reason
+            i = parents[i]
+            reason
+        }
+
+        return DeinflectionInfo(String(chars, wordStarts[index], wordLengths[index]), types[index], reasonPath)
+    }
+
+    internal fun charAt(index: Int, i: Int): Char
+    {
+        return chars[wordStarts[index] + i]
+    }
+
+    internal fun reset(word: CharSequence, rules: List<DeinflectionRule>)
+    {
+        this.rules = rules
+        if (matchedRules.size < rules.size)
+        {
+            matchedRules = IntArray(rules.size)
+        }
+
+        size = 0
+        charCount = 0
+        Arrays.fill(table, -1)
+
+        ensureChars(word.length)
+        for (i in 0 until word.length)
+        {
+            chars[i] = word[i]
+        }
+        append(-1, -1, 0xFF, word.length)
+    }
+
+    /**
+     * Adds the word made by replacing the last [fromLength] chars of [parent] with [to]. If that word is already in the
+     * chain, [type] is added to it instead.
+     */
+    internal fun add(parent: Int, ruleIndex: Int, fromLength: Int, to: String, type: Int)
+    {
+        val keepLength = wordLengths[parent] - fromLength
+        val length = keepLength + to.length
+
+        // Build the word at the end of the buffer, it's only kept if it's new
+        ensureChars(charCount + length)
+        System.arraycopy(chars, wordStarts[parent], chars, charCount, keepLength)
+        for (i in 0 until to.length)
+        {
+            chars[charCount + keepLength + i] = to[i]
+        }
+
+        val existing = find(charCount, length)
+        if (existing >= 0)
+        {
+            types[existing] = types[existing] or type
+            return
+        }
+
+        append(parent, ruleIndex, type, length)
+    }
+
+    private fun append(parent: Int, ruleIndex: Int, type: Int, length: Int)
+    {
+        if (size == parents.size)
+        {
+            val capacity = size * 2
+            parents = parents.copyOf(capacity)
+            ruleIndexes = ruleIndexes.copyOf(capacity)
+            types = types.copyOf(capacity)
+            wordStarts = wordStarts.copyOf(capacity)
+            wordLengths = wordLengths.copyOf(capacity)
+        }
+
+        parents[size] = parent
+        ruleIndexes[size] = ruleIndex
+        types[size] = type
+        wordStarts[size] = charCount
+        wordLengths[size] = length
+        charCount += length
+
+        if (size * 2 >= table.size)
+        {
+            rehash(table.size * 2)
+        }
+        insert(size)
+        size++
+    }
+
+    private fun find(start: Int, length: Int): Int
+    {
+        val mask = table.size - 1
+        var slot = hash(start, length) and mask
+        while (table[slot] >= 0)
+        {
+            val index = table[slot]
+            if (wordLengths[index] == length && regionEquals(wordStarts[index], start, length))
+            {
+                return index
+            }
+            slot = (slot + 1) and mask
+        }
+        return -1
+    }
+
+    private fun insert(index: Int)
+    {
+        val mask = table.size - 1
+        var slot = hash(wordStarts[index], wordLengths[index]) and mask
+        while (table[slot] >= 0)
+        {
+            slot = (slot + 1) and mask
+        }
+        table[slot] = index
+    }
+
+    private fun rehash(capacity: Int)
+    {
+        table = IntArray(capacity)
+        Arrays.fill(table, -1)
+        for (index in 0 until size)
+        {
+            insert(index)
+        }
+    }
+
+    private fun hash(start: Int, length: Int): Int
+    {
+        var hash = 0
+        for (i in start until start + length)
+        {
+            hash = 31 * hash + chars[i].toInt()
+        }
+        return hash xor (hash ushr 16)
+    }
+
+    private fun regionEquals(a: Int, b: Int, length: Int): Boolean
+    {
+        for (i in 0 until length)
+        {
+            if (chars[a + i] != chars[b + i])
+            {
+                return false
+            }
+        }
+        return true
+    }
+
+    private fun ensureChars(capacity: Int)
+    {
+        if (capacity > chars.size)
+        {
+            chars = chars.copyOf(maxOf(capacity, chars.size * 2))
+        }
+    }
+
+    companion object
+    {
+        private const val INITIAL_CAPACITY = 32
+    }
+}
@@ -1,17 +1,5 @@
 package ca.fuwafuwa.kaku.Deinflictor
 
-/**
- * A RuleGroup is composed of multiple rules that share the same [DeinflectionRule.from] length
- *
- * @property rules List containing the rules in the RuleGroup
- * @property fromLength The [DeinflectionRule.from] length of the RuleGroup
- */
-class DeinflectionRuleGroup
-{
-    val rules: ArrayList<DeinflectionRule> = ArrayList()
-    var fromLength: Int = 0
-}
-
 /**
  * Data class to represent each rule in deinflect.dat
  *
@@ -32,9 +20,30 @@ data class DeinflectionRule(
  *
  * @property word The deinflected word
  * @property type Bitmask for determining whether to continue processing deinflection
- * @property reason Deinflection reason
+ * @property reason Deinflection reason, only put together the first time it's read
  */
-class DeinflectionInfo(
-        var word: String,
+class DeinflectionInfo private constructor(
+        val word: String,
         var type: Int,
-        var reason: String)
\ No newline at end of file
+        private var _reason: String?,
+        private val _reasonPath: Array<String>)
+{
+    constructor(word: String, type: Int, reason: String) : this(word, type, reason, emptyArray())
+
+    /**
+     * @param reasonPath Reason of each rule that was applied to get to [word], most recent first
+     */
+    constructor(word: String, type: Int, reasonPath: Array<String>) : this(word, type, null, reasonPath)
+
+    val reason: String
+        get()
+        {
+            var reason = _reason
+            if (reason == null)
+            {
+                reason = _reasonPath.joinToString(" ") { "< $it" }
+                _reason = reason
+            }
+            return reason
+        }
+}
@@ -1,16 +1,53 @@
 package ca.fuwafuwa.kaku.Deinflictor
 
 import android.content.Context
-import ca.fuwafuwa.kaku.LangUtils
+import ca.fuwafuwa.kaku.Search.DoubleArrayTrie
 import java.io.BufferedReader
+import java.util.Arrays
 
-class Deinflector(context: Context) {
+/**
+ * Rules are loaded once into a trie of their reversed [DeinflectionRule.from] strings, so walking back from the end of
+ * a word finds every rule that applies to it without trying each rule in turn.
+ */
+class Deinflector(reader: BufferedReader) {
 
-    private val _ruleGroups: ArrayList<DeinflectionRuleGroup> = ArrayList()
+    private val _rules: ArrayList<DeinflectionRule> = ArrayList()
+
+    /**
+     * Trie of the reversed [DeinflectionRule.from] of every rule, the value of each suffix indexes into [_rulesBySuffix]
+     */
+    private val _suffixTrie: DoubleArrayTrie
+
+    /**
+     * Indexes into [_rules] of the rules sharing each suffix, in the order they appear in deinflect.dat
+     */
+    private val _rulesBySuffix: Array<IntArray>
+
+    constructor(context: Context) : this(context.assets.open("deinflect.dat").bufferedReader(Charsets.UTF_8))
 
     init
     {
-        loadRules(context.assets.open("deinflect.dat").bufferedReader(Charsets.UTF_8))
+        reader.use { loadRules(it) }
+
+        val ruleIndexesBySuffix = HashMap<String, ArrayList<Int>>()
+        for ((index, rule) in _rules.withIndex())
+        {
+            ruleIndexesBySuffix.getOrPut(rule.from.reversed()) { ArrayList() }.add(index)
+        }
+
+        val suffixes = ruleIndexesBySuffix.keys.sorted()
+        _suffixTrie = DoubleArrayTrie.build(suffixes)
+        _rulesBySuffix = Array(suffixes.size) { ruleIndexesBySuffix[suffixes[it]]!!.toIntArray() }
+    }
+
+    val ruleCount: Int get() = _rules.size
+
+    /**
+     * @param index Index of the rule in deinflect.dat, counting rules only
+     */
+    fun getRule(index: Int): DeinflectionRule
+    {
+        return _rules[index]
     }
 
     private fun loadRules(reader: BufferedReader)
@@ -18,9 +55,6 @@ class Deinflector(context: Context) {
         // Skip header
         reader.readLine()
 
-        var ruleGroup = DeinflectionRuleGroup()
-        ruleGroup.fromLength = -1
-
         var ruleReasons: ArrayList<String> = ArrayList()
 
         reader.forEachLine {
@@ -40,14 +74,11 @@ class Deinflector(context: Context) {
                         fields[2].trim().toInt(),
                         ruleReasons.get(fields[3].trim().toInt()))
 
-                // Group inflections of the same length together into the same RuleGroup
-                if (ruleGroup.fromLength != rule.from.length){
-                    ruleGroup = DeinflectionRuleGroup()
-                    ruleGroup.fromLength = rule.from.length
-                    _ruleGroups.add(ruleGroup)
+                // A rule with no inflection would match every word
+                if (rule.from.isNotEmpty())
+                {
+                    _rules.add(rule)
                 }
-
-                ruleGroup.rules.add(rule)
             }
         }
     }
@@ -76,63 +107,79 @@ class Deinflector(context: Context) {
      */
     fun getPotentialDeinflections(word: String): List<DeinflectionInfo> {
 
-        var text: String = word //LangUtils.ConvertKanatanaToHiragana(word)
+        val chain = deinflect(word, DeinflectionChain())
+        return (0 until chain.size).map { chain.getDeinflectionInfo(it) }
+    }
 
-        // Chain of inflections encountered
-        var deinfWordChain = ArrayList<DeinflectionInfo>()
-        deinfWordChain.add(DeinflectionInfo(text, 0xFF, ""))
+    /**
+     * Same as [getPotentialDeinflections], but fills in [chain] instead of creating a [DeinflectionInfo] per
+     * candidate. Nothing is allocated once [chain] has grown big enough.
+     *
+     * @return [chain]
+     */
+    fun deinflect(word: CharSequence, chain: DeinflectionChain): DeinflectionChain {
 
-        // Map of possible deinflections to its deinfWordList index
-        var prevSeenDeinfWords = HashMap<String, Int>()
-        prevSeenDeinfWords[text] = 0
+        chain.reset(word, _rules)
+        val matchedRules = chain.matchedRules
 
         var currWordChainIndex = 0
 
         do
         {
-            var currDeinflectionInfo: DeinflectionInfo = deinfWordChain.get(currWordChainIndex)
-            var currWord: String = currDeinflectionInfo.word
+            val currWordLength = chain.getWordLength(currWordChainIndex)
 
-            for (ruleGroup in _ruleGroups)
+            // Walk the word backwards, every suffix state that ends a rule's inflection matches those rules
+            var matchedCount = 0
+            var state = _suffixTrie.root
+            for (i in currWordLength - 1 downTo 0)
             {
-                // Only process RuleGroup if inflected word is longer than the group
-                if (ruleGroup.fromLength > currWord.length) continue
+                state = _suffixTrie.next(state, chain.charAt(currWordChainIndex, i))
+                if (state < 0) break
 
-                // Get the last X characters of word so that wordTail is the same length as the RuleGroup
-                var wordTail: String = currWord.substring(currWord.length - ruleGroup.fromLength)
+                val suffixIndex = _suffixTrie.value(state)
+                if (suffixIndex < 0) continue
 
-                for (rule in ruleGroup.rules)
+                for (ruleIndex in _rulesBySuffix[suffixIndex])
                 {
-                    // Only process rule if wordTail matches a valid inflection rule
-                    // Only process rule if previous word in deinflection chain allows for such a transformation (type does not mask out)
-                    var shouldProcessRule = (currDeinflectionInfo.type and rule.type != 0) && (wordTail == rule.from)
-                    if (!shouldProcessRule) continue
-
-                    // Inflected words must be at least 2 characters in length
-                    var newWord: String = currWord.substring(0, currWord.length - rule.from.length) + rule.to
-                    if (newWord.length <= 1) continue
-
-                    // We've seen this deinflection before under a different rule, update type
-                    var prevSeenWordIndex: Int? = prevSeenDeinfWords.get(newWord)
-                    if (prevSeenWordIndex != null)
-                    {
-                        var prevSeenWordType: Int = deinfWordChain[prevSeenWordIndex].type
-                        deinfWordChain[prevSeenWordIndex].type = prevSeenWordType or (rule.type shr 8)
-                        continue
-                    }
-
-                    // Add new deinflection to the deinflection chain
-                    var newDeinflectedWord = DeinflectionInfo(
-                            newWord,
-                            rule.type shr 8,
-                            if (currDeinflectionInfo.reason.isNotEmpty()) "< ${rule.reason} ${currDeinflectionInfo.reason}" else "< ${rule.reason}"
-                    )
-                    prevSeenDeinfWords[newWord] = deinfWordChain.size
-                    deinfWordChain.add(newDeinflectedWord)
+                    matchedRules[matchedCount++] = ruleIndex
                 }
             }
-        } while (++currWordChainIndex < deinfWordChain.size)
 
-        return deinfWordChain
+            // Apply them in file order, same as trying every rule in turn would
+            Arrays.sort(matchedRules, 0, matchedCount)
+
+            for (m in 0 until matchedCount)
+            {
+                val ruleIndex = matchedRules[m]
+                val rule = _rules[ruleIndex]
+
+                // Only process rule if previous word in deinflection chain allows for such a transformation (type does not mask out)
+                if (chain.getType(currWordChainIndex) and rule.type == 0) continue
+
+                // Inflected words must be at least 2 characters in length
+                if (currWordLength - rule.from.length + rule.to.length <= 1) continue
+
+                // Adds the deinflection, or if we've seen it before under a different rule, updates its type
+                chain.add(currWordChainIndex, ruleIndex, rule.from.length, rule.to, rule.type shr 8)
+            }
+        } while (++currWordChainIndex < chain.size)
+
+        return chain
+    }
+
+    companion object
+    {
+        @Volatile
+        private var deinflector: Deinflector? = null
+
+        /**
+         * deinflect.dat never changes, so every lookup shares one Deinflector instead of re-reading it from assets
+         */
+        fun instance(context: Context): Deinflector
+        {
+            return deinflector ?: synchronized(this) {
+                deinflector ?: Deinflector(context.applicationContext).also { deinflector = it }
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -8,7 +8,16 @@ import android.os.Build
 import android.util.DisplayMetrics
 import android.util.Log
 import android.widget.Toast
-
+import ca.fuwafuwa.kaku.Database.BinaryDictionary.BinaryDictionary
+import ca.fuwafuwa.kaku.Database.KanjiDict2Database.KanjiTable
+import ca.fuwafuwa.kaku.Search.ConjugationIndex
+
+import ca.fuwafuwa.kaku.Search.DeinflectionStrategy
+import ca.fuwafuwa.kaku.Search.KeyFilter
+import ca.fuwafuwa.kaku.Search.LookupBounds
+import ca.fuwafuwa.kaku.Search.LookupEngine
+import ca.fuwafuwa.kaku.Search.Searcher
+import ca.fuwafuwa.kaku.Search.TrieDictionary
 import com.google.gson.GsonBuilder
 import java.io.File
 import java.io.FileOutputStream
@@ -33,7 +42,10 @@ enum class TextDirection(val value: Int) {
 data class Prefs(val textDirectionSetting: TextDirection,
                  val imageFilterSetting: Boolean,
                  val instantModeSetting: Boolean,
-                 val showHideSetting: Boolean);
+                 val showHideSetting: Boolean,
+                 val lookupEngineSetting: LookupEngine,
+                 val deinflectionStrategySetting: DeinflectionStrategy,
+                 val ocrChoiceLookupSetting: Boolean);
 
 // NOTE: The defValue here should match the defValue of the BroadcastReceivers, otherwise
 // they will be out of sync the first time.
@@ -45,7 +57,10 @@ fun getPrefs(context: Context): Prefs
             TextDirection.valueOf(prefs.getString(KAKU_PREF_TEXT_DIRECTION, TextDirection.AUTO.toString())),
             prefs.getBoolean(KAKU_PREF_IMAGE_FILTER, true),
             prefs.getBoolean(KAKU_PREF_INSTANT_MODE, true),
-            prefs.getBoolean(KAKU_PREF_SHOW_HIDE, true))
+            prefs.getBoolean(KAKU_PREF_SHOW_HIDE, true),
+            LookupEngine.valueOf(prefs.getString(KAKU_PREF_LOOKUP_ENGINE, LookupEngine.SQLITE.toString())),
+            DeinflectionStrategy.valueOf(prefs.getString(KAKU_PREF_DEINFLECTION_STRATEGY, DeinflectionStrategy.RUNTIME.toString())),
+            prefs.getBoolean(KAKU_PREF_OCR_CHOICE_LOOKUP, false))
 }
 
 fun toJson(obj: Any): String
@@ -112,6 +127,19 @@ fun setupKakuDatabasesAndFiles(context: Context)
             for (fileAndPath in filesAndPaths){
                 File("${fileAndPath.value}/${fileAndPath.key}").delete()
             }
+
+            // Built from the old DB, rebuilt from the new one on the next load
+            File(context.filesDir, JMDICT_BINARY_NAME).delete()
+            File(context.filesDir, KANJIDIC_TABLE_NAME).delete()
+            File(context.filesDir, JMDICT_KEY_FILTER_NAME).delete()
+            File(context.filesDir, JMDICT_LOOKUP_BOUNDS_NAME).delete()
+            BinaryDictionary.clear()
+            KanjiTable.clear()
+            KeyFilter.clear()
+            LookupBounds.clear()
+            TrieDictionary.clear()
+            ConjugationIndex.clear()
+            Searcher.clearCache()
         }
 
         copyFilesIfNotExists(context, filesAndPaths)
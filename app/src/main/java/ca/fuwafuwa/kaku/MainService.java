@@ -30,7 +30,11 @@ import android.view.Display;
 import android.view.WindowManager;
 import android.widget.Toast;
 
+import ca.fuwafuwa.kaku.Deinflictor.Deinflector;
 import ca.fuwafuwa.kaku.Interfaces.Stoppable;
+import ca.fuwafuwa.kaku.Search.DeinflectionStrategy;
+import ca.fuwafuwa.kaku.Search.LookupEngine;
+import ca.fuwafuwa.kaku.Search.Searcher;
 import ca.fuwafuwa.kaku.Windows.Window;
 import ca.fuwafuwa.kaku.Windows.WindowCoordinator;
 
@@ -106,6 +110,50 @@ public class MainService extends Service implements Stoppable {
         }
     }
 
+    public static class CycleLookupEngineMainService extends BroadcastReceiver
+    {
+        @Override
+        public void onReceive(Context context, Intent intent)
+        {
+            SharedPreferences prefs = context.getSharedPreferences(Constants.KAKU_PREF_FILE, Context.MODE_PRIVATE);
+            LookupEngine lookupEngine = LookupEngine.valueOf(prefs.getString(Constants.KAKU_PREF_LOOKUP_ENGINE, LookupEngine.SQLITE.toString()));
+            lookupEngine = LookupEngine.values()[(lookupEngine.ordinal() + 1) % LookupEngine.values().length];
+            prefs.edit().putString(Constants.KAKU_PREF_LOOKUP_ENGINE, lookupEngine.toString()).apply();
+
+            KakuTools.startKakuService(context, new Intent(context, MainService.class));
+        }
+    }
+
+    public static class CycleDeinflectionStrategyMainService extends BroadcastReceiver
+    {
+        @Override
+        public void onReceive(Context context, Intent intent)
+        {
+            SharedPreferences prefs = context.getSharedPreferences(Constants.KAKU_PREF_FILE, Context.MODE_PRIVATE);
+            DeinflectionStrategy deinflectionStrategy = DeinflectionStrategy.valueOf(prefs.getString(Constants.KAKU_PREF_DEINFLECTION_STRATEGY, DeinflectionStrategy.RUNTIME.toString()));
+            deinflectionStrategy = DeinflectionStrategy.values()[(deinflectionStrategy.ordinal() + 1) % DeinflectionStrategy.values().length];
+            prefs.edit().putString(Constants.KAKU_PREF_DEINFLECTION_STRATEGY, deinflectionStrategy.toString()).apply();
+
+            KakuTools.startKakuService(context, new Intent(context, MainService.class));
+        }
+    }
+
+    public static class ToggleOcrChoiceLookupMainService extends BroadcastReceiver
+    {
+        @Override
+        public void onReceive(Context context, Intent intent)
+        {
+            SharedPreferences prefs = context.getSharedPreferences(Constants.KAKU_PREF_FILE, Context.MODE_PRIVATE);
+            boolean ocrChoiceLookup = prefs.getBoolean(Constants.KAKU_PREF_OCR_CHOICE_LOOKUP, false);
+            prefs.edit().putBoolean(Constants.KAKU_PREF_OCR_CHOICE_LOOKUP, !ocrChoiceLookup).apply();
+
+            // Cached results were looked up with the old setting
+            Searcher.clearCache();
+
+            KakuTools.startKakuService(context, new Intent(context, MainService.class));
+        }
+    }
+
     public static class ScreenOffReceiver extends BroadcastReceiver
     {
         @Override
@@ -142,6 +190,8 @@ public class MainService extends Service implements Stoppable {
 
     private static final int VIRTUAL_DISPLAY_FLAGS = DisplayManager.VIRTUAL_DISPLAY_FLAG_OWN_CONTENT_ONLY | DisplayManager.VIRTUAL_DISPLAY_FLAG_PUBLIC;
     private static final int NOTIFICATION_ID = 1;
+    // Notifications only show three actions, the lookup settings get a notification of their own
+    private static final int LOOKUP_NOTIFICATION_ID = 2;
 
     private IntentFilter mIntentFilter = new IntentFilter(Intent.ACTION_SCREEN_OFF);
     private ScreenOffReceiver mScreenOffReceiver = new ScreenOffReceiver();
@@ -194,6 +244,18 @@ public class MainService extends Service implements Stoppable {
 
         registerReceiver(mScreenOffReceiver, mIntentFilter);
 
+        // Load the deinflection rules now instead of on the first lookup
+        final Context appContext = getApplicationContext();
+        Thread preloadThread = new Thread(new Runnable() {
+            @Override
+            public void run()
+            {
+                Deinflector.Companion.instance(appContext);
+            }
+        });
+        preloadThread.setDaemon(true);
+        preloadThread.start();
+
         startForeground(NOTIFICATION_ID, getNotification());
         isKakuRunning = true;
     }
@@ -228,6 +290,14 @@ public class MainService extends Service implements Stoppable {
         // Set notification text
         NotificationManager notificationManager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
         notificationManager.notify(NOTIFICATION_ID, getNotification());
+        if (shown)
+        {
+            notificationManager.notify(LOOKUP_NOTIFICATION_ID, getLookupNotification());
+        }
+        else
+        {
+            notificationManager.cancel(LOOKUP_NOTIFICATION_ID);
+        }
 
         return START_NOT_STICKY;
     }
@@ -255,6 +325,7 @@ public class MainService extends Service implements Stoppable {
     public void onDestroy()
     {
         stopForeground(true);
+        ((NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE)).cancel(LOOKUP_NOTIFICATION_ID);
         Log.d(TAG, "DESTORYING MAINSERVICE: " + System.identityHashCode(this));
 
         stop();
@@ -371,6 +442,36 @@ public class MainService extends Service implements Stoppable {
         return n;
     }
 
+    private Notification getLookupNotification()
+    {
+        String channelId;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O){
+            channelId = createNotificationChannel();
+        }
+        else {
+            channelId = "";
+        }
+
+        PendingIntent cycleLookupEngine = PendingIntent.getBroadcast(this, Constants.REQUEST_SERVICE_CYCLE_LOOKUP_ENGINE, new Intent(this, CycleLookupEngineMainService.class), 0);
+        PendingIntent cycleDeinflectionStrategy = PendingIntent.getBroadcast(this, Constants.REQUEST_SERVICE_CYCLE_DEINFLECTION_STRATEGY, new Intent(this, CycleDeinflectionStrategyMainService.class), 0);
+        PendingIntent toggleOcrChoiceLookup = PendingIntent.getBroadcast(this, Constants.REQUEST_SERVICE_TOGGLE_OCR_CHOICE_LOOKUP, new Intent(this, ToggleOcrChoiceLookupMainService.class), 0);
+
+        Prefs prefs = KakuTools.getPrefs(this);
+
+        Notification n = new NotificationCompat.Builder(this, channelId)
+                .setSmallIcon(R.drawable.kaku_notification_icon)
+                .setContentTitle("Kaku lookup settings")
+                .setContentText(String.format("Engine %s, deinflection %s, OCR choices %s", prefs.getLookupEngineSetting(), prefs.getDeinflectionStrategySetting(), prefs.getOcrChoiceLookupSetting() ? "on" : "off"))
+                .addAction(0, "Engine", cycleLookupEngine)
+                .addAction(0, "Deinflection", cycleDeinflectionStrategy)
+                .addAction(0, "OCR Choices", toggleOcrChoiceLookup)
+                .build();
+
+        n.flags = FLAG_ONGOING_EVENT;
+
+        return n;
+    }
+
     private void createVirtualDisplay()
     {
         // display metrics
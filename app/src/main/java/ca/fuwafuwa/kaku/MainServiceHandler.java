@@ -6,6 +6,7 @@ import android.util.Log;
 import android.widget.Toast;
 
 import ca.fuwafuwa.kaku.Ocr.OcrResult;
+import ca.fuwafuwa.kaku.Search.SearchPrefetcher;
 import ca.fuwafuwa.kaku.Windows.InformationWindow;
 import ca.fuwafuwa.kaku.Windows.InstantKanjiWindow;
 import ca.fuwafuwa.kaku.Windows.WindowCoordinator;
@@ -19,11 +20,13 @@ public class MainServiceHandler extends Handler {
 
     private MainService mKakuService;
     private WindowCoordinator mWindowCoordinator;
+    private SearchPrefetcher mSearchPrefetcher;
 
     public MainServiceHandler(MainService mainService, WindowCoordinator windowCoordinator)
     {
         mKakuService = mainService;
         mWindowCoordinator = windowCoordinator;
+        mSearchPrefetcher = new SearchPrefetcher(mainService);
     }
 
     @Override
@@ -38,6 +41,9 @@ public class MainServiceHandler extends Handler {
 
             Log.d(TAG, result.toString());
 
+            // Replaces the prefetch of the previous capture, if it's still running
+            mSearchPrefetcher.prefetch(result.getDisplayData());
+
             if (result.getDisplayData().getInstantMode())
             {
                 InstantKanjiWindow instantKanjiWindow = mWindowCoordinator.getWindowOfType(Constants.WINDOW_INSTANT_KANJI);
@@ -0,0 +1,127 @@
+package ca.fuwafuwa.kaku.Search
+
+import android.os.CancellationSignal
+
+/**
+ * Finds the readings of an OCR'd text that spell the longest dictionary keys, trying the other OCR choices of each
+ * char instead of only the top one.
+ *
+ * Every combination of choices would be choices^chars, so this is a beam search: a candidate is extended one char at a
+ * time, dropped as soon as no key starts with it, and only the [BEAM_WIDTH] cheapest candidates of each length are
+ * kept. Picking a lower ranked choice costs [CHOICE_RANK_COST] per rank.
+ *
+ * @param choices Choices for each char starting at the lookup offset, best first. Chars that weren't OCR'd have one.
+ */
+class ChoiceBeamSearch(private val prefixIndex: KeyPrefixIndex, private val choices: List<List<String>>)
+{
+    companion object
+    {
+        const val BEAM_WIDTH = 8
+        const val CHOICE_RANK_COST = 10
+
+        // A key one char longer is worth picking a choice up to this many ranks down for
+        const val MATCHED_CHAR_SCORE = 25
+
+        // Tesseract returns up to ten choices and the lookalikes add more, the tail is rarely right
+        const val MAX_CHOICES_PER_CHAR = 6
+    }
+
+    /**
+     * @property text The chosen chars, covering the first [length] chars of the lookup
+     * @property cost Sum of the rank costs of the chosen chars
+     * @property keyLength Number of chars in the longest key [text] starts with
+     * @property key The longest key [text] starts with
+     */
+    class Candidate(val text: String, val length: Int, val cost: Int, val keyLength: Int, val key: String)
+    {
+        val score: Int get() = keyLength * MATCHED_CHAR_SCORE - cost
+    }
+
+    /**
+     * Extends candidates until none of them can become a key or [deadlineNanos] (System.nanoTime) passes, whatever
+     * was found by then is returned.
+     *
+     * @return Up to [maxCandidates] distinct candidates that start with a key, best [Candidate.score] first
+     * @throws android.os.OperationCanceledException If [signal] was cancelled partway through
+     */
+    fun search(maxCandidates: Int, deadlineNanos: Long, signal: CancellationSignal? = null): List<Candidate>
+    {
+        val seen = ArrayList<Candidate>()
+        var beam = listOf(Candidate("", 0, 0, 0, ""))
+
+        for (i in 0 until choices.size)
+        {
+            signal?.throwIfCanceled()
+            if (System.nanoTime() > deadlineNanos)
+            {
+                break
+            }
+
+            val nextBeam = ArrayList<Candidate>()
+            for (candidate in beam)
+            {
+                for ((rank, choice) in choices[i].take(MAX_CHOICES_PER_CHAR).withIndex())
+                {
+                    val text = candidate.text + choice
+                    if (!prefixIndex.hasPrefix(text))
+                    {
+                        continue
+                    }
+
+                    val cost = candidate.cost + rank * CHOICE_RANK_COST
+                    if (prefixIndex.isKey(text))
+                    {
+                        nextBeam.add(Candidate(text, i + 1, cost, i + 1, text))
+                    }
+                    else
+                    {
+                        nextBeam.add(Candidate(text, i + 1, cost, candidate.keyLength, candidate.key))
+                    }
+                }
+            }
+
+            if (nextBeam.isEmpty())
+            {
+                break
+            }
+
+            // Everything in the beam is the same length, so cost decides and a key found so far breaks ties
+            nextBeam.sortWith(compareBy<Candidate>({ it.cost }, { -it.keyLength }))
+            beam = nextBeam.take(BEAM_WIDTH)
+            seen.addAll(beam)
+        }
+
+        // A candidate's key is what counts, so keep the best candidate of each key
+        val bestByKey = LinkedHashMap<String, Candidate>()
+        for (candidate in seen.sortedByDescending { it.score })
+        {
+            if (candidate.keyLength > 0 && !bestByKey.containsKey(candidate.key))
+            {
+                bestByKey[candidate.key] = candidate
+            }
+        }
+
+        return bestByKey.values.take(maxCandidates)
+    }
+
+    /**
+     * @return The lookup text for [candidate], its chosen chars followed by the top choice of every char after them
+     */
+    fun getText(candidate: Candidate): String
+    {
+        val sb = StringBuilder(candidate.text)
+        for (i in candidate.length until choices.size)
+        {
+            sb.append(choices[i][0])
+        }
+        return sb.toString()
+    }
+
+    /**
+     * @return The text of the top choices
+     */
+    fun getTopText(): String
+    {
+        return getText(Candidate("", 0, 0, 0, ""))
+    }
+}
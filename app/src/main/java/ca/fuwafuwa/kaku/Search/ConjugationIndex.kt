@@ -0,0 +1,226 @@
+package ca.fuwafuwa.kaku.Search
+
+import android.content.Context
+import android.util.Log
+import ca.fuwafuwa.kaku.DB_JMDICT_NAME
+import ca.fuwafuwa.kaku.Database.IDatabaseHelper
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.JmDatabaseHelper
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.Conjugation
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.ConjugationChain
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryOptimized
+import ca.fuwafuwa.kaku.Deinflictor.ConjugationIndexWriter
+import ca.fuwafuwa.kaku.Deinflictor.DeinflectionCandidates
+import ca.fuwafuwa.kaku.Deinflictor.DeinflectionInfo
+import ca.fuwafuwa.kaku.Deinflictor.Deinflector
+import com.j256.ormlite.dao.Dao
+import com.j256.ormlite.misc.TransactionManager
+import com.j256.ormlite.support.ConnectionSource
+import java.util.concurrent.Callable
+
+/**
+ * Looks inflected words up in the [Conjugation] table built by ConjugationIndexWriter, one indexed query per word
+ * instead of searching through every deinflection at runtime.
+ */
+class ConjugationIndex private constructor(private val dao: Dao<EntryOptimized, Int>,
+                                           private val chains: Map<Int, Chain>)
+{
+    private class Chain(val type: Int, val reasonPath: Array<String>)
+
+    fun find(word: String): DeinflectionCandidates
+    {
+        val candidates = Candidates(word)
+
+        val rows = dao.queryRaw(String.format("SELECT c.entryId, c.chainId, e.kanji FROM %s c JOIN %s e ON e.id = c.entryId WHERE c.surface = ?",
+                Conjugation.TABLE_NAME, EntryOptimized.TABLE_NAME), word)
+        try
+        {
+            for (row in rows)
+            {
+                val chain = chains[row[1].toInt()] ?: continue
+                candidates.add(row[2], row[0].toInt(), chain)
+            }
+        }
+        finally
+        {
+            rows.close()
+        }
+
+        return candidates
+    }
+
+    private class Candidates(private val word: String) : DeinflectionCandidates
+    {
+        private val bases = ArrayList<String>()
+        private val entryIds = ArrayList<Int>()
+        private val chains = ArrayList<Chain?>()
+
+        init
+        {
+            add(word, -1, null)
+        }
+
+        fun add(base: String, entryId: Int, chain: Chain?)
+        {
+            bases.add(base)
+            entryIds.add(entryId)
+            chains.add(chain)
+        }
+
+        override val size: Int get() = bases.size
+
+        override fun getWord(index: Int): CharSequence = bases[index]
+
+        override fun getType(index: Int): Int = chains[index]?.type ?: 0xFF
+
+        override fun getEntryId(index: Int): Int = entryIds[index]
+
+        override fun getDeinflectionInfo(index: Int): DeinflectionInfo
+        {
+            val chain = chains[index] ?: return DeinflectionInfo(word, 0xFF, "")
+            return DeinflectionInfo(bases[index], chain.type, chain.reasonPath)
+        }
+    }
+
+    companion object
+    {
+        private val TAG = ConjugationIndex::class.java.name
+
+        @Volatile
+        private var instance: ConjugationIndex? = null
+        @Volatile
+        private var missing = false
+        private var loading = false
+
+        /**
+         * Loads the chains on a background thread the first time it's called and returns null until they're there,
+         * lookups deinflect at runtime in the meantime. A DB migrated from before the index existed has it generated
+         * first with [build].
+         *
+         * @return The index, or null if it's still loading or the DB has no JMdict entries to index
+         */
+        fun getOrLoad(context: Context): ConjugationIndex?
+        {
+            val conjugationIndex = instance
+            if (conjugationIndex != null || missing)
+            {
+                return conjugationIndex
+            }
+
+            synchronized(this)
+            {
+                if (!loading)
+                {
+                    loading = true
+
+                    val appContext = context.applicationContext
+                    val loadThread = Thread {
+                        try
+                        {
+                            val dbHelper = JmDatabaseHelper.instance(appContext)
+                            val deinflector = Deinflector.instance(appContext)
+                            var loaded = load(dbHelper, deinflector)
+                            if (loaded == null && build(dbHelper, dbHelper.connectionSource, deinflector))
+                            {
+                                loaded = load(dbHelper, deinflector)
+                            }
+                            missing = loaded == null
+                            instance = loaded
+                        }
+                        catch (e: Exception)
+                        {
+                            e.printStackTrace()
+                        }
+                        finally
+                        {
+                            synchronized(this) { loading = false }
+                        }
+                    }
+                    loadThread.name = "ConjugationIndexLoader"
+                    loadThread.isDaemon = true
+                    loadThread.priority = Thread.MIN_PRIORITY
+                    loadThread.start()
+                }
+            }
+
+            return null
+        }
+
+        /**
+         * Drops the loaded chains, call after the conjugation table has been regenerated or updated
+         */
+        fun clear()
+        {
+            instance = null
+            missing = false
+        }
+
+        /**
+         * Generates the conjugation table from the JMdict entries already in the DB of [dbHelper], for DBs migrated
+         * from before it existed. Runs in one transaction, a build that's cut short leaves no chains behind and is
+         * started over on the next load.
+         *
+         * @return False if there were no entries to conjugate
+         */
+        fun build(dbHelper: IDatabaseHelper, connectionSource: ConnectionSource, deinflector: Deinflector): Boolean
+        {
+            val startTime = System.currentTimeMillis()
+
+            val entryDao = dbHelper.getDbDao<EntryOptimized>(EntryOptimized::class.java)
+            val writer = ConjugationIndexWriter(dbHelper, deinflector)
+
+            TransactionManager.callInTransaction(connectionSource, Callable<Void?> {
+                // Without chains any conjugations left in the table can't be resolved, start from nothing
+                entryDao.executeRaw(String.format("DELETE FROM %s", Conjugation.TABLE_NAME))
+                writer.begin()
+
+                val rows = entryDao.queryRaw(String.format("SELECT id, kanji, %s FROM %s WHERE dictionary = ? AND kanji IS NOT NULL",
+                        EntryOptimized.POS_MASK_COLUMN, EntryOptimized.TABLE_NAME), DB_JMDICT_NAME)
+                try
+                {
+                    for (row in rows)
+                    {
+                        val entry = EntryOptimized()
+                        entry.id = row[0].toInt()
+                        entry.kanji = row[1]
+                        entry.posMask = row[2]?.toInt() ?: 0
+                        writer.write(entry)
+                    }
+                }
+                finally
+                {
+                    rows.close()
+                }
+
+                writer.finish()
+                null
+            })
+
+            Log.d(TAG, "Built ${writer.conjugationCount} conjugations in ${System.currentTimeMillis() - startTime}ms")
+
+            return writer.conjugationCount > 0
+        }
+
+        /**
+         * @return The index over the DB of [dbHelper], or null if the DB was generated without one
+         */
+        fun load(dbHelper: IDatabaseHelper, deinflector: Deinflector): ConjugationIndex?
+        {
+            val chainDao = dbHelper.getDbDao<ConjugationChain>(ConjugationChain::class.java)
+            if (!chainDao.isTableExists || chainDao.countOf() == 0L)
+            {
+                return null
+            }
+
+            val chains = HashMap<Int, Chain>()
+            for (chain in chainDao.queryForAll())
+            {
+                val reasonPath = chain.rules.split(",").map { deinflector.getRule(it.toInt()).reason }.toTypedArray()
+                chains[chain.id] = Chain(chain.type, reasonPath)
+            }
+
+            Log.d(TAG, "Loaded ${chains.size} conjugation chains")
+
+            return ConjugationIndex(dbHelper.getDbDao<EntryOptimized>(EntryOptimized::class.java), chains)
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,18 @@
+package ca.fuwafuwa.kaku.Search
+
+/**
+ * How JmTask finds the base forms of inflected words
+ */
+enum class DeinflectionStrategy
+{
+    /**
+     * Breadth-first search through the deinflect.dat rules for every prefix of the lookup
+     */
+    RUNTIME,
+
+    /**
+     * One probe of the [ConjugationIndex] per prefix. Falls back to RUNTIME while the index loads, or if the DB doesn't
+     * have one.
+     */
+    INDEX
+}
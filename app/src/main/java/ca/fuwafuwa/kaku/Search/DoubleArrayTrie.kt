@@ -0,0 +1,265 @@
+package ca.fuwafuwa.kaku.Search
+
+/**
+ * Read-only double-array trie over UTF-16 chars, the layout follows darts.
+ *
+ * Every node is identified by its base. The child of a node for char code c lives at base + c, and only belongs to
+ * that node if check[base + c] == base. Code 0 is the end-of-key marker, its slot holds -(value + 1) instead of a
+ * base. Chars are remapped to dense codes by frequency before building, otherwise the size of the CJK range would
+ * leave the arrays mostly empty.
+ *
+ * @property size Number of slots in the double array
+ * @property memoryBytes Approximate heap used by the trie
+ */
+class DoubleArrayTrie private constructor(private val base: IntArray,
+                                          private val check: IntArray,
+                                          private val codes: CharArray)
+{
+    val size: Int get() = base.size
+
+    val memoryBytes: Long get() = 4L * base.size + 4L * check.size + 2L * codes.size
+
+    /**
+     * State of the empty prefix, pass to [next] to start walking the trie
+     */
+    val root: Int get() = base[0]
+
+    /**
+     * @return State after reading [c] from [state], or -1 if no key continues with [c]
+     */
+    fun next(state: Int, c: Char): Int
+    {
+        val code = codes[c.toInt()].toInt()
+        if (code == 0)
+        {
+            return -1
+        }
+
+        val p = state + code
+        return if (p < check.size && check[p] == state) base[p] else -1
+    }
+
+    /**
+     * @return Value of the key ending at [state], or -1 if [state] is only a prefix of other keys
+     */
+    fun value(state: Int): Int
+    {
+        return if (state < check.size && check[state] == state && base[state] < 0) -base[state] - 1 else -1
+    }
+
+    /**
+     * @return Value of [key], or -1 if [key] is not in the trie
+     */
+    fun exactMatch(key: CharSequence): Int
+    {
+        var state = root
+        for (i in 0 until key.length)
+        {
+            state = next(state, key[i])
+            if (state < 0)
+            {
+                return -1
+            }
+        }
+        return value(state)
+    }
+
+    /**
+     * Finds every key that is a prefix of text[start, end) in a single walk.
+     *
+     * @param onMatch Called with the length and value of each matching key, shortest first
+     */
+    inline fun commonPrefixSearch(text: CharSequence, start: Int, end: Int, onMatch: (length: Int, value: Int) -> Unit)
+    {
+        var state = root
+        var i = start
+        while (true)
+        {
+            val value = value(state)
+            if (value >= 0 && i > start)
+            {
+                onMatch(i - start, value)
+            }
+
+            if (i >= end)
+            {
+                break
+            }
+
+            state = next(state, text[i])
+            if (state < 0)
+            {
+                break
+            }
+            i++
+        }
+    }
+
+    companion object
+    {
+        /**
+         * @param keys Unique keys sorted in ascending order. The value stored for each key is its index in [keys].
+         */
+        fun build(keys: List<String>): DoubleArrayTrie
+        {
+            return Builder(keys).build()
+        }
+    }
+
+    private class Sibling(val code: Int, val depth: Int, val left: Int, var right: Int)
+
+    private class Builder(private val keys: List<String>)
+    {
+        private val codes = CharArray(Char.MAX_VALUE.toInt() + 1)
+        private var base = IntArray(1 shl 16)
+        private var check = IntArray(1 shl 16)
+        private var used = BooleanArray(1 shl 16)
+        private var nextCheckPos = 0
+        private var maxIndex = 0
+
+        fun build(): DoubleArrayTrie
+        {
+            assignCodes()
+
+            base[0] = if (keys.isEmpty()) 1 else insert(fetch(0, 0, keys.size))
+
+            val size = maxOf(maxIndex + 1, 1)
+            return DoubleArrayTrie(base.copyOf(size), check.copyOf(size), codes)
+        }
+
+        /**
+         * Most frequent chars get the smallest codes, so the siblings that are placed most often pack tightly
+         */
+        private fun assignCodes()
+        {
+            val frequency = IntArray(codes.size)
+            for (key in keys)
+            {
+                for (c in key)
+                {
+                    frequency[c.toInt()]++
+                }
+            }
+
+            val chars = (0 until frequency.size).filter { frequency[it] > 0 }.sortedByDescending { frequency[it] }
+            for ((index, c) in chars.withIndex())
+            {
+                codes[c] = (index + 1).toChar()
+            }
+        }
+
+        /**
+         * Keys in [left, right) share their first [depth] chars, returns one sibling per distinct next char
+         */
+        private fun fetch(depth: Int, left: Int, right: Int): List<Sibling>
+        {
+            val siblings = ArrayList<Sibling>()
+            var prevCode = -1
+
+            for (i in left until right)
+            {
+                val key = keys[i]
+                val code = if (key.length > depth) codes[key[depth].toInt()].toInt() else 0
+
+                if (code != prevCode)
+                {
+                    if (siblings.isNotEmpty())
+                    {
+                        siblings.last().right = i
+                    }
+                    siblings.add(Sibling(code, depth, i, right))
+                    prevCode = code
+                }
+            }
+
+            return siblings
+        }
+
+        private fun insert(siblings: List<Sibling>): Int
+        {
+            val minCode = siblings.minBy { it.code }!!.code
+            val maxCode = siblings.maxBy { it.code }!!.code
+
+            var pos = maxOf(minCode + 1, nextCheckPos) - 1
+            var nonZero = 0
+            var first = true
+            var begin = 0
+
+            search@ while (true)
+            {
+                pos++
+                ensureSize(pos + 1)
+
+                if (check[pos] != 0)
+                {
+                    nonZero++
+                    continue
+                }
+                else if (first)
+                {
+                    nextCheckPos = pos
+                    first = false
+                }
+
+                begin = pos - minCode
+                ensureSize(begin + maxCode + 1)
+
+                if (used[begin])
+                {
+                    continue
+                }
+
+                for (sibling in siblings)
+                {
+                    if (check[begin + sibling.code] != 0)
+                    {
+                        continue@search
+                    }
+                }
+
+                break
+            }
+
+            // Stop rescanning the densely packed front of the array
+            if (nonZero.toDouble() / (pos - nextCheckPos + 1) >= 0.95)
+            {
+                nextCheckPos = pos
+            }
+
+            used[begin] = true
+            maxIndex = maxOf(maxIndex, begin + maxCode)
+
+            for (sibling in siblings)
+            {
+                check[begin + sibling.code] = begin
+            }
+
+            for (sibling in siblings)
+            {
+                if (sibling.code == 0)
+                {
+                    base[begin] = -sibling.left - 1
+                }
+                else
+                {
+                    base[begin + sibling.code] = insert(fetch(sibling.depth + 1, sibling.left, sibling.right))
+                }
+            }
+
+            return begin
+        }
+
+        private fun ensureSize(size: Int)
+        {
+            if (size <= check.size)
+            {
+                return
+            }
+
+            val newSize = maxOf(size, check.size + check.size / 2)
+            base = base.copyOf(newSize)
+            check = check.copyOf(newSize)
+            used = used.copyOf(newSize)
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package ca.fuwafuwa.kaku.Search
+
+import ca.fuwafuwa.kaku.Database.BinaryDictionary.BinaryDictionary
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryOptimized
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryReading
+import com.j256.ormlite.dao.Dao
+import com.j256.ormlite.stmt.SelectArg
+import com.j256.ormlite.stmt.Where
+
+/**
+ * The dictionary entries the lookups at one or more offsets of a text can match against
+ */
+interface EntrySource
+{
+    /**
+     * @return All entries whose kanji is exactly [key]
+     */
+    fun find(key: CharSequence): List<EntryOptimized>
+}
+
+// Ids bound per IN query, stays well under SQLite's limit of 999 args
+private const val MAX_IDS_PER_QUERY = 500
+
+/**
+ * Queries only [EntryOptimized.SUMMARY_COLUMNS] of the entries matched by [where], their readings, meanings and
+ * priorities are read by [loadEntryDetails] once they're known to be displayed
+ */
+internal fun querySummaries(dao: Dao<EntryOptimized, Int>, where: (Where<EntryOptimized, Int>) -> Unit): List<EntryOptimized>
+{
+    val queryBuilder = dao.queryBuilder().selectColumns(*EntryOptimized.SUMMARY_COLUMNS)
+    where(queryBuilder.where())
+
+    val entries = queryBuilder.query()
+    for (entry in entries)
+    {
+        entry.isDetailsLoaded = false
+    }
+    return entries
+}
+
+/**
+ * Reads the columns [querySummaries] left out for every entry in [entries] that is missing them, with one query per
+ * [MAX_IDS_PER_QUERY] entries
+ */
+fun loadEntryDetails(dao: Dao<EntryOptimized, Int>, entries: Collection<EntryOptimized>)
+{
+    // The same row can be loaded more than once per lookup, e.g. by surface and by reading
+    val pending = entries.filter { !it.isDetailsLoaded }.groupBy { it.id }
+    for (ids in pending.keys.chunked(MAX_IDS_PER_QUERY))
+    {
+        val details = dao.queryBuilder().selectColumns("id", "readings", "meanings", "priorities").where().`in`("id", ids).query()
+        for (detail in details)
+        {
+            for (entry in pending[detail.id] ?: continue)
+            {
+                entry.readings = detail.readings
+                entry.meanings = detail.meanings
+                entry.priorities = detail.priorities
+                entry.isDetailsLoaded = true
+            }
+        }
+    }
+}
+
+/**
+ * Loads every entry that shares the first character of one of the lookups with indexed range queries
+ */
+class SqliteEntrySource(dao: Dao<EntryOptimized, Int>, text: String, textOffsets: IntArray) : EntrySource
+{
+    constructor(dao: Dao<EntryOptimized, Int>, text: String, textOffset: Int) : this(dao, text, intArrayOf(textOffset))
+
+    companion object
+    {
+        // Each range binds two args, stay well under SQLite's limit of 999
+        private const val MAX_RANGES_PER_QUERY = 200
+    }
+
+    // Common first chars like の return thousands of rows and every deinflection of every prefix gets probed, so group
+    // them by key once instead of scanning all of them on each probe
+    private val entriesByKanji = HashMap<String, List<EntryOptimized>>()
+    private val firstChars: String
+
+    init
+    {
+        val codePoints = textOffsets.map { text.codePointAt(it) }.distinct()
+        firstChars = textOffsets.map { text[it] }.distinct().joinToString("")
+
+        for (chunk in codePoints.chunked(MAX_RANGES_PER_QUERY))
+        {
+            // LIKE 'c%' can't use the kanji index, but every key starting with c sorts between c and the next codepoint
+            val entries = querySummaries(dao) { keyRanges ->
+                for (codePoint in chunk)
+                {
+                    keyRanges.ge("kanji", SelectArg(String(intArrayOf(codePoint), 0, 1)))
+                    if (codePoint < Character.MAX_CODE_POINT)
+                    {
+                        keyRanges.lt("kanji", SelectArg(String(intArrayOf(codePoint + 1), 0, 1)))
+                        keyRanges.and(2)
+                    }
+                }
+                if (chunk.size > 1)
+                {
+                    keyRanges.or(chunk.size)
+                }
+            }
+
+            entriesByKanji.putAll(entries.groupBy { it.kanji })
+        }
+    }
+
+    override fun find(key: CharSequence): List<EntryOptimized>
+    {
+        // Only build a String for keys that could be in the map
+        if (key.isEmpty() || firstChars.indexOf(key[0]) < 0)
+        {
+            return emptyList()
+        }
+
+        return entriesByKanji[key.toString()] ?: emptyList()
+    }
+}
+
+/**
+ * Resolves keys through the in-memory [TrieDictionary] and only loads the rows that actually matched
+ */
+class TrieEntrySource(private val trieDictionary: TrieDictionary,
+                      private val dao: Dao<EntryOptimized, Int>,
+                      text: String,
+                      textOffsets: IntArray) : EntrySource
+{
+    private val loadedEntries = HashMap<Int, List<EntryOptimized>>()
+
+    init
+    {
+        // One walk down the trie per window finds every key that is a prefix of it, load them all with a single query
+        val prefixMatches = LinkedHashSet<Int>()
+        for (textOffset in textOffsets)
+        {
+            val end = minOf(textOffset + SearchInfo.MAX_LOOKUP_LENGTH, text.length)
+            trieDictionary.trie.commonPrefixSearch(text, textOffset, end) { _, keyIndex -> prefixMatches.add(keyIndex) }
+        }
+        load(prefixMatches.toList())
+    }
+
+    override fun find(key: CharSequence): List<EntryOptimized>
+    {
+        val keyIndex = trieDictionary.trie.exactMatch(key)
+        if (keyIndex < 0)
+        {
+            return emptyList()
+        }
+
+        if (!loadedEntries.containsKey(keyIndex))
+        {
+            load(listOf(keyIndex))
+        }
+
+        return loadedEntries[keyIndex]!!
+    }
+
+    private fun load(keyIndexes: List<Int>)
+    {
+        if (keyIndexes.isEmpty())
+        {
+            return
+        }
+
+        val ids = ArrayList<Int>()
+        for (keyIndex in keyIndexes)
+        {
+            ids.addAll(trieDictionary.getEntryIds(keyIndex).asList())
+        }
+
+        val entriesById = querySummaries(dao) { it.`in`("id", ids) }.associateBy { it.id }
+
+        for (keyIndex in keyIndexes)
+        {
+            loadedEntries[keyIndex] = trieDictionary.getEntryIds(keyIndex).mapNotNull { entriesById[it] }
+        }
+    }
+}
+
+/**
+ * Looks keys up in the memory-mapped [BinaryDictionary], no SQLite or ORMLite involved
+ */
+class BinaryEntrySource(private val binaryDictionary: BinaryDictionary) : EntrySource
+{
+    // The same key is usually asked for more than once per lookup, JmTask relies on getting the same objects back
+    private val foundEntries = HashMap<Int, List<EntryOptimized>>()
+
+    override fun find(key: CharSequence): List<EntryOptimized>
+    {
+        val keyIndex = binaryDictionary.findKey(key)
+        if (keyIndex < 0)
+        {
+            return emptyList()
+        }
+
+        return foundEntries.getOrPut(keyIndex) { binaryDictionary.getEntries(keyIndex) }
+    }
+}
+
+/**
+ * Finds entries by reading through the [EntryReading] table, for kana text. Keys are folded to hiragana so katakana
+ * and hiragana find each other.
+ *
+ * The reading keys (not the entries) for the first character of every kana offset are loaded up front with range
+ * queries, entries are only loaded for keys that actually get probed.
+ */
+class ReadingEntrySource(private val dao: Dao<EntryOptimized, Int>, text: String, textOffsets: IntArray)
+{
+    private val entryIdsByKey = HashMap<String, IntArray>()
+    private val loadedEntries = HashMap<String, List<EntryOptimized>>()
+    private val firstChars: String
+
+    init
+    {
+        firstChars = textOffsets.filter { EntryReading.isKana(text.substring(it, it + 1)) }
+                .map { EntryReading.toReadingKeyChar(text[it]) }
+                .distinct()
+                .joinToString("")
+
+        for (c in firstChars)
+        {
+            val rows = dao.queryRaw(String.format("SELECT readingKey, entryId FROM %s WHERE readingKey >= ? AND readingKey < ?", EntryReading.TABLE_NAME),
+                    c.toString(), (c + 1).toString())
+            try
+            {
+                val idsByKey = HashMap<String, MutableList<Int>>()
+                for (row in rows)
+                {
+                    idsByKey.getOrPut(row[0]) { ArrayList() }.add(row[1].toInt())
+                }
+                for ((key, ids) in idsByKey)
+                {
+                    entryIdsByKey[key] = ids.toIntArray()
+                }
+            }
+            finally
+            {
+                rows.close()
+            }
+        }
+    }
+
+    /**
+     * @return Entries with a reading of [kana] in either script, empty if [kana] isn't all kana
+     */
+    fun find(kana: CharSequence): List<EntryOptimized>
+    {
+        // Only fold keys that could be in the map
+        if (kana.isEmpty() || firstChars.indexOf(EntryReading.toReadingKeyChar(kana[0])) < 0 || !EntryReading.isKana(kana))
+        {
+            return emptyList()
+        }
+
+        val key = EntryReading.toReadingKey(kana.toString())
+        val ids = entryIdsByKey[key] ?: return emptyList()
+
+        return loadedEntries.getOrPut(key) {
+            val entriesById = querySummaries(dao) { it.`in`("id", ids.toList()) }.associateBy { it.id }
+            ids.mapNotNull { entriesById[it] }
+        }
+    }
+}
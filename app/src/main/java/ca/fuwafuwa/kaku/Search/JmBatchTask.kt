@@ -0,0 +1,76 @@
+package ca.fuwafuwa.kaku.Search
+
+import android.content.Context
+import android.os.CancellationSignal
+import ca.fuwafuwa.kaku.Windows.Data.DisplayData
+
+/**
+ * Looks up every character of a [DisplayData] and splits its text into words with [JmLookup.segment], results are
+ * indexed like [DisplayData.squareChars]. Runs as [SearchScheduler.Priority.FOREGROUND] unless given another
+ * [priority].
+ *
+ * Offsets are looked up [CHUNK_SIZE] at a time and the first page of each goes into the [SearchCache] as soon as its
+ * chunk is done, so taps are served from the cache before the whole page is. A run that's preempted keeps the chunks
+ * it finished and the next run carries on from there.
+ */
+class JmBatchTask @JvmOverloads constructor(private val mDisplayData: DisplayData, private val mSearchAllDone: SearchAllDone, private val mContext: Context, private val mLookupEngine: LookupEngine, private val mDeinflectionStrategy: DeinflectionStrategy, private val mSearchCache: SearchCache, override val priority: SearchScheduler.Priority = SearchScheduler.Priority.FOREGROUND) : SearchScheduler.Task<JmBatchTask.BatchResults>
+{
+    companion object
+    {
+        // Neighbouring windows share most of their prefixes, a chunk this size still probes each of them once
+        private const val CHUNK_SIZE = 16
+    }
+
+    /**
+     * @property results First page of ranked results for each of the squareChars, same as [JmLookup.searchAll]
+     * @property segments Words of the text, see [Segmenter.segment]
+     */
+    class BatchResults(val results: List<List<JmSearchResult>>, val segments: List<Segmenter.Segment>)
+
+    // Read on the main thread, the windows can change the DisplayData
+    private val mText = mDisplayData.text
+    private val mTextOffsets = mDisplayData.textOffsets
+
+    // Only used on the scheduler thread, kept between runs. Segmenting needs every match, not only the first page.
+    private val mMatches = ArrayList<List<JmSearchResult>>(mTextOffsets.size)
+
+    interface SearchAllDone
+    {
+        fun searchAllCallback(results: List<List<JmSearchResult>>, segments: List<Segmenter.Segment>, displayData: DisplayData)
+    }
+
+    override fun run(signal: CancellationSignal): BatchResults
+    {
+        // Like JmTask, the dictionaries are opened on the scheduler thread
+        val lookup = JmLookup(mContext, mLookupEngine, mDeinflectionStrategy)
+
+        while (mMatches.size < mTextOffsets.size)
+        {
+            val chunkOffsets = mTextOffsets.copyOfRange(mMatches.size, minOf(mMatches.size + CHUNK_SIZE, mTextOffsets.size))
+            val chunkMatches = lookup.matchAll(mText, chunkOffsets, signal)
+
+            // Taps on any of these characters can be served from the cache now
+            for ((i, textOffset) in chunkOffsets.withIndex())
+            {
+                mSearchCache.put(SearchInfo.getLookupWindow(mText, textOffset), chunkMatches[i].take(JmLookup.PAGE_SIZE))
+            }
+            mMatches.addAll(chunkMatches)
+        }
+
+        signal.throwIfCanceled()
+        val segments = lookup.segment(mText, mTextOffsets, mMatches)
+
+        return BatchResults(mMatches.map { it.take(JmLookup.PAGE_SIZE) }, segments)
+    }
+
+    override fun onResult(result: BatchResults)
+    {
+        // Edited while the lookup ran, the results would be indexed by the old chars
+        if (mDisplayData.text != mText)
+        {
+            return
+        }
+
+        mSearchAllDone.searchAllCallback(result.results, result.segments, mDisplayData)
+    }
+}
@@ -0,0 +1,572 @@
+package ca.fuwafuwa.kaku.Search
+
+import android.content.Context
+import android.os.CancellationSignal
+import android.util.Log
+import ca.fuwafuwa.kaku.Database.BinaryDictionary.BinaryDictionary
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.JmDatabaseHelper
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryOptimized
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryReading
+import ca.fuwafuwa.kaku.Deinflictor.DeinflectionCandidates
+import ca.fuwafuwa.kaku.Deinflictor.DeinflectionChain
+import ca.fuwafuwa.kaku.Deinflictor.DeinflectionInfo
+import ca.fuwafuwa.kaku.Deinflictor.Deinflector
+import com.j256.ormlite.dao.Dao
+import java.sql.SQLException
+import java.util.ArrayList
+import kotlin.collections.HashSet
+import kotlin.collections.List
+
+/**
+ * The dictionary lookup behind [JmTask], kept apart from it so [JmBatchTask] can run the same lookup. Safe to
+ * share between threads, every lookup has its own state.
+ *
+ * The primary constructor takes the dictionaries directly so lookups can run outside of Android, [entryDao] is only
+ * needed if there's no [binaryDictionary]. Without a [keyFilter] every probe goes to the index or DB, without
+ * [lookupBounds] every prefix of the window is deinflected.
+ */
+class JmLookup @JvmOverloads constructor(private val mEntryDao: Dao<EntryOptimized, Int>?,
+                                         private val mDeinflector: Deinflector,
+                                         private val mTrieDictionary: TrieDictionary?,
+                                         private val mBinaryDictionary: BinaryDictionary?,
+                                         private val mConjugationIndex: ConjugationIndex?,
+                                         private val mKeyFilter: KeyFilter? = null,
+                                         private val mLookupBounds: LookupBounds? = null)
+{
+    companion object
+    {
+        private val TAG = JmLookup::class.java.getName()
+
+        // Results per page, the windows only show a handful and ask for more when scrolled to the end
+        const val PAGE_SIZE = 10
+
+        // Ranks are 1-130 or NO_PRIORITY_RANK, which still sorts last when capped to the 30 bits left in the sort key
+        private const val MAX_SORT_PRIORITY_RANK = (1 shl 30) - 1
+
+        // Readings from the beam search that get a full lookup, besides the top choices
+        private const val MAX_CHOICE_CANDIDATES = 3
+    }
+
+    @Throws(SQLException::class)
+    constructor(context: Context, lookupEngine: LookupEngine, deinflectionStrategy: DeinflectionStrategy) : this(
+            JmDatabaseHelper.instance(context).getDbDao<EntryOptimized>(EntryOptimized::class.java),
+            Deinflector.instance(context),
+            if (lookupEngine == LookupEngine.TRIE) TrieDictionary.getOrLoad(context) else null,
+            if (lookupEngine == LookupEngine.BINARY) BinaryDictionary.instance(context) else null,
+            if (deinflectionStrategy == DeinflectionStrategy.INDEX) ConjugationIndex.getOrLoad(context) else null,
+            KeyFilter.getOrLoad(context),
+            LookupBounds.getOrLoad(context))
+
+    /**
+     * @return Page [page] of the ranked results for the window of [text] starting at [textOffset], see
+     * [SearchInfo.getLookupWindow]. Fewer than [PAGE_SIZE] results means it's the last page.
+     * @throws android.os.OperationCanceledException If [signal] was cancelled partway through
+     */
+    @Throws(SQLException::class)
+    fun search(text: String, textOffset: Int, signal: CancellationSignal? = null, page: Int = 0): List<JmSearchResult>
+    {
+        val results = lookup(text, intArrayOf(textOffset), signal, page * PAGE_SIZE, PAGE_SIZE)[0]
+        loadDetails(results)
+        return results
+    }
+
+    /**
+     * Looks up every offset in [textOffsets] in one pass. The entries for all of them are loaded up front with a single
+     * query, and every word is only deinflected and probed once however many windows it shows up in.
+     *
+     * @return The first page of ranked results for each offset, in the same order as [textOffsets]
+     * @throws android.os.OperationCanceledException If [signal] was cancelled partway through
+     */
+    @Throws(SQLException::class)
+    fun searchAll(text: String, textOffsets: IntArray, signal: CancellationSignal? = null): List<List<JmSearchResult>>
+    {
+        val results = lookup(text, textOffsets, signal, 0, PAGE_SIZE)
+        loadDetails(results.flatten())
+        return results
+    }
+
+    /**
+     * Entries are only loaded with [EntryOptimized.SUMMARY_COLUMNS] here, callers load the details of the results
+     * they return with [loadDetails]
+     *
+     * @return [count] ranked results for each offset, starting at rank [from]
+     */
+    @Throws(SQLException::class)
+    private fun lookup(text: String, textOffsets: IntArray, signal: CancellationSignal?, from: Int, count: Int): List<List<JmSearchResult>>
+    {
+        val startDictTime = System.currentTimeMillis()
+
+        // The trie is built in the background the first time it's asked for and the binary dictionary may not have been
+        // compiled, use SQLite until they're there
+        val lookupEngine: LookupEngine
+        val entrySource: EntrySource
+        if (mBinaryDictionary != null)
+        {
+            lookupEngine = LookupEngine.BINARY
+            entrySource = BinaryEntrySource(mBinaryDictionary)
+        }
+        else if (mTrieDictionary != null)
+        {
+            lookupEngine = LookupEngine.TRIE
+            entrySource = TrieEntrySource(mTrieDictionary, checkNotNull(mEntryDao), text, textOffsets)
+        }
+        else
+        {
+            lookupEngine = LookupEngine.SQLITE
+            entrySource = SqliteEntrySource(checkNotNull(mEntryDao), text, textOffsets)
+        }
+
+        // Kana text also gets looked up by reading, whichever engine is used for the surface
+        val readingSource = if (mEntryDao != null) ReadingEntrySource(mEntryDao, text, textOffsets) else null
+
+        // Looking for the longest key prefix is a few walks of the trie or binary searches, but a query per char on SQLite
+        val prefixIndex = if (lookupEngine == LookupEngine.SQLITE) null else getKeyPrefixIndex()
+
+        val filter = ProbeFilter(mKeyFilter)
+        val deinfChain = DeinflectionChain()
+        val probes = HashMap<String, WordProbe>()
+        val results = ArrayList<List<JmSearchResult>>(textOffsets.size)
+        var windowChars = 0
+        var boundedChars = 0
+        for (textOffset in textOffsets)
+        {
+            val window = SearchInfo.getLookupWindow(text, textOffset)
+            val boundedWindow = window.substring(0, getMaxWordLength(window, prefixIndex))
+            windowChars += window.length
+            boundedChars += boundedWindow.length
+            results.add(rankResults(getMatchedEntries(boundedWindow, entrySource, readingSource, filter, deinfChain, probes, signal), from, count))
+        }
+
+        Log.d(TAG, "Dict lookup time ($lookupEngine, ${if (mConjugationIndex != null) DeinflectionStrategy.INDEX else DeinflectionStrategy.RUNTIME}, ${textOffsets.size} offsets): ${System.currentTimeMillis() - startDictTime}")
+        if (mKeyFilter != null)
+        {
+            Log.d(TAG, "Key filter: ${filter.rejected} probes skipped, ${filter.passed} passed, ${filter.falsePositives} of them false positives")
+        }
+        if (mLookupBounds != null)
+        {
+            Log.d(TAG, "Lookup bounds: $boundedChars of $windowChars prefixes deinflected")
+        }
+
+        return results
+    }
+
+    /**
+     * Looks up the text spelled by the top choices and by the best few [ChoiceBeamSearch] candidates, and keeps
+     * whichever matched the longest word for the fewest lower ranked choices. Candidates are only looked up while
+     * there's time left in [budgetMs], the top choices always are.
+     *
+     * @param choices Choices for each char from the lookup offset on, best first
+     * @return The text spelled by the best reading with its first page of ranked results, [JmSearchResult.word] is the
+     * part of it that was matched. Later pages are a [search] of that text.
+     * @throws android.os.OperationCanceledException If [signal] was cancelled partway through
+     */
+    @Throws(SQLException::class)
+    fun searchChoices(choices: List<List<String>>, budgetMs: Long, signal: CancellationSignal? = null): ChoiceResults
+    {
+        val startTime = System.nanoTime()
+        val deadline = startTime + budgetMs * 1000000
+
+        val beamSearch = ChoiceBeamSearch(getKeyPrefixIndex(), choices)
+        val topText = beamSearch.getTopText()
+        var bestText = topText
+        var bestResults = search(topText, 0, signal)
+        var bestScore = getChoiceScore(bestResults, 0)
+
+        val candidates = beamSearch.search(MAX_CHOICE_CANDIDATES, deadline, signal)
+        for (candidate in candidates)
+        {
+            if (System.nanoTime() > deadline)
+            {
+                break
+            }
+
+            val text = beamSearch.getText(candidate)
+            if (text == topText)
+            {
+                continue
+            }
+
+            val results = search(text, 0, signal)
+            val score = getChoiceScore(results, candidate.cost)
+            if (score > bestScore)
+            {
+                bestText = text
+                bestResults = results
+                bestScore = score
+            }
+        }
+
+        Log.d(TAG, "Choice lookup time (${candidates.size} candidates, best ${bestResults.firstOrNull()?.word}): ${(System.nanoTime() - startTime) / 1000000}")
+
+        return ChoiceResults(bestText, bestResults)
+    }
+
+    /**
+     * Like [searchAll], but keeps every match of each offset in rank order, which is what [segment] needs. Only the
+     * first [PAGE_SIZE] of each, what [searchAll] returns, have their details loaded.
+     *
+     * @throws android.os.OperationCanceledException If [signal] was cancelled partway through
+     */
+    @Throws(SQLException::class)
+    fun matchAll(text: String, textOffsets: IntArray, signal: CancellationSignal? = null): List<List<JmSearchResult>>
+    {
+        val matches = lookup(text, textOffsets, signal, 0, Int.MAX_VALUE)
+        loadDetails(matches.flatMap { it.take(PAGE_SIZE) })
+        return matches
+    }
+
+    /**
+     * Splits [text] into words with [Segmenter] over the [matches] of [matchAll] for every one of [textOffsets]. Only
+     * the first page of results of each segment is kept and has its details loaded.
+     */
+    @Throws(SQLException::class)
+    fun segment(text: String, textOffsets: IntArray, matches: List<List<JmSearchResult>>): List<Segmenter.Segment>
+    {
+        val startSegmentTime = System.currentTimeMillis()
+        val segments = Segmenter.segment(text, textOffsets, matches).map {
+            Segmenter.Segment(it.startIndex, it.endIndex, it.word, it.results.take(PAGE_SIZE))
+        }
+        Log.d(TAG, "Segmentation time (${textOffsets.size} offsets, ${segments.size} segments): ${System.currentTimeMillis() - startSegmentTime}")
+
+        loadDetails(segments.flatMap { it.results })
+        return segments
+    }
+
+    @Throws(SQLException::class)
+    private fun loadDetails(results: List<JmSearchResult>)
+    {
+        // Binary dictionary entries decode their own fields, only entries from SQLite can be missing them
+        if (mEntryDao != null)
+        {
+            loadEntryDetails(mEntryDao, results.map { it.entry })
+        }
+    }
+
+    /**
+     * @return How much of [window] can be a word: no longer than [LookupBounds] allows for its first char and, if a
+     * [prefixIndex] is given, than the longest key prefix it starts with plus an inflection
+     */
+    private fun getMaxWordLength(window: String, prefixIndex: KeyPrefixIndex?): Int
+    {
+        if (mLookupBounds == null || window.isEmpty())
+        {
+            return window.length
+        }
+
+        var maxLength = minOf(window.length, mLookupBounds.getMaxLength(window[0]))
+
+        // Readings aren't in the prefix index, and a word that starts with kana could be one
+        if (prefixIndex != null && maxLength > 0 && !EntryReading.isKana(window.subSequence(0, 1)))
+        {
+            maxLength = minOf(maxLength, prefixIndex.longestPrefix(window, maxLength) + mLookupBounds.maxInflectionTail)
+        }
+
+        return maxLength
+    }
+
+    private fun getKeyPrefixIndex(): KeyPrefixIndex
+    {
+        return when
+        {
+            mBinaryDictionary != null -> BinaryPrefixIndex(mBinaryDictionary)
+            mTrieDictionary != null -> TriePrefixIndex(mTrieDictionary.trie)
+            else -> SqlitePrefixIndex(checkNotNull(mEntryDao))
+        }
+    }
+
+    /**
+     * Same trade off as [ChoiceBeamSearch.Candidate.score], but for the word the lookup actually matched, which
+     * can be longer than the key once it's been deinflected
+     */
+    private fun getChoiceScore(results: List<JmSearchResult>, cost: Int): Int
+    {
+        val matchLength = results.firstOrNull()?.word?.length ?: 0
+        return matchLength * ChoiceBeamSearch.MATCHED_CHAR_SCORE - cost
+    }
+
+    /**
+     * What [searchChoices] found, [text] is the reading its [results] were looked up in
+     */
+    class ChoiceResults(val text: String, val results: List<JmSearchResult>)
+
+    /**
+     * Every candidate of one word that had entries, which only depends on the word so it can be shared between windows
+     */
+    private class WordProbe(val hits: List<ProbeHit>, val exactMatches: List<EntryOptimized>)
+
+    private class ProbeHit(val entries: List<EntryOptimized>, val type: Int, val entryId: Int, val deinfInfo: DeinflectionInfo, val readingMatch: Boolean)
+
+    /**
+     * Only asks the sources for words the [KeyFilter] can't rule out, and counts how often it was wrong
+     */
+    private class ProbeFilter(private val keyFilter: KeyFilter?)
+    {
+        var rejected = 0
+        var passed = 0
+        var falsePositives = 0
+
+        @Throws(SQLException::class)
+        fun find(entrySource: EntrySource, word: CharSequence): List<EntryOptimized>
+        {
+            if (keyFilter == null)
+            {
+                return entrySource.find(word)
+            }
+            return count(keyFilter.mightContain(word)) { entrySource.find(word) }
+        }
+
+        @Throws(SQLException::class)
+        fun findReading(readingSource: ReadingEntrySource?, word: CharSequence): List<EntryOptimized>
+        {
+            // Not kana, the reading source won't look at it anyway
+            if (readingSource == null || !EntryReading.isKana(word))
+            {
+                return emptyList()
+            }
+            if (keyFilter == null)
+            {
+                return readingSource.find(word)
+            }
+            return count(keyFilter.mightContainReading(word)) { readingSource.find(word) }
+        }
+
+        private inline fun count(mightContain: Boolean, find: () -> List<EntryOptimized>): List<EntryOptimized>
+        {
+            if (!mightContain)
+            {
+                rejected++
+                return emptyList()
+            }
+
+            passed++
+            val entries = find()
+            if (entries.isEmpty())
+            {
+                falsePositives++
+            }
+            return entries
+        }
+    }
+
+    @Throws(SQLException::class)
+    private fun probe(word: String, entrySource: EntrySource, readingSource: ReadingEntrySource?, filter: ProbeFilter, deinfChain: DeinflectionChain): WordProbe
+    {
+        // Find deinflections, only candidates that matched get a DeinflectionInfo and its reason is built when it's displayed
+        val deinfCandidates: DeinflectionCandidates = mConjugationIndex?.find(word) ?: mDeinflector.deinflect(word, deinfChain)
+        var hits: MutableList<ProbeHit>? = null
+        for (i in 0 until deinfCandidates.size)
+        {
+            val candidate = deinfCandidates.getWord(i)
+            val entries = filter.find(entrySource, candidate)
+            var readingEntries = filter.findReading(readingSource, candidate)
+
+            // An entry can be found both ways when its kanji is kana, the surface match wins
+            if (readingEntries.isNotEmpty() && entries.isNotEmpty())
+            {
+                val surfaceIds = entries.mapTo(HashSet()) { it.id }
+                readingEntries = readingEntries.filter { !surfaceIds.contains(it.id) }
+            }
+
+            if (entries.isEmpty() && readingEntries.isEmpty())
+            {
+                continue
+            }
+
+            if (hits == null)
+            {
+                hits = ArrayList()
+            }
+
+            val deinfInfo = deinfCandidates.getDeinflectionInfo(i)
+            if (entries.isNotEmpty())
+            {
+                hits.add(ProbeHit(entries, deinfCandidates.getType(i), deinfCandidates.getEntryId(i), deinfInfo, false))
+            }
+            if (readingEntries.isNotEmpty())
+            {
+                hits.add(ProbeHit(readingEntries, deinfCandidates.getType(i), deinfCandidates.getEntryId(i), deinfInfo, true))
+            }
+        }
+
+        return WordProbe(hits ?: emptyList<ProbeHit>(), filter.find(entrySource, word))
+    }
+
+    @Throws(SQLException::class)
+    private fun getMatchedEntries(window: String, entrySource: EntrySource, readingSource: ReadingEntrySource?, filter: ProbeFilter, deinfChain: DeinflectionChain, probes: MutableMap<String, WordProbe>, signal: CancellationSignal?): List<JmSearchResult>
+    {
+        var word = window
+        val seenEntries = HashSet<EntryOptimized>()
+        val results = ArrayList<JmSearchResult>()
+
+        while (word.isNotEmpty())
+        {
+            signal?.throwIfCanceled()
+
+            val probe = probes.getOrPut(word) { probe(word, entrySource, readingSource, filter, deinfChain) }
+
+            // Add deinflections
+            var count = 0
+            for (hit in probe.hits)
+            {
+                for (entry in hit.entries){
+
+                    if (seenEntries.contains(entry)){
+                        continue
+                    }
+
+                    // Conjugations from the index only belong to the entry they were generated from
+                    if (hit.entryId >= 0 && entry.id != hit.entryId){
+                        continue
+                    }
+
+                    var valid = true
+
+                    if (count > 0)
+                    {
+                        valid = (hit.type and entry.posMask) != 0
+                    }
+
+                    if (valid){
+                        results.add(JmSearchResult(entry, hit.deinfInfo, word, hit.readingMatch))
+                        seenEntries.add(entry)
+                    }
+
+                    count++
+                }
+            }
+
+            // Add all exact matches as well
+            for (entry in probe.exactMatches)
+            {
+                if (seenEntries.contains(entry))
+                {
+                    continue
+                }
+
+                results.add(JmSearchResult(entry, DeinflectionInfo(word, 0, ""), word))
+                seenEntries.add(entry)
+            }
+
+            word = word.substring(0, word.length - 1)
+        }
+
+        return results
+    }
+
+    /**
+     * @return [count] results starting at rank [from]. Only the best from + count are ever put in order: they're kept
+     * in a bounded max-heap of indexes by sort key, and every other result is dropped as soon as it can't make it.
+     */
+    private fun rankResults(results: List<JmSearchResult>, from: Int, count: Int) : List<JmSearchResult>
+    {
+        val limit = minOf(results.size.toLong(), from.toLong() + count).toInt()
+        if (from >= limit)
+        {
+            return emptyList()
+        }
+
+        val sortKeys = LongArray(results.size) { getSortKey(results[it]) }
+
+        // Worst of the kept results at the root
+        val heap = IntArray(limit)
+        var heapSize = 0
+        for (i in results.indices)
+        {
+            if (heapSize < limit)
+            {
+                heap[heapSize] = i
+                siftUp(heap, heapSize, sortKeys)
+                heapSize++
+            }
+            else if (ranksBefore(i, heap[0], sortKeys))
+            {
+                heap[0] = i
+                siftDown(heap, heapSize, sortKeys)
+            }
+        }
+
+        // Popping the worst each time fills the ranking from the back
+        val ranked = IntArray(heapSize)
+        while (heapSize > 0)
+        {
+            ranked[heapSize - 1] = heap[0]
+            heap[0] = heap[heapSize - 1]
+            heapSize--
+            siftDown(heap, heapSize, sortKeys)
+        }
+
+        return (from until limit).map { results[ranked[it]] }
+    }
+
+    /**
+     * Results with the same key keep the order they were found in, so the index breaks ties
+     */
+    private fun ranksBefore(a: Int, b: Int, sortKeys: LongArray): Boolean
+    {
+        return sortKeys[a] < sortKeys[b] || (sortKeys[a] == sortKeys[b] && a < b)
+    }
+
+    private fun siftUp(heap: IntArray, index: Int, sortKeys: LongArray)
+    {
+        var child = index
+        while (child > 0)
+        {
+            val parent = (child - 1) / 2
+            if (!ranksBefore(heap[parent], heap[child], sortKeys))
+            {
+                break
+            }
+            swap(heap, parent, child)
+            child = parent
+        }
+    }
+
+    private fun siftDown(heap: IntArray, size: Int, sortKeys: LongArray)
+    {
+        var parent = 0
+        while (true)
+        {
+            var worst = parent
+            val left = 2 * parent + 1
+            val right = left + 1
+            if (left < size && ranksBefore(heap[worst], heap[left], sortKeys))
+            {
+                worst = left
+            }
+            if (right < size && ranksBefore(heap[worst], heap[right], sortKeys))
+            {
+                worst = right
+            }
+            if (worst == parent)
+            {
+                break
+            }
+            swap(heap, parent, worst)
+            parent = worst
+        }
+    }
+
+    private fun swap(heap: IntArray, a: Int, b: Int)
+    {
+        val tmp = heap[a]
+        heap[a] = heap[b]
+        heap[b] = tmp
+    }
+
+    /**
+     * Packs what results are ranked by into one long, most significant first: [EntryOptimized.getDictionaryId], longest match, surface
+     * before reading matches, primary entry, then [EntryOptimized.getPriorityRank]
+     */
+    private fun getSortKey(result: JmSearchResult) : Long
+    {
+        val entry = result.entry
+
+        // What was matched, for surface matches that's the entry's kanji
+        val matchLength = minOf(result.deinfInfo.word.length, 0xFFFF)
+        return (entry.dictionaryId.toLong() shl 48) or
+               ((0xFFFF - matchLength).toLong() shl 32) or
+               ((if (result.readingMatch) 1L else 0L) shl 31) or
+               ((if (entry.isPrimaryEntry) 0L else 1L) shl 30) or
+               minOf(entry.priorityRank, MAX_SORT_PRIORITY_RANK).toLong()
+    }
+}
@@ -3,8 +3,13 @@ package ca.fuwafuwa.kaku.Search
 import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryOptimized
 import ca.fuwafuwa.kaku.Deinflictor.DeinflectionInfo
 
+/**
+ * @property word The text that was matched, starting at the lookup offset
+ * @property readingMatch True if [entry] was found by reading rather than by its kanji
+ */
 data class JmSearchResult(
         val entry: EntryOptimized,
         val deinfInfo: DeinflectionInfo,
-        val word: String
+        val word: String,
+        val readingMatch: Boolean = false
 )
\ No newline at end of file
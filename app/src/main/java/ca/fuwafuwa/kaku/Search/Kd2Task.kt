@@ -1,12 +1,13 @@
 package ca.fuwafuwa.kaku.Search
 
 import android.content.Context
-import android.os.AsyncTask
+import android.os.CancellationSignal
 
 import com.j256.ormlite.dao.Dao
 
 import java.sql.SQLException
 
+import ca.fuwafuwa.kaku.Database.KanjiDict2Database.KanjiTable
 import ca.fuwafuwa.kaku.Database.KanjiDict2Database.Kd2DatabaseHelper
 import ca.fuwafuwa.kaku.Database.KanjiDict2Database.Models.CharacterOptimized
 
@@ -15,15 +16,16 @@ import ca.fuwafuwa.kaku.Database.KanjiDict2Database.Models.CharacterOptimized
  */
 
 class Kd2Task @Throws(SQLException::class)
-constructor(private val mSearchInfo: SearchInfo, private val mSearchKd2TaskDone: SearchKd2TaskDone, context: Context) : AsyncTask<Void, Void, List<CharacterOptimized>>()
+constructor(private val mSearchInfo: SearchInfo, private val mSearchKd2TaskDone: SearchKd2TaskDone, context: Context) : SearchScheduler.Task<List<CharacterOptimized>>
 {
     companion object
     {
         private val TAG = Kd2Task::class.java.name
     }
 
-    private val mKd2DbHelper: Kd2DatabaseHelper
-    private val mCharacterOptimizedDao: Dao<CharacterOptimized, Int>
+    // The compiled table is a direct lookup by codepoint, the DB is only used until it's been compiled
+    private val mKanjiTable: KanjiTable? = KanjiTable.instance(context)
+    private val mCharacterOptimizedDao: Dao<CharacterOptimized, Int>?
 
     interface SearchKd2TaskDone
     {
@@ -32,17 +34,26 @@ constructor(private val mSearchInfo: SearchInfo, private val mSearchKd2TaskDone:
 
     init
     {
-        this.mKd2DbHelper = Kd2DatabaseHelper.instance(context)
-        this.mCharacterOptimizedDao = mKd2DbHelper.getDbDao(CharacterOptimized::class.java)
+        this.mCharacterOptimizedDao = if (mKanjiTable == null) Kd2DatabaseHelper.instance(context).getDbDao(CharacterOptimized::class.java) else null
     }
 
-    override fun doInBackground(vararg params: Void): List<CharacterOptimized>
+    // Read on the main thread, SearchInfo reads the DisplayData which the windows can change
+    private val mCodePoint = mSearchInfo.text.codePointAt(mSearchInfo.textOffset)
+
+    override val priority = SearchScheduler.Priority.FOREGROUND
+
+    override fun run(signal: CancellationSignal): List<CharacterOptimized>
     {
-        val character = String(intArrayOf(mSearchInfo.text.codePointAt(mSearchInfo.textOffset)), 0, 1).replace("%", "\\%")
-        return mCharacterOptimizedDao.queryBuilder().where().like("kanji", "$character%").query().toList()
+        if (mKanjiTable != null)
+        {
+            val character = mKanjiTable.find(mCodePoint)
+            return if (character == null) emptyList() else listOf(character)
+        }
+
+        return checkNotNull(mCharacterOptimizedDao).queryForEq("kanji", String(intArrayOf(mCodePoint), 0, 1)).toList()
     }
 
-    override fun onPostExecute(result: List<CharacterOptimized>)
+    override fun onResult(result: List<CharacterOptimized>)
     {
         mSearchKd2TaskDone.kd2TaskCallback(result, mSearchInfo)
     }
@@ -0,0 +1,293 @@
+package ca.fuwafuwa.kaku.Search
+
+import android.content.Context
+import android.util.Log
+import ca.fuwafuwa.kaku.Database.IDatabaseHelper
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.JmDatabaseHelper
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryOptimized
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryReading
+import ca.fuwafuwa.kaku.JMDICT_KEY_FILTER_NAME
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
+
+/**
+ * Bloom filter of every EntryOptimized.kanji and every [EntryReading] key. Almost none of the prefixes and
+ * deinflections [JmLookup] probes are in the dictionary, the filter rules most of them out before the index or DB is
+ * touched. A "no" is always right, a "maybe" is wrong about [expectedFalsePositiveRate] of the time.
+ *
+ * Keys are hashed straight from their chars, readings through [EntryReading.toReadingKeyChar], so probing allocates
+ * nothing.
+ *
+ * @property keyCount Number of keys added
+ * @property hashCount Bits set per key
+ * @property memoryBytes Heap used by the bits
+ */
+class KeyFilter private constructor(private val bits: LongArray, val keyCount: Int, val hashCount: Int)
+{
+    val memoryBytes: Long get() = 8L * bits.size
+
+    /**
+     * (1 - e^(-kn/m))^k for k hashes, n keys and m bits
+     */
+    val expectedFalsePositiveRate: Double
+        get() = Math.pow(1 - Math.exp(-hashCount.toDouble() * keyCount / (64.0 * bits.size)), hashCount.toDouble())
+
+    /**
+     * @return False if [key] is definitely not an EntryOptimized.kanji
+     */
+    fun mightContain(key: CharSequence): Boolean
+    {
+        return mightContain(key, false)
+    }
+
+    /**
+     * @return False if [kana] is definitely not a reading, in either script
+     */
+    fun mightContainReading(kana: CharSequence): Boolean
+    {
+        return mightContain(kana, true)
+    }
+
+    private fun mightContain(key: CharSequence, fold: Boolean): Boolean
+    {
+        val h1 = hash(key, fold, SEED_1)
+        val h2 = hash(key, fold, SEED_2) or 1
+        val bitCount = 64L * bits.size
+
+        for (i in 0 until hashCount)
+        {
+            val bit = ((h1 + i.toLong() * h2) and Long.MAX_VALUE) % bitCount
+            if (bits[(bit ushr 6).toInt()] and (1L shl (bit and 63).toInt()) == 0L)
+            {
+                return false
+            }
+        }
+        return true
+    }
+
+    @Throws(IOException::class)
+    fun writeTo(file: File)
+    {
+        DataOutputStream(BufferedOutputStream(FileOutputStream(file))).use { out ->
+            out.writeInt(MAGIC)
+            out.writeInt(VERSION)
+            out.writeInt(keyCount)
+            out.writeInt(hashCount)
+            out.writeInt(bits.size)
+            for (word in bits)
+            {
+                out.writeLong(word)
+            }
+        }
+    }
+
+    /**
+     * Adds keys and readings, sized up front for [expectedKeys] at [BITS_PER_KEY]
+     */
+    class Builder(expectedKeys: Int)
+    {
+        private val bits = LongArray(maxOf((expectedKeys.toLong() * BITS_PER_KEY / 64).toInt(), 1))
+        private var keyCount = 0
+
+        fun addKey(key: CharSequence)
+        {
+            add(key, false)
+        }
+
+        fun addReading(kana: CharSequence)
+        {
+            add(kana, true)
+        }
+
+        fun build(): KeyFilter
+        {
+            return KeyFilter(bits, keyCount, HASH_COUNT)
+        }
+
+        private fun add(key: CharSequence, fold: Boolean)
+        {
+            val h1 = hash(key, fold, SEED_1)
+            val h2 = hash(key, fold, SEED_2) or 1
+            val bitCount = 64L * bits.size
+
+            for (i in 0 until HASH_COUNT)
+            {
+                val bit = ((h1 + i.toLong() * h2) and Long.MAX_VALUE) % bitCount
+                bits[(bit ushr 6).toInt()] = bits[(bit ushr 6).toInt()] or (1L shl (bit and 63).toInt())
+            }
+            keyCount++
+        }
+    }
+
+    companion object
+    {
+        private val TAG = KeyFilter::class.java.name
+
+        private const val MAGIC = 0x4B424C4D // "KBLM"
+        private const val VERSION = 1
+
+        // 10 bits and 7 hashes per key is a false positive rate just under 1%
+        const val BITS_PER_KEY = 10
+        const val HASH_COUNT = 7
+
+        private const val SEED_1 = -0x3c5a37a36834ced9L
+        private const val SEED_2 = 0x27d4eb2f165667c5L
+
+        @Volatile
+        private var instance: KeyFilter? = null
+        private var loading = false
+
+        /**
+         * Reads the filter from filesDir, or builds it from the DB and saves it there if it was never written. Either
+         * way the first call only starts it on a background thread and returns null until it's done, lookups go
+         * without a filter in the meantime.
+         */
+        fun getOrLoad(context: Context): KeyFilter?
+        {
+            val keyFilter = instance
+            if (keyFilter != null)
+            {
+                return keyFilter
+            }
+
+            synchronized(this)
+            {
+                if (!loading)
+                {
+                    loading = true
+
+                    val appContext = context.applicationContext
+                    val loadThread = Thread {
+                        try
+                        {
+                            instance = load(appContext)
+                        }
+                        catch (e: Exception)
+                        {
+                            e.printStackTrace()
+                        }
+                        finally
+                        {
+                            synchronized(this) { loading = false }
+                        }
+                    }
+                    loadThread.name = "KeyFilterLoader"
+                    loadThread.isDaemon = true
+                    loadThread.priority = Thread.MIN_PRIORITY
+                    loadThread.start()
+                }
+            }
+
+            return null
+        }
+
+        /**
+         * Drops the loaded filter, call after the dictionary has been regenerated
+         */
+        fun clear()
+        {
+            instance = null
+        }
+
+        @Throws(IOException::class)
+        fun open(file: File): KeyFilter
+        {
+            DataInputStream(BufferedInputStream(FileInputStream(file))).use { input ->
+                if (input.readInt() != MAGIC || input.readInt() != VERSION)
+                {
+                    throw IOException("Not a Kaku key filter, or the wrong version of one")
+                }
+
+                val keyCount = input.readInt()
+                val hashCount = input.readInt()
+                val bits = LongArray(input.readInt())
+                for (i in bits.indices)
+                {
+                    bits[i] = input.readLong()
+                }
+                return KeyFilter(bits, keyCount, hashCount)
+            }
+        }
+
+        /**
+         * FNV-1a over the chars, 64 bit, then a final mix so the two seeds give independent hashes
+         */
+        private fun hash(key: CharSequence, fold: Boolean, seed: Long): Long
+        {
+            var hash = seed
+            for (i in 0 until key.length)
+            {
+                val c = if (fold) EntryReading.toReadingKeyChar(key[i]) else key[i]
+                hash = (hash xor c.toLong()) * 0x100000001b3L
+            }
+            hash = (hash xor (hash ushr 33)) * -0xae502812aa7333L
+            return hash xor (hash ushr 33)
+        }
+
+        private fun load(context: Context): KeyFilter
+        {
+            val startTime = System.currentTimeMillis()
+
+            val file = File(context.filesDir, JMDICT_KEY_FILTER_NAME)
+            val keyFilter = if (file.exists()) open(file) else buildFromDb(context, file)
+
+            Log.d(TAG, String.format("Loaded key filter of %d keys in %dms, %.2fMB, %.2f%% expected false positives",
+                    keyFilter.keyCount,
+                    System.currentTimeMillis() - startTime,
+                    keyFilter.memoryBytes / (1024.0 * 1024.0),
+                    keyFilter.expectedFalsePositiveRate * 100))
+
+            return keyFilter
+        }
+
+        private fun buildFromDb(context: Context, file: File): KeyFilter
+        {
+            val keyFilter = build(JmDatabaseHelper.instance(context))
+            keyFilter.writeTo(file)
+            return keyFilter
+        }
+
+        /**
+         * @return Filter of every key and reading in the DB of [dbHelper]
+         */
+        fun build(dbHelper: IDatabaseHelper): KeyFilter
+        {
+            val entryDao = dbHelper.getDbDao<EntryOptimized>(EntryOptimized::class.java)
+
+            // Many entries share a key, only distinct ones count towards the size
+            val keys = HashSet<String>()
+            val readings = HashSet<String>()
+
+            val keyRows = entryDao.queryRaw(String.format("SELECT kanji FROM %s WHERE kanji IS NOT NULL", EntryOptimized.TABLE_NAME))
+            try
+            {
+                keyRows.mapTo(keys) { it[0] }
+            }
+            finally
+            {
+                keyRows.close()
+            }
+
+            val readingRows = entryDao.queryRaw(String.format("SELECT readingKey FROM %s", EntryReading.TABLE_NAME))
+            try
+            {
+                readingRows.mapTo(readings) { it[0] }
+            }
+            finally
+            {
+                readingRows.close()
+            }
+
+            val builder = Builder(keys.size + readings.size)
+            keys.forEach { builder.addKey(it) }
+            readings.forEach { builder.addReading(it) }
+            return builder.build()
+        }
+    }
+}
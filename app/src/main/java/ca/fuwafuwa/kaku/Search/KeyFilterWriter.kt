@@ -0,0 +1,51 @@
+package ca.fuwafuwa.kaku.Search
+
+import ca.fuwafuwa.kaku.DB_JMDICT_NAME
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryOptimized
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryReading
+import ca.fuwafuwa.kaku.XmlParsers.Interfaces.EntryWriter
+import java.io.File
+import java.io.IOException
+
+/**
+ * Collects the keys and readings of every entry the parsers produce and writes them as a [KeyFilter]. Readings are
+ * taken from JMdict only, same as [ca.fuwafuwa.kaku.Database.JmDictDatabase.EntryReadingWriter].
+ */
+class KeyFilterWriter : EntryWriter
+{
+    private val keys = HashSet<String>()
+    private val readings = HashSet<String>()
+
+    override fun begin()
+    {
+    }
+
+    override fun write(entry: EntryOptimized)
+    {
+        val kanji = entry.kanji ?: return
+        keys.add(kanji)
+
+        if (entry.dictionary == DB_JMDICT_NAME)
+        {
+            readings.addAll(EntryReading.getReadingKeys(kanji, entry.readings))
+        }
+    }
+
+    override fun finish()
+    {
+    }
+
+    fun build(): KeyFilter
+    {
+        val builder = KeyFilter.Builder(keys.size + readings.size)
+        keys.forEach { builder.addKey(it) }
+        readings.forEach { builder.addReading(it) }
+        return builder.build()
+    }
+
+    @Throws(IOException::class)
+    fun writeTo(file: File)
+    {
+        build().writeTo(file)
+    }
+}
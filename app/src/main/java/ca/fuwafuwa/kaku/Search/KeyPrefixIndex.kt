@@ -0,0 +1,137 @@
+package ca.fuwafuwa.kaku.Search
+
+import ca.fuwafuwa.kaku.Database.BinaryDictionary.BinaryDictionary
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryOptimized
+import com.j256.ormlite.dao.Dao
+
+/**
+ * Which strings could still become a dictionary key, [ChoiceBeamSearch] drops every candidate that can't
+ */
+interface KeyPrefixIndex
+{
+    /**
+     * @return True if some EntryOptimized.kanji starts with [prefix]
+     */
+    fun hasPrefix(prefix: CharSequence): Boolean
+
+    /**
+     * @return True if [key] is an EntryOptimized.kanji
+     */
+    fun isKey(key: CharSequence): Boolean
+
+    /**
+     * @return Length of the longest prefix of the first [maxLength] chars of [text] that some key starts with
+     */
+    fun longestPrefix(text: CharSequence, maxLength: Int): Int
+    {
+        // Every prefix of a prefix is one too, so the lengths that are make up a range from 0
+        var low = 0
+        var high = minOf(maxLength, text.length)
+        while (low < high)
+        {
+            val mid = (low + high + 1) ushr 1
+            if (hasPrefix(text.subSequence(0, mid)))
+            {
+                low = mid
+            }
+            else
+            {
+                high = mid - 1
+            }
+        }
+        return low
+    }
+}
+
+class TriePrefixIndex(private val trie: DoubleArrayTrie) : KeyPrefixIndex
+{
+    override fun hasPrefix(prefix: CharSequence): Boolean
+    {
+        var state = trie.root
+        for (i in 0 until prefix.length)
+        {
+            state = trie.next(state, prefix[i])
+            if (state < 0)
+            {
+                return false
+            }
+        }
+        return true
+    }
+
+    override fun isKey(key: CharSequence): Boolean
+    {
+        return trie.exactMatch(key) >= 0
+    }
+
+    override fun longestPrefix(text: CharSequence, maxLength: Int): Int
+    {
+        var state = trie.root
+        for (i in 0 until minOf(maxLength, text.length))
+        {
+            state = trie.next(state, text[i])
+            if (state < 0)
+            {
+                return i
+            }
+        }
+        return minOf(maxLength, text.length)
+    }
+}
+
+class BinaryPrefixIndex(private val binaryDictionary: BinaryDictionary) : KeyPrefixIndex
+{
+    override fun hasPrefix(prefix: CharSequence): Boolean
+    {
+        return binaryDictionary.hasKeyWithPrefix(prefix)
+    }
+
+    override fun isKey(key: CharSequence): Boolean
+    {
+        return binaryDictionary.findKey(key) >= 0
+    }
+}
+
+/**
+ * One indexed LIMIT 1 query per distinct prefix, remembered since the beam asks about the same prefixes again
+ */
+class SqlitePrefixIndex(private val dao: Dao<EntryOptimized, Int>) : KeyPrefixIndex
+{
+    companion object
+    {
+        // SQLite compares UTF-8 bytes, which sort by codepoint, so nothing starting with a prefix sorts after this
+        private val MAX_CHAR = String(intArrayOf(Character.MAX_CODE_POINT), 0, 1)
+    }
+
+    private val prefixes = HashMap<String, Boolean>()
+    private val keys = HashMap<String, Boolean>()
+
+    override fun hasPrefix(prefix: CharSequence): Boolean
+    {
+        val prefixString = prefix.toString()
+        return prefixes.getOrPut(prefixString) {
+            exists(String.format("SELECT 1 FROM %s WHERE kanji >= ? AND kanji <= ? LIMIT 1", EntryOptimized.TABLE_NAME), prefixString, prefixString + MAX_CHAR)
+        }
+    }
+
+    override fun isKey(key: CharSequence): Boolean
+    {
+        val keyString = key.toString()
+        return keys.getOrPut(keyString) {
+            exists(String.format("SELECT 1 FROM %s WHERE kanji = ? LIMIT 1", EntryOptimized.TABLE_NAME), keyString)
+        }
+    }
+
+    private fun exists(query: String, vararg args: String): Boolean
+    {
+        val rows = dao.queryRaw(query, *args)
+        try
+        {
+            return rows.firstResult != null
+        }
+        finally
+        {
+            rows.close()
+        }
+    }
+}
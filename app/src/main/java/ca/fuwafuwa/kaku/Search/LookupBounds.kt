@@ -0,0 +1,209 @@
+package ca.fuwafuwa.kaku.Search
+
+import android.content.Context
+import android.util.Log
+import ca.fuwafuwa.kaku.Database.IDatabaseHelper
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.JmDatabaseHelper
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryOptimized
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryReading
+import ca.fuwafuwa.kaku.Deinflictor.Deinflector
+import ca.fuwafuwa.kaku.JMDICT_LOOKUP_BOUNDS_NAME
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
+
+/**
+ * How long a word starting with each char can be: the longest key or reading starting with it, plus the most chars
+ * inflecting that key can add. [JmLookup] only deinflects prefixes of a window up to that long instead of all
+ * [SearchInfo.MAX_LOOKUP_LENGTH] of them, and nothing at all for chars no word starts with.
+ *
+ * Rules can be chained without end (高くなくなくない), a type whose chains keep growing is bounded by
+ * [SearchInfo.MAX_LOOKUP_LENGTH] only.
+ *
+ * @property maxInflectionTail Most chars an inflected word can have after the part it shares with its key, so a word
+ * is never longer than the longest key prefix it starts with plus this
+ */
+class LookupBounds internal constructor(private val maxLengths: ByteArray, val maxInflectionTail: Int)
+{
+    /**
+     * @return Length of the longest word [c] can start, 0 if nothing can start with it
+     */
+    fun getMaxLength(c: Char): Int
+    {
+        // Readings are stored under their hiragana first char
+        val folded = EntryReading.toReadingKeyChar(c)
+        return maxOf(maxLengths[c.toInt()].toInt() and 0xFF, maxLengths[folded.toInt()].toInt() and 0xFF)
+    }
+
+    @Throws(IOException::class)
+    fun writeTo(file: File)
+    {
+        DataOutputStream(BufferedOutputStream(FileOutputStream(file))).use { out ->
+            out.writeInt(MAGIC)
+            out.writeInt(VERSION)
+            out.writeInt(maxInflectionTail)
+            out.writeInt(maxLengths.count { it.toInt() != 0 })
+            for ((c, maxLength) in maxLengths.withIndex())
+            {
+                if (maxLength.toInt() != 0)
+                {
+                    out.writeChar(c)
+                    out.writeByte(maxLength.toInt())
+                }
+            }
+        }
+    }
+
+    companion object
+    {
+        private val TAG = LookupBounds::class.java.name
+
+        private const val MAGIC = 0x4B424E44 // "KBND"
+        // 2: inflections are no longer cut off after a fixed number of rules
+        private const val VERSION = 2
+
+        @Volatile
+        private var instance: LookupBounds? = null
+        private var loading = false
+
+        /**
+         * Same as [KeyFilter.getOrLoad]: reads the bounds from filesDir, or works them out from the DB the first time,
+         * on a background thread. Lookups use the whole window until it's done.
+         */
+        fun getOrLoad(context: Context): LookupBounds?
+        {
+            val lookupBounds = instance
+            if (lookupBounds != null)
+            {
+                return lookupBounds
+            }
+
+            synchronized(this)
+            {
+                if (!loading)
+                {
+                    loading = true
+
+                    val appContext = context.applicationContext
+                    val loadThread = Thread {
+                        try
+                        {
+                            instance = load(appContext)
+                        }
+                        catch (e: Exception)
+                        {
+                            e.printStackTrace()
+                        }
+                        finally
+                        {
+                            synchronized(this) { loading = false }
+                        }
+                    }
+                    loadThread.name = "LookupBoundsLoader"
+                    loadThread.isDaemon = true
+                    loadThread.priority = Thread.MIN_PRIORITY
+                    loadThread.start()
+                }
+            }
+
+            return null
+        }
+
+        /**
+         * Drops the loaded bounds, call after the dictionary has been regenerated
+         */
+        fun clear()
+        {
+            instance = null
+        }
+
+        @Throws(IOException::class)
+        fun open(file: File): LookupBounds
+        {
+            DataInputStream(BufferedInputStream(FileInputStream(file))).use { input ->
+                if (input.readInt() != MAGIC || input.readInt() != VERSION)
+                {
+                    throw IOException("Not Kaku lookup bounds, or the wrong version of them")
+                }
+
+                val maxInflectionTail = input.readInt()
+                val maxLengths = ByteArray(Character.MAX_VALUE.toInt() + 1)
+                for (i in 0 until input.readInt())
+                {
+                    maxLengths[input.readChar().toInt()] = input.readByte()
+                }
+                return LookupBounds(maxLengths, maxInflectionTail)
+            }
+        }
+
+        private fun load(context: Context): LookupBounds
+        {
+            val startTime = System.currentTimeMillis()
+
+            val file = File(context.filesDir, JMDICT_LOOKUP_BOUNDS_NAME)
+            var lookupBounds: LookupBounds? = null
+            if (file.exists())
+            {
+                try
+                {
+                    lookupBounds = open(file)
+                }
+                catch (e: IOException)
+                {
+                    // Written by an older version, worked out again below
+                    Log.d(TAG, "Rebuilding lookup bounds: ${e.message}")
+                }
+            }
+            if (lookupBounds == null)
+            {
+                lookupBounds = buildFromDb(context, file)
+            }
+
+            Log.d(TAG, "Loaded lookup bounds in ${System.currentTimeMillis() - startTime}ms, inflections add up to ${lookupBounds.maxInflectionTail} chars")
+
+            return lookupBounds
+        }
+
+        private fun buildFromDb(context: Context, file: File): LookupBounds
+        {
+            val lookupBounds = build(JmDatabaseHelper.instance(context), Deinflector.instance(context))
+            lookupBounds.writeTo(file)
+            return lookupBounds
+        }
+
+        /**
+         * @return Bounds of every entry in the DB of [dbHelper]
+         */
+        fun build(dbHelper: IDatabaseHelper, deinflector: Deinflector): LookupBounds
+        {
+            val entryDao = dbHelper.getDbDao<EntryOptimized>(EntryOptimized::class.java)
+            val writer = LookupBoundsWriter(deinflector)
+
+            val rows = entryDao.queryRaw(String.format("SELECT kanji, readings, %s, dictionary FROM %s WHERE kanji IS NOT NULL",
+                    EntryOptimized.POS_MASK_COLUMN, EntryOptimized.TABLE_NAME))
+            try
+            {
+                for (row in rows)
+                {
+                    val entry = EntryOptimized()
+                    entry.kanji = row[0]
+                    entry.readings = row[1]
+                    entry.posMask = row[2]?.toInt() ?: 0
+                    entry.dictionary = row[3]
+                    writer.write(entry)
+                }
+            }
+            finally
+            {
+                rows.close()
+            }
+
+            return writer.build()
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package ca.fuwafuwa.kaku.Search
+
+import ca.fuwafuwa.kaku.DB_JMDICT_NAME
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryOptimized
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryReading
+import ca.fuwafuwa.kaku.Deinflictor.Conjugator
+import ca.fuwafuwa.kaku.Deinflictor.Deinflector
+import ca.fuwafuwa.kaku.XmlParsers.Interfaces.EntryWriter
+import java.io.File
+import java.io.IOException
+
+/**
+ * Works out the [LookupBounds] of the entries the parsers produce. Readings are taken from JMdict only, same as
+ * [ca.fuwafuwa.kaku.Database.JmDictDatabase.EntryReadingWriter].
+ *
+ * How much inflecting adds only depends on the rules in deinflect.dat and the type of the word, so it's worked out
+ * once per type up front and each entry only adds its own length.
+ */
+class LookupBoundsWriter(private val deinflector: Deinflector) : EntryWriter
+{
+    companion object
+    {
+        // Deinflection types are one byte, see EntryOptimized.posMask
+        private const val TYPE_BITS = 8
+    }
+
+    private val maxLengths = ByteArray(Character.MAX_VALUE.toInt() + 1)
+
+    /**
+     * Any chain of rules adds at most maxGrowths[bit] chars to a word of type 1 shl bit
+     */
+    private val maxGrowths = getMaxGrowths()
+    private val maxInflectionTail = getMaxInflectionTail()
+    private val maxRuleToLength = (0 until deinflector.ruleCount).map { deinflector.getRule(it).to.length }.max() ?: 0
+    private val wholeWordConjugator = Conjugator(deinflector, 1)
+
+    override fun begin()
+    {
+    }
+
+    override fun write(entry: EntryOptimized)
+    {
+        val kanji = entry.kanji ?: return
+        add(kanji, entry.posMask)
+
+        if (entry.dictionary == DB_JMDICT_NAME)
+        {
+            for (key in EntryReading.getReadingKeys(kanji, entry.readings))
+            {
+                add(key, entry.posMask)
+            }
+        }
+    }
+
+    override fun finish()
+    {
+    }
+
+    fun build(): LookupBounds
+    {
+        return LookupBounds(maxLengths.copyOf(), maxInflectionTail)
+    }
+
+    @Throws(IOException::class)
+    fun writeTo(file: File)
+    {
+        build().writeTo(file)
+    }
+
+    private fun add(word: String, posMask: Int)
+    {
+        if (word.isEmpty())
+        {
+            return
+        }
+
+        record(word[0], word.length + maxForTypes(maxGrowths, posMask))
+
+        // A rule can swap out the whole word, くる to きた, and then the inflected word starts with another char
+        if (word.length <= maxRuleToLength)
+        {
+            wholeWordConjugator.conjugate(word, posMask) { surface, rules ->
+                if (surface[0] != word[0])
+                {
+                    val type = deinflector.getRule(rules[0]).type and 0xFF
+                    record(surface[0], surface.length + maxForTypes(maxGrowths, type))
+                }
+            }
+        }
+    }
+
+    private fun record(c: Char, length: Int)
+    {
+        val maxLength = minOf(length, SearchInfo.MAX_LOOKUP_LENGTH)
+        if (maxLength > maxLengths[c.toInt()].toInt() and 0xFF)
+        {
+            maxLengths[c.toInt()] = maxLength.toByte()
+        }
+    }
+
+    /**
+     * Rules can be chained without end (高くなくなくない), so the growth of each type is raised until no rule raises it
+     * any further. A chain that grows every time round is capped at [SearchInfo.MAX_LOOKUP_LENGTH], longer than that is
+     * never looked up anyway.
+     */
+    private fun getMaxGrowths(): IntArray
+    {
+        // Stopping is always an option, so a rule that shortens the word never counts against it
+        val growths = IntArray(TYPE_BITS)
+
+        var changed = true
+        while (changed)
+        {
+            changed = false
+            for (bit in 0 until TYPE_BITS)
+            {
+                for (ruleIndex in 0 until deinflector.ruleCount)
+                {
+                    val rule = deinflector.getRule(ruleIndex)
+                    if ((rule.type shr 8) and (1 shl bit) == 0)
+                    {
+                        continue
+                    }
+
+                    val growth = minOf(rule.from.length - rule.to.length + maxForTypes(growths, rule.type and 0xFF), SearchInfo.MAX_LOOKUP_LENGTH)
+                    if (growth > growths[bit])
+                    {
+                        growths[bit] = growth
+                        changed = true
+                    }
+                }
+            }
+        }
+
+        return growths
+    }
+
+    /**
+     * A rule keeps all of the word but its [ca.fuwafuwa.kaku.Deinflictor.DeinflectionRule.to], so it eats into the
+     * tail (or past it, into the key) by that much and then adds its from. The longer the tail going in, the longer
+     * coming out, so carrying the longest tail of each type forward is enough. Raised until it stops changing, with the
+     * same cap as [getMaxGrowths].
+     */
+    private fun getMaxInflectionTail(): Int
+    {
+        // A key has no tail, whatever its type
+        val tails = IntArray(TYPE_BITS)
+
+        var changed = true
+        while (changed)
+        {
+            changed = false
+            for (bit in 0 until TYPE_BITS)
+            {
+                for (ruleIndex in 0 until deinflector.ruleCount)
+                {
+                    val rule = deinflector.getRule(ruleIndex)
+                    if ((rule.type shr 8) and (1 shl bit) == 0)
+                    {
+                        continue
+                    }
+
+                    val tail = minOf(maxOf(tails[bit] - rule.to.length, 0) + rule.from.length, SearchInfo.MAX_LOOKUP_LENGTH)
+                    for (nextBit in 0 until TYPE_BITS)
+                    {
+                        if (rule.type and (1 shl nextBit) != 0 && tail > tails[nextBit])
+                        {
+                            tails[nextBit] = tail
+                            changed = true
+                        }
+                    }
+                }
+            }
+        }
+
+        return tails.max() ?: 0
+    }
+
+    private fun maxForTypes(values: IntArray, mask: Int): Int
+    {
+        var max = 0
+        for (bit in 0 until TYPE_BITS)
+        {
+            if (mask and (1 shl bit) != 0)
+            {
+                max = maxOf(max, values[bit])
+            }
+        }
+        return max
+    }
+}
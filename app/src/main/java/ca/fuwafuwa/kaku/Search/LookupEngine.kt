@@ -0,0 +1,24 @@
+package ca.fuwafuwa.kaku.Search
+
+/**
+ * Where JmTask looks up dictionary keys. All engines return the same entries, they're kept side by side so lookup
+ * times can be compared on device.
+ */
+enum class LookupEngine
+{
+    /**
+     * Indexed range query for every entry sharing the first character of the lookup
+     */
+    SQLITE,
+
+    /**
+     * In-memory [TrieDictionary], only the rows that matched are read from SQLite
+     */
+    TRIE,
+
+    /**
+     * Memory-mapped [ca.fuwafuwa.kaku.Database.BinaryDictionary.BinaryDictionary], entries are decoded straight from
+     * the file. Only available once the binary dictionary has been compiled into filesDir.
+     */
+    BINARY
+}
@@ -0,0 +1,58 @@
+package ca.fuwafuwa.kaku.Search
+
+import android.util.LruCache
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Bounded LRU of [JmTask] results keyed by [SearchInfo.lookupWindow]. Results only depend on the window, so the same
+ * sentence captured again or a character tapped twice skips the dictionary entirely.
+ *
+ * Shared by every [Searcher], has to be cleared whenever the dictionary changes.
+ */
+class SearchCache(maxSize: Int)
+{
+    private val mCache = LruCache<String, List<JmSearchResult>>(maxSize)
+
+    // Counted here rather than with LruCache's own counters so prefetching doesn't show up as hits and misses
+    private val mHitCount = AtomicInteger()
+    private val mMissCount = AtomicInteger()
+
+    val hitCount: Int
+        get() = mHitCount.get()
+
+    val missCount: Int
+        get() = mMissCount.get()
+
+    fun get(window: String): List<JmSearchResult>?
+    {
+        val results = mCache.get(window)
+        if (results != null) mHitCount.incrementAndGet() else mMissCount.incrementAndGet()
+        return results
+    }
+
+    /**
+     * Like [get] without counting, for speculative lookups
+     */
+    fun contains(window: String): Boolean
+    {
+        return mCache.get(window) != null
+    }
+
+    fun put(window: String, results: List<JmSearchResult>)
+    {
+        mCache.put(window, results)
+    }
+
+    fun clear()
+    {
+        mCache.evictAll()
+    }
+
+    companion object
+    {
+        private const val MAX_SIZE = 256
+
+        @JvmStatic
+        val instance = SearchCache(MAX_SIZE)
+    }
+}
@@ -2,13 +2,19 @@ package ca.fuwafuwa.kaku.Search
 
 import ca.fuwafuwa.kaku.Windows.Data.DisplayData
 import ca.fuwafuwa.kaku.Windows.Data.ISquareChar
+import ca.fuwafuwa.kaku.Windows.Data.SquareCharOcr
 import ca.fuwafuwa.kaku.Windows.Views.KanjiCharacterView
 
 /**
  * Created by 0xbad1d3a5 on 12/16/2016.
  */
 
-class SearchInfo(val squareChar: ISquareChar)
+/**
+ * @property page Page of results to look up, see [JmLookup.PAGE_SIZE]
+ * @property choiceText Text the first page was found in when [JmLookup.searchChoices] picked it from the OCR choices,
+ * set by [JmTask]. Later pages are looked up in it instead of [text].
+ */
+class SearchInfo @JvmOverloads constructor(val squareChar: ISquareChar, val page: Int = 0, var choiceText: String? = null)
 {
     val text: String get() = squareChar.displayData.text
 
@@ -29,4 +35,47 @@ class SearchInfo(val squareChar: ISquareChar)
         }
 
     val index: Int get() = squareChar.index
+
+    /**
+     * Text the dictionary is searched with, from [textOffset] up to [MAX_LOOKUP_LENGTH] chars
+     */
+    val lookupWindow: String
+        get() = getLookupWindow(text, textOffset)
+
+    /**
+     * Choices for each char from [squareChar] on, up to [MAX_CHOICE_CHARS] chars, for [JmLookup.searchChoices]. The
+     * current char comes first, then the rest of the OCR choices best first. Chars that weren't OCR'd only have
+     * themselves.
+     */
+    val choices: List<List<String>>
+        get()
+        {
+            val squareChars = squareChar.displayData.squareChars
+            val start = squareChars.indexOfFirst { it === squareChar }
+
+            return squareChars.drop(maxOf(start, 0)).take(MAX_CHOICE_CHARS).map { char ->
+                if (char is SquareCharOcr)
+                {
+                    listOf(char.char) + char.allChoices.map { it.first }.filter { it != char.char }
+                }
+                else
+                {
+                    listOf(char.char)
+                }
+            }
+        }
+
+    companion object
+    {
+        const val MAX_LOOKUP_LENGTH = 80
+
+        // Words are rarely longer, and every char further multiplies the candidates the beam has to weigh
+        const val MAX_CHOICE_CHARS = 16
+
+        @JvmStatic
+        fun getLookupWindow(text: String, textOffset: Int): String
+        {
+            return text.substring(textOffset, minOf(textOffset + MAX_LOOKUP_LENGTH, text.length))
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+package ca.fuwafuwa.kaku.Search
+
+import android.content.Context
+import ca.fuwafuwa.kaku.Windows.Data.DisplayData
+
+/**
+ * After OCR, looks up every character offset of the capture into [SearchCache] with one [Searcher.searchAll] so
+ * tapping a character shows its results straight away, and splits the capture into words in the same pass. The words
+ * are stored on the [DisplayData] once they're there.
+ *
+ * The lookup runs as [SearchScheduler.Priority.BACKGROUND]: a tap goes ahead of it whether it's still queued or
+ * already running, it picks up where it was preempted once the tap is done. A new capture makes the previous one stale.
+ */
+class SearchPrefetcher(context: Context) : JmBatchTask.SearchAllDone
+{
+    private val mSearcher = Searcher(context)
+
+    fun prefetch(displayData: DisplayData)
+    {
+        mSearcher.searchAll(displayData, this, SearchScheduler.Priority.BACKGROUND)
+    }
+
+    override fun searchAllCallback(results: List<List<JmSearchResult>>, segments: List<Segmenter.Segment>, displayData: DisplayData)
+    {
+        // JmBatchTask has already put every offset into the cache
+        displayData.segments = segments
+    }
+}
@@ -0,0 +1,211 @@
+package ca.fuwafuwa.kaku.Search
+
+import android.os.CancellationSignal
+import android.os.Handler
+import android.os.Looper
+import android.os.OperationCanceledException
+import android.util.Log
+import java.util.WeakHashMap
+import java.util.concurrent.Executor
+import java.util.concurrent.PriorityBlockingQueue
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Runs dictionary lookups on one background thread, replacing AsyncTask.SERIAL_EXECUTOR.
+ *
+ * Tasks are submitted on a channel, usually the [Searcher] of one window. Submitting to a channel makes everything
+ * it submitted before stale: queued tasks are dropped without running, the one running has its [CancellationSignal]
+ * cancelled, and nothing stale is ever delivered. Dragging across the kanji grid only ever shows the last character.
+ *
+ * [Priority.FOREGROUND] tasks are always taken off the queue before [Priority.BACKGROUND] ones, and don't wait for one
+ * that's running either: submitting a foreground task preempts a running background task of another channel. Its
+ * signal is cancelled and it goes back on the queue behind the foreground task, to be run again from the start.
+ *
+ * @param mResultExecutor Where [Task.onResult] is called, the main thread except in tests
+ */
+class SearchScheduler internal constructor(private val mResultExecutor: Executor)
+{
+    enum class Priority
+    {
+        FOREGROUND,
+        BACKGROUND
+    }
+
+    interface Task<T>
+    {
+        val priority: Priority
+
+        /**
+         * Runs on the scheduler thread, should check [signal] between units of work
+         */
+        @Throws(Exception::class)
+        fun run(signal: CancellationSignal): T
+
+        /**
+         * Runs on the main thread, only if no newer task was submitted to the same channel and the run wasn't preempted
+         */
+        fun onResult(result: T)
+    }
+
+    companion object
+    {
+        private val TAG = SearchScheduler::class.java.getName()
+
+        @JvmStatic
+        val instance = SearchScheduler(MainThreadExecutor())
+    }
+
+    private class MainThreadExecutor : Executor
+    {
+        private val mHandler = Handler(Looper.getMainLooper())
+
+        override fun execute(command: Runnable)
+        {
+            mHandler.post(command)
+        }
+    }
+
+    private val mSequence = AtomicLong()
+
+    // Guarded by this
+    private val mGenerations = WeakHashMap<Any, Int>()
+    private var mRunning: Request<*>? = null
+
+    private val mExecutor = ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, PriorityBlockingQueue<Runnable>()) { runnable ->
+        val thread = Thread(runnable, "SearchScheduler")
+        thread.isDaemon = true
+        thread
+    }
+
+    fun submit(channel: Any, task: Task<*>)
+    {
+        submit(channel, listOf(task))
+    }
+
+    /**
+     * Submits [tasks] together, they make each other stale only as a group
+     */
+    fun submit(channel: Any, tasks: List<Task<*>>)
+    {
+        val generation = newGeneration(channel, tasks.any { it.priority == Priority.FOREGROUND })
+        for (task in tasks)
+        {
+            mExecutor.execute(Request(channel, generation, task))
+        }
+    }
+
+    /**
+     * Makes everything submitted to [channel] so far stale
+     */
+    fun cancel(channel: Any)
+    {
+        newGeneration(channel)
+    }
+
+    /**
+     * @param foreground Whether a foreground task is being submitted, which preempts a running background one
+     */
+    @Synchronized
+    private fun newGeneration(channel: Any, foreground: Boolean = false): Int
+    {
+        val generation = (mGenerations[channel] ?: 0) + 1
+        mGenerations[channel] = generation
+
+        val running = mRunning
+        if (running != null && running.channel === channel)
+        {
+            running.signal.cancel()
+        }
+        else if (running != null && foreground && running.task.priority == Priority.BACKGROUND)
+        {
+            running.preempt()
+        }
+
+        return generation
+    }
+
+    @Synchronized
+    private fun isCurrent(channel: Any, generation: Int): Boolean
+    {
+        return mGenerations[channel] == generation
+    }
+
+    @Synchronized
+    private fun setRunning(request: Request<*>?)
+    {
+        mRunning = request
+    }
+
+    /**
+     * @param sequence Order among requests of the same priority, kept when a preempted request is queued again so it
+     * still goes before background work submitted after it
+     */
+    private inner class Request<T>(val channel: Any, val generation: Int, val task: Task<T>, private val sequence: Long = mSequence.incrementAndGet()) : Runnable, Comparable<Request<*>>
+    {
+        val signal = CancellationSignal()
+
+        // Guarded by the scheduler, read once the request is no longer running
+        private var mPreempted = false
+
+        fun preempt()
+        {
+            mPreempted = true
+            signal.cancel()
+        }
+
+        override fun run()
+        {
+            if (!isCurrent(channel, generation))
+            {
+                return
+            }
+
+            setRunning(this)
+            try
+            {
+                val result = task.run(signal)
+                mResultExecutor.execute {
+                    if (!signal.isCanceled && !isPreempted() && isCurrent(channel, generation))
+                    {
+                        task.onResult(result)
+                    }
+                }
+            }
+            catch (e: OperationCanceledException)
+            {
+                Log.d(TAG, "Cancelled ${task.javaClass.simpleName}")
+            }
+            catch (e: Exception)
+            {
+                e.printStackTrace()
+            }
+            finally
+            {
+                setRunning(null)
+            }
+
+            // Even if it finished, it was preempted so the result won't be delivered
+            if (isPreempted())
+            {
+                Log.d(TAG, "Preempted ${task.javaClass.simpleName}, queued again")
+                mExecutor.execute(Request(channel, generation, task, sequence))
+            }
+        }
+
+        private fun isPreempted(): Boolean
+        {
+            synchronized(this@SearchScheduler)
+            {
+                return mPreempted
+            }
+        }
+
+        override fun compareTo(other: Request<*>): Int
+        {
+            val cmp = task.priority.compareTo(other.task.priority)
+            return if (cmp != 0) cmp else sequence.compareTo(other.sequence)
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package ca.fuwafuwa.kaku.Search;
 
 import android.content.Context;
-import android.os.AsyncTask;
 import android.util.Log;
 
 import org.jetbrains.annotations.NotNull;
@@ -11,6 +10,9 @@ import java.util.List;
 
 import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryOptimized;
 import ca.fuwafuwa.kaku.Database.KanjiDict2Database.Models.CharacterOptimized;
+import ca.fuwafuwa.kaku.KakuTools;
+import ca.fuwafuwa.kaku.Prefs;
+import ca.fuwafuwa.kaku.Windows.Data.DisplayData;
 
 /**
  * Created by 0xbad1d3a5 on 8/28/2016.
@@ -30,6 +32,16 @@ public class Searcher implements JmTask.SearchJmTaskDone {
     public Searcher(Context context) throws SQLException
     {
         mContext = context;
+
+        // Start building the trie now so it's likely ready by the first lookup
+        if (KakuTools.getPrefs(mContext).getLookupEngineSetting() == LookupEngine.TRIE)
+        {
+            TrieDictionary.Companion.getOrLoad(mContext);
+        }
+
+        // Lookups go unfiltered and unbounded until these are loaded
+        KeyFilter.Companion.getOrLoad(mContext);
+        LookupBounds.Companion.getOrLoad(mContext);
     }
 
     public void registerCallback(SearchDictDone dictDone)
@@ -39,21 +51,60 @@ public class Searcher implements JmTask.SearchJmTaskDone {
 
     public void unregisterCallback()
     {
+        SearchScheduler.getInstance().cancel(this);
         this.mSearchDictDone = null;
     }
 
     public void search(SearchInfo searchInfo)
     {
-        try {
-            new JmTask(searchInfo, this, mContext).executeOnExecutor(AsyncTask.SERIAL_EXECUTOR);
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        Prefs prefs = KakuTools.getPrefs(mContext);
+        // Latest wins, a search still queued or running for this window won't call back anymore
+        SearchScheduler.getInstance().submit(this, new JmTask(searchInfo, this, mContext, prefs.getLookupEngineSetting(), prefs.getDeinflectionStrategySetting(), SearchCache.getInstance(), prefs.getOcrChoiceLookupSetting()));
+    }
+
+    /**
+     * Looks up every character of displayData in one pass, much cheaper than a search() per character, and splits its
+     * text into words. A newer searchAll() with the same callback replaces this one.
+     */
+    public void searchAll(DisplayData displayData, JmBatchTask.SearchAllDone searchAllDone)
+    {
+        searchAll(displayData, searchAllDone, SearchScheduler.Priority.FOREGROUND);
+    }
+
+    /**
+     * searchAll() at the given priority, a BACKGROUND one is preempted by any search() submitted while it waits or runs
+     */
+    public void searchAll(DisplayData displayData, JmBatchTask.SearchAllDone searchAllDone, SearchScheduler.Priority priority)
+    {
+        Prefs prefs = KakuTools.getPrefs(mContext);
+        SearchScheduler.getInstance().submit(searchAllDone, new JmBatchTask(displayData, searchAllDone, mContext, prefs.getLookupEngineSetting(), prefs.getDeinflectionStrategySetting(), SearchCache.getInstance(), priority));
+    }
+
+    /**
+     * Drops every cached result, call after the dictionary DB has been replaced or regenerated
+     */
+    public static void clearCache()
+    {
+        SearchCache.getInstance().clear();
+    }
+
+    public static int getCacheHitCount()
+    {
+        return SearchCache.getInstance().getHitCount();
+    }
+
+    public static int getCacheMissCount()
+    {
+        return SearchCache.getInstance().getMissCount();
     }
 
     @Override
     public void jmTaskCallback(@NotNull List<JmSearchResult> results, @NotNull SearchInfo searchInfo)
     {
+        if (mSearchDictDone == null)
+        {
+            return;
+        }
         mSearchDictDone.jmResultsCallback(results, searchInfo);
     }
 }
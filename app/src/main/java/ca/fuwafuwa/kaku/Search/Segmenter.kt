@@ -0,0 +1,164 @@
+package ca.fuwafuwa.kaku.Search
+
+import ca.fuwafuwa.kaku.DB_SPLIT_CHAR
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryOptimized
+
+/**
+ * Splits a whole capture into words. Every dictionary match at every offset (what [JmLookup.matchAll] returns) is an
+ * edge of a lattice over the text, and the cheapest path through it (Viterbi) is the segmentation. Anything the
+ * dictionary doesn't know becomes a single character segment.
+ *
+ * Runs in O(offsets * matches per offset), matches per offset are bounded by the lookup window so it's linear in the
+ * length of the text.
+ */
+object Segmenter
+{
+    // Every word costs something so fewer, longer words win over splitting them up
+    private const val WORD_COST = 100
+    private const val UNKNOWN_CHAR_COST = 300
+
+    private const val UNRANKED_COST = 150
+    private const val MAX_RANKED_COST = 130
+    private const val DEINFLECTED_COST = 20
+    private const val KANJIDIC_COST = 200
+    private const val SINGLE_CHAR_COST = 60
+    private const val PARTICLE_BONUS = 40
+
+    /**
+     * One word of the segmentation
+     *
+     * @property startIndex Index of the first character in [textOffsets] / the squareChars
+     * @property endIndex Index after the last character
+     * @property word Text of the word as it appears in the capture
+     * @property results Ranked matches for the word, empty if the dictionary didn't know it
+     */
+    class Segment(val startIndex: Int, val endIndex: Int, val word: String, val results: List<JmSearchResult>)
+
+    /**
+     * @param textOffsets Start of each character in [text], like [ca.fuwafuwa.kaku.Windows.Data.DisplayData.textOffsets]
+     * @param results Ranked results of the lookup at each of [textOffsets]
+     */
+    @JvmStatic
+    fun segment(text: String, textOffsets: IntArray, results: List<List<JmSearchResult>>): List<Segment>
+    {
+        val count = textOffsets.size
+
+        // Character index of each text offset, -1 for offsets inside a character
+        val indexOfOffset = IntArray(text.length + 1) { -1 }
+        for (i in 0 until count)
+        {
+            indexOfOffset[textOffsets[i]] = i
+        }
+        indexOfOffset[text.length] = count
+
+        val bestCost = IntArray(count + 1) { Int.MAX_VALUE }
+        val bestFrom = IntArray(count + 1)
+        val bestResults = arrayOfNulls<List<JmSearchResult>>(count + 1)
+        bestCost[0] = 0
+
+        for (i in 0 until count)
+        {
+            if (bestCost[i] == Int.MAX_VALUE)
+            {
+                continue
+            }
+
+            // Unknown character, always possible so there's always a path
+            relax(bestCost, bestFrom, bestResults, i, i + 1, bestCost[i] + UNKNOWN_CHAR_COST, emptyList())
+
+            for ((length, wordResults) in groupByLength(results[i]))
+            {
+                val end = textOffsets[i] + length
+                val j = if (end <= text.length) indexOfOffset[end] else -1
+                if (j < 0)
+                {
+                    continue
+                }
+
+                var cost = Int.MAX_VALUE
+                for (result in wordResults)
+                {
+                    cost = minOf(cost, getCost(result, j - i))
+                }
+
+                relax(bestCost, bestFrom, bestResults, i, j, bestCost[i] + WORD_COST + cost, wordResults)
+            }
+        }
+
+        val segments = ArrayList<Segment>()
+        var j = count
+        while (j > 0)
+        {
+            val i = bestFrom[j]
+            val start = textOffsets[i]
+            val end = if (j < count) textOffsets[j] else text.length
+            segments.add(Segment(i, j, text.substring(start, end), bestResults[j]!!))
+            j = i
+        }
+        segments.reverse()
+
+        return segments
+    }
+
+    private fun relax(bestCost: IntArray, bestFrom: IntArray, bestResults: Array<List<JmSearchResult>?>, from: Int, to: Int, cost: Int, results: List<JmSearchResult>)
+    {
+        if (cost < bestCost[to])
+        {
+            bestCost[to] = cost
+            bestFrom[to] = from
+            bestResults[to] = results
+        }
+    }
+
+    /**
+     * Results are ranked, grouping keeps that order within each word
+     */
+    private fun groupByLength(results: List<JmSearchResult>): Map<Int, List<JmSearchResult>>
+    {
+        val grouped = LinkedHashMap<Int, MutableList<JmSearchResult>>()
+        for (result in results)
+        {
+            grouped.getOrPut(result.word.length) { ArrayList() }.add(result)
+        }
+        return grouped
+    }
+
+    /**
+     * Cost of matching [result] over [charCount] characters: its priority, whether it had to be deinflected and a
+     * rough part of speech cost, particles and auxiliaries are expected to be short while other one character words
+     * are usually the wrong split
+     */
+    private fun getCost(result: JmSearchResult, charCount: Int): Int
+    {
+        val entry = result.entry
+
+        var cost = if (entry.priorityRank == EntryOptimized.NO_PRIORITY_RANK) UNRANKED_COST else minOf(entry.priorityRank, MAX_RANKED_COST)
+
+        if (result.deinfInfo.word != result.word)
+        {
+            cost += DEINFLECTED_COST
+        }
+
+        if (entry.dictionaryId != EntryOptimized.DICTIONARY_ID_JMDICT)
+        {
+            cost += KANJIDIC_COST
+        }
+
+        if (isParticleOrAuxiliary(entry.pos))
+        {
+            cost -= PARTICLE_BONUS
+        }
+        else if (charCount == 1)
+        {
+            cost += SINGLE_CHAR_COST
+        }
+
+        return cost
+    }
+
+    private fun isParticleOrAuxiliary(pos: String): Boolean
+    {
+        // Only the first sense counts, its tags are comma separated
+        return pos.substringBefore(DB_SPLIT_CHAR).split(',').any { it == "prt" || it.startsWith("aux") }
+    }
+}
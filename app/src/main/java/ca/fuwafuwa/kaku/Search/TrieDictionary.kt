@@ -0,0 +1,162 @@
+package ca.fuwafuwa.kaku.Search
+
+import android.content.Context
+import android.util.Log
+import ca.fuwafuwa.kaku.Database.IDatabaseHelper
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.JmDatabaseHelper
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryOptimized
+
+/**
+ * Every EntryOptimized.kanji key held in a [DoubleArrayTrie], with the ids of the entries for each key as the payload.
+ *
+ * @property trie Trie of the keys, the value of each key indexes into the entry id payload
+ * @property keyCount Number of distinct keys
+ * @property entryCount Number of entries over all keys
+ * @property memoryBytes Approximate heap used by the trie and its payload
+ */
+class TrieDictionary private constructor(val trie: DoubleArrayTrie,
+                                         private val entryOffsets: IntArray,
+                                         private val entryIds: IntArray)
+{
+    val keyCount: Int get() = entryOffsets.size - 1
+
+    val entryCount: Int get() = entryIds.size
+
+    val memoryBytes: Long get() = trie.memoryBytes + 4L * entryOffsets.size + 4L * entryIds.size
+
+    /**
+     * @return Ids of the entries for the key with [keyIndex], in ascending order
+     */
+    fun getEntryIds(keyIndex: Int): IntArray
+    {
+        return entryIds.copyOfRange(entryOffsets[keyIndex], entryOffsets[keyIndex + 1])
+    }
+
+    companion object
+    {
+        private val TAG = TrieDictionary::class.java.name
+
+        @Volatile
+        private var instance: TrieDictionary? = null
+        private var loading = false
+
+        /**
+         * Building the trie takes a few seconds, so the first call starts it on a background thread and
+         * returns null until it's done. Callers should fall back to SQLite in the meantime.
+         */
+        fun getOrLoad(context: Context): TrieDictionary?
+        {
+            val trieDictionary = instance
+            if (trieDictionary != null)
+            {
+                return trieDictionary
+            }
+
+            synchronized(this)
+            {
+                if (!loading)
+                {
+                    loading = true
+
+                    val appContext = context.applicationContext
+                    val loadThread = Thread {
+                        try
+                        {
+                            instance = load(appContext)
+                        }
+                        catch (e: Exception)
+                        {
+                            e.printStackTrace()
+                        }
+                        finally
+                        {
+                            synchronized(this) { loading = false }
+                        }
+                    }
+                    loadThread.name = "TrieDictionaryLoader"
+                    loadThread.isDaemon = true
+                    loadThread.priority = Thread.MIN_PRIORITY
+                    loadThread.start()
+                }
+            }
+
+            return null
+        }
+
+        /**
+         * Drops the loaded trie, it will be rebuilt from the DB on the next [getOrLoad]
+         */
+        fun clear()
+        {
+            instance = null
+        }
+
+        /**
+         * @param ids Entry ids, parallel to [keys]
+         * @param keys EntryOptimized.kanji of each entry
+         */
+        fun build(ids: IntArray, keys: Array<String>): TrieDictionary
+        {
+            val order = (0 until keys.size).sortedWith(compareBy({ keys[it] }, { ids[it] }))
+
+            val uniqueKeys = ArrayList<String>()
+            val entryOffsets = ArrayList<Int>()
+            val entryIds = IntArray(order.size)
+
+            for ((i, index) in order.withIndex())
+            {
+                if (uniqueKeys.isEmpty() || uniqueKeys.last() != keys[index])
+                {
+                    uniqueKeys.add(keys[index])
+                    entryOffsets.add(i)
+                }
+                entryIds[i] = ids[index]
+            }
+            entryOffsets.add(order.size)
+
+            return TrieDictionary(DoubleArrayTrie.build(uniqueKeys), entryOffsets.toIntArray(), entryIds)
+        }
+
+        private fun load(context: Context): TrieDictionary
+        {
+            val startTime = System.currentTimeMillis()
+
+            val trieDictionary = build(JmDatabaseHelper.instance(context))
+
+            Log.d(TAG, String.format("Built trie of %d keys (%d entries) in %dms, %d slots, %.2fMB",
+                    trieDictionary.keyCount,
+                    trieDictionary.entryCount,
+                    System.currentTimeMillis() - startTime,
+                    trieDictionary.trie.size,
+                    trieDictionary.memoryBytes / (1024.0 * 1024.0)))
+
+            return trieDictionary
+        }
+
+        /**
+         * @return Trie of every key in the DB of [dbHelper]
+         */
+        fun build(dbHelper: IDatabaseHelper): TrieDictionary
+        {
+            val dao = dbHelper.getDbDao<EntryOptimized>(EntryOptimized::class.java)
+            val ids = ArrayList<Int>()
+            val keys = ArrayList<String>()
+
+            val rows = dao.queryRaw(String.format("SELECT id, kanji FROM %s WHERE kanji IS NOT NULL", EntryOptimized.TABLE_NAME))
+            try
+            {
+                for (row in rows)
+                {
+                    ids.add(row[0].toInt())
+                    keys.add(row[1])
+                }
+            }
+            finally
+            {
+                rows.close()
+            }
+
+            return build(ids.toIntArray(), keys.toTypedArray())
+        }
+    }
+}
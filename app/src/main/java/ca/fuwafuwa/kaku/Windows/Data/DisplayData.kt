@@ -2,12 +2,19 @@ package ca.fuwafuwa.kaku.Windows.Data
 
 import android.graphics.Bitmap
 import ca.fuwafuwa.kaku.Ocr.BoxParams
+import ca.fuwafuwa.kaku.Search.Segmenter
 import ca.fuwafuwa.kaku.splitTextByChar
 
 open class DisplayData(var squareChars: List<ISquareChar>)
 {
     open var instantMode = false
 
+    /**
+     * [text] split into words, indexed like [squareChars]. Null until the prefetch after OCR has segmented it, and
+     * again after the chars change.
+     */
+    var segments: List<Segmenter.Segment>? = null
+
     val text: String
         get()
         {
@@ -27,6 +34,24 @@ open class DisplayData(var squareChars: List<ISquareChar>)
             return squareChars.size
         }
 
+    /**
+     * Start of each of [squareChars] in [text], chars can be more than one UTF-16 unit long
+     */
+    val textOffsets: IntArray
+        get()
+        {
+            val offsets = IntArray(squareChars.size)
+            var offset = 0
+
+            for ((index, char) in squareChars.withIndex())
+            {
+                offsets[index] = offset
+                offset += char.char.length
+            }
+
+            return offsets
+        }
+
     fun recomputeChars()
     {
         val newSquareChars = mutableListOf<ISquareChar>()
@@ -68,6 +93,7 @@ open class DisplayData(var squareChars: List<ISquareChar>)
         }
 
         squareChars = newSquareChars
+        segments = null
         assignIndicies()
     }
 
@@ -13,8 +13,10 @@ import android.view.Gravity;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewConfiguration;
+import android.view.ViewTreeObserver;
 import android.view.WindowManager;
 import android.widget.LinearLayout;
+import android.widget.ScrollView;
 import android.widget.TextSwitcher;
 
 import org.jetbrains.annotations.NotNull;
@@ -28,6 +30,7 @@ import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryOptimized;
 import ca.fuwafuwa.kaku.KakuTools;
 import ca.fuwafuwa.kaku.LangUtils;
 import ca.fuwafuwa.kaku.R;
+import ca.fuwafuwa.kaku.Search.JmLookup;
 import ca.fuwafuwa.kaku.Search.JmSearchResult;
 import ca.fuwafuwa.kaku.Search.SearchInfo;
 import ca.fuwafuwa.kaku.Search.Searcher;
@@ -53,7 +56,11 @@ public class InformationWindow extends Window implements Searcher.SearchDictDone
     private LinearLayout mInfoWindow;
     private KanjiGridView mKanjiGrid;
     private TextSwitcher mDictResults;
+    private ScrollView mDictResultsScroll;
     private Searcher mSearcher;
+    private SearchInfo mLastSearch;
+    private List<JmSearchResult> mDisplayedResults = new ArrayList<>();
+    private boolean mHasMoreResults;
     private boolean mTextOnlyLookup;
     private ArrayList<ISquareChar> mSearchedChars = new ArrayList<>();
 
@@ -66,6 +73,24 @@ public class InformationWindow extends Window implements Searcher.SearchDictDone
         mInfoWindow = window.findViewById(R.id.info_window);
         mKanjiGrid = window.findViewById(R.id.kanji_grid);
         mDictResults = window.findViewById(R.id.dict_results);
+        mDictResultsScroll = window.findViewById(R.id.dict_results_scroll);
+
+        // Lookups only return a page of results, ask for the next one once the end of the list is in view. A page
+        // that doesn't fill the window can't be scrolled, so it's checked after every layout as well.
+        mDictResultsScroll.getViewTreeObserver().addOnScrollChangedListener(new ViewTreeObserver.OnScrollChangedListener() {
+            @Override
+            public void onScrollChanged()
+            {
+                searchNextPageIfAtEnd();
+            }
+        });
+        mDictResultsScroll.getViewTreeObserver().addOnGlobalLayoutListener(new ViewTreeObserver.OnGlobalLayoutListener() {
+            @Override
+            public void onGlobalLayout()
+            {
+                searchNextPageIfAtEnd();
+            }
+        });
 
         mKanjiGrid.setDependencies(windowCoordinator, this);
 
@@ -79,6 +104,17 @@ public class InformationWindow extends Window implements Searcher.SearchDictDone
         show();
     }
 
+    private void searchNextPageIfAtEnd()
+    {
+        View content = mDictResultsScroll.getChildAt(0);
+        if (mHasMoreResults && content != null && mDictResultsScroll.getScrollY() + mDictResultsScroll.getHeight() >= content.getHeight())
+        {
+            mHasMoreResults = false;
+            // Same text the first page was found in, which may have been spelled from other OCR choices
+            mSearcher.search(new SearchInfo(mLastSearch.getSquareChar(), mLastSearch.getPage() + 1, mLastSearch.getChoiceText()));
+        }
+    }
+
     public void setResult(DisplayData displayData)
     {
         mSearchedChars = new ArrayList<>();
@@ -163,6 +199,7 @@ public class InformationWindow extends Window implements Searcher.SearchDictDone
     public void show()
     {
         mDictResults.setText("");
+        mHasMoreResults = false;
 
         window.setVisibility(View.VISIBLE);
         params.y = 0; // onScroll changes this value
@@ -298,6 +335,18 @@ public class InformationWindow extends Window implements Searcher.SearchDictDone
     @Override
     public void jmResultsCallback(List<JmSearchResult> results, SearchInfo search)
     {
+        mLastSearch = search;
+        mHasMoreResults = results.size() == JmLookup.PAGE_SIZE;
+
+        if (search.getPage() > 0)
+        {
+            mDisplayedResults.addAll(results);
+            mDictResults.setCurrentText(getResultsText(mDisplayedResults));
+            return;
+        }
+
+        mDisplayedResults = new ArrayList<>(results);
+
         windowCoordinator.getWindow(Constants.WINDOW_INSTANT_KANJI).hide();
 
         if (results.size() > 0)
@@ -334,6 +383,11 @@ public class InformationWindow extends Window implements Searcher.SearchDictDone
     }
 
     private void displayResults(List<JmSearchResult> jmResults)
+    {
+        mDictResults.setText(getResultsText(jmResults));
+    }
+
+    private String getResultsText(List<JmSearchResult> jmResults)
     {
         StringBuilder sb = new StringBuilder();
 
@@ -368,7 +422,7 @@ public class InformationWindow extends Window implements Searcher.SearchDictDone
             sb.setLength(sb.length() - 2);
         }
 
-        mDictResults.setText(sb.toString());
+        return sb.toString();
     }
 
     private String getMeaning(EntryOptimized entry)
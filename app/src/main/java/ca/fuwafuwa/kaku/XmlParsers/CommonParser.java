@@ -3,11 +3,16 @@ package ca.fuwafuwa.kaku.XmlParsers;
 import android.content.Context;
 import android.util.Log;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import ca.fuwafuwa.kaku.Database.JmDictDatabase.JmDatabaseHelper;
 import ca.fuwafuwa.kaku.Database.KanjiDict2Database.Kd2DatabaseHelper;
@@ -21,6 +26,16 @@ public class CommonParser {
 
     private static final String TAG = CommonParser.class.getName();
 
+    // parseString can run on the reader threads of several dictionaries at once
+    private static final ThreadLocal<StringBuilder> TEXT_BUFFER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder();
+        }
+    };
+
+    private static final Interner<String> VOCABULARY = Interners.newStrongInterner();
+
     private Context mContext;
 
     public CommonParser(Context mContext) {
@@ -35,6 +50,17 @@ public class CommonParser {
         dictThread.start();
     }
 
+    public void updateJmDict() {
+        Log.d(TAG, "UPDATING DICTIONARY");
+        Thread updateThread = new Thread(new JmUpdateRunnable(mContext));
+        updateThread.setDaemon(true);
+        updateThread.start();
+    }
+
+    /**
+     * Text of the element the parser is on, entity references included. Most elements are one text node, that's
+     * returned as is, only elements made of several nodes are joined.
+     */
     public static String parseString(XmlPullParser parser) throws IOException, XmlPullParserException {
 
         if (parser.isEmptyElementTag()){
@@ -42,25 +68,53 @@ public class CommonParser {
             return null;
         }
 
-        StringBuilder sb = new StringBuilder();
         String XMLTAG = parser.getName();
         parser.require(XmlPullParser.START_TAG, null, XMLTAG);
         parser.nextToken();
 
+        String text = null;
+        StringBuilder sb = null;
         while (!XMLTAG.equals(parser.getName())) {
+            String part = null;
             switch (parser.getEventType()) {
                 case XmlPullParser.TEXT:
-                    sb.append(parser.getText());
+                    part = parser.getText();
                     break;
                 case XmlPullParser.ENTITY_REF:
-                    sb.append(parser.getText().trim());
+                    part = parser.getText().trim();
                     break;
             }
+
+            if (part != null){
+                if (text == null){
+                    text = part;
+                }
+                else {
+                    if (sb == null){
+                        sb = TEXT_BUFFER.get();
+                        sb.setLength(0);
+                        sb.append(text);
+                    }
+                    sb.append(part);
+                }
+            }
             parser.nextToken();
         }
 
         parser.require(XmlPullParser.END_TAG, null, XMLTAG);
-        return sb.toString();
+
+        if (sb != null){
+            return sb.toString();
+        }
+        return text == null ? "" : text;
+    }
+
+    /**
+     * {@link #parseString} for elements whose text comes from a fixed set of codes (priorities, info fields), so every
+     * occurrence of a code shares one String
+     */
+    public static String parseVocabulary(XmlPullParser parser) throws IOException, XmlPullParserException {
+        return intern(parseString(parser));
     }
 
     public static String parseOnlyEntityRef(XmlPullParser parser) throws IOException, XmlPullParserException {
@@ -70,30 +124,57 @@ public class CommonParser {
             return null;
         }
 
-        StringBuilder sb = new StringBuilder();
         String XMLTAG = parser.getName();
         parser.require(XmlPullParser.START_TAG, null, XMLTAG);
         parser.nextToken();
 
+        String entities = null;
         while (!XMLTAG.equals(parser.getName())) {
             switch (parser.getEventType()) {
                 case XmlPullParser.ENTITY_REF:
-                    sb.append(parser.getName());
+                    entities = entities == null ? parser.getName() : entities + parser.getName();
                     break;
             }
             parser.nextToken();
         }
 
         parser.require(XmlPullParser.END_TAG, null, XMLTAG);
-        return sb.toString();
+        return entities == null ? "" : intern(entities);
+    }
+
+    /**
+     * @return Value of the attribute called name on the current tag, null if it doesn't have one
+     */
+    public static String getAttribute(XmlPullParser parser, String name){
+        // Last one wins if it's there twice
+        for (int i = parser.getAttributeCount() - 1; i >= 0; i--){
+            if (name.equals(parser.getAttributeName(i))){
+                return parser.getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The one shared copy of s, for the handful of codes JMdict repeats hundreds of thousands of times
+     */
+    public static String intern(String s){
+        return s == null ? null : VOCABULARY.intern(s);
     }
 
-    public static HashMap<String, String> parseAttributes(XmlPullParser parser){
-        HashMap<String, String> attrMap = new HashMap<>();
-        int numAttr = parser.getAttributeCount();
-        for (int i = 0; i < numAttr; i++){
-            attrMap.put(parser.getAttributeName(i), parser.getAttributeValue(i));
+    /**
+     * Adds item to list, creating the list first if it's null. Most optional elements never show up in an entry, so
+     * the DTOs leave their lists null until they do.
+     */
+    public static <T> List<T> append(List<T> list, T item){
+        if (list == null){
+            list = new ArrayList<>(2);
         }
-        return attrMap;
+        list.add(item);
+        return list;
+    }
+
+    public static <T> List<T> orEmpty(List<T> list){
+        return list == null ? Collections.<T>emptyList() : list;
     }
 }
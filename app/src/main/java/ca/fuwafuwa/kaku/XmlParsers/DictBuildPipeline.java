@@ -0,0 +1,163 @@
+package ca.fuwafuwa.kaku.XmlParsers;
+
+import android.util.Log;
+
+import com.google.common.util.concurrent.Futures;
+import com.j256.ormlite.misc.TransactionManager;
+import com.j256.ormlite.support.ConnectionSource;
+
+import org.xmlpull.v1.XmlPullParser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ca.fuwafuwa.kaku.XmlParsers.Interfaces.DictParser;
+
+/**
+ * Builds several dictionaries at once, each in three stages so tokenizing the XML, building rows and writing to the DB
+ * don't wait on each other:
+ *
+ *   read     one thread per dictionary reads entries out of the XML with DictParser.readEntry, and hands each one to
+ *            the workers
+ *   convert  one worker thread per core turns entries into rows with DictParser.toRows, for every dictionary
+ *   write    the thread calling run() writes the rows with DictParser.writeRows in the order they were read
+ *
+ * SQLite only takes one writer, so dictionaries are written one after another, each in its own transaction, while the
+ * ones after it are already being read and converted. Between reading and writing a dictionary has at most QUEUE_SIZE
+ * entries in flight, its reader waits for the writer to catch up, so memory doesn't grow with the size of the XML.
+ */
+public class DictBuildPipeline {
+
+    private static final String TAG = DictBuildPipeline.class.getName();
+
+    private static final int QUEUE_SIZE = 1024;
+
+    private List<Dictionary<?, ?>> mDictionaries = new ArrayList<>();
+
+    /**
+     * Dictionaries are written in the order they're added
+     */
+    public <T, R> void add(String name, DictParser<T, R> parser, XmlPullParser xml, ConnectionSource connectionSource) {
+        mDictionaries.add(new Dictionary<>(name, parser, xml, connectionSource));
+    }
+
+    public void run() throws Exception {
+
+        ExecutorService workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            for (Dictionary<?, ?> dictionary : mDictionaries){
+                dictionary.startReading(workers);
+            }
+
+            for (Dictionary<?, ?> dictionary : mDictionaries){
+                dictionary.write();
+            }
+        } finally {
+            // Readers are blocked on a full queue if a write failed
+            for (Dictionary<?, ?> dictionary : mDictionaries){
+                dictionary.stopReading();
+            }
+            workers.shutdownNow();
+        }
+    }
+
+    private static class Dictionary<T, R> {
+
+        private final String mName;
+        private final DictParser<T, R> mParser;
+        private final XmlPullParser mXml;
+        private final ConnectionSource mConnectionSource;
+
+        // Futures in the order the entries were read, so the writer gets the rows in that order whichever worker
+        // finishes first
+        private final BlockingQueue<Future<R>> mRows = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        private final Future<R> mEnd = Futures.immediateFuture(null);
+
+        private volatile Exception mReadError;
+        private Thread mReader;
+
+        Dictionary(String name, DictParser<T, R> parser, XmlPullParser xml, ConnectionSource connectionSource){
+            mName = name;
+            mParser = parser;
+            mXml = xml;
+            mConnectionSource = connectionSource;
+        }
+
+        void startReading(final ExecutorService workers) {
+
+            mReader = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        try {
+                            for (T entry = mParser.readEntry(mXml); entry != null; entry = mParser.readEntry(mXml)){
+                                final T readEntry = entry;
+                                mRows.put(workers.submit(new Callable<R>() {
+                                    @Override
+                                    public R call() {
+                                        return mParser.toRows(readEntry);
+                                    }
+                                }));
+                            }
+                        } catch (InterruptedException e) {
+                            throw e;
+                        } catch (Exception e) {
+                            mReadError = e;
+                        }
+                        mRows.put(mEnd);
+                    } catch (InterruptedException e) {
+                        // Stopped, nothing is going to write the rest
+                    }
+                }
+            }, "DictReader-" + mName);
+            mReader.setDaemon(true);
+            mReader.start();
+        }
+
+        void stopReading() {
+            if (mReader != null){
+                mReader.interrupt();
+            }
+        }
+
+        void write() throws Exception {
+
+            long startTime = System.currentTimeMillis();
+
+            TransactionManager.callInTransaction(mConnectionSource, new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+
+                    mParser.beginWrite();
+                    for (Future<R> rows = mRows.take(); rows != mEnd; rows = mRows.take()){
+                        mParser.writeRows(getRows(rows));
+                    }
+
+                    if (mReadError != null){
+                        throw mReadError;
+                    }
+                    mParser.finishWrite();
+
+                    return null;
+                }
+            });
+
+            Log.d(TAG, String.format("Wrote %s in %dms", mName, System.currentTimeMillis() - startTime));
+        }
+
+        private R getRows(Future<R> rows) throws Exception {
+            try {
+                return rows.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }
+    }
+}
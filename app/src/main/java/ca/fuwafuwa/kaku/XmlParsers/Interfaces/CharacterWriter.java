@@ -0,0 +1,13 @@
+package ca.fuwafuwa.kaku.XmlParsers.Interfaces;
+
+import java.io.IOException;
+
+import ca.fuwafuwa.kaku.Database.KanjiDict2Database.Models.CharacterOptimized;
+
+/**
+ * Receives every kanji the Kd2Parser produces, one CharacterOptimized per literal, in parse order
+ */
+public interface CharacterWriter {
+
+    void write(CharacterOptimized character) throws IOException;
+}
@@ -8,9 +8,46 @@ import java.sql.SQLException;
 
 /**
  * Created by 0xbad1d3a5 on 12/1/2016.
+ *
+ * A parser is split into the stages DictBuildPipeline runs on separate threads: readEntry on a reader thread, toRows
+ * on several worker threads at once, and beginWrite, writeRows and finishWrite on one writer thread inside the load's
+ * transaction. parseDict runs them one after another on the calling thread.
+ *
+ * @param <T> One entry as read from the XML
+ * @param <R> The rows of one entry
  */
 
-public interface DictParser {
+public interface DictParser<T, R> {
 
     void parseDict(XmlPullParser parser) throws IOException, XmlPullParserException, SQLException;
+
+    /**
+     * Entries are always written to the DB, this adds another output for them (e.g. the binary dictionary)
+     */
+    void addEntryWriter(EntryWriter entryWriter);
+
+    /**
+     * @return The next entry in the XML, null once the whole dictionary has been read
+     */
+    T readEntry(XmlPullParser parser) throws IOException, XmlPullParserException;
+
+    /**
+     * Only looks at entry, so it can run on any number of threads at once
+     */
+    R toRows(T entry);
+
+    /**
+     * Starts the writes of the dictionary and of every EntryWriter
+     */
+    void beginWrite() throws SQLException, IOException;
+
+    /**
+     * Writes rows to the DB and every EntryWriter. Rows have to come in the order their entries were read.
+     */
+    void writeRows(R rows) throws SQLException, IOException;
+
+    /**
+     * Writes whatever is still buffered, in the DB and in every EntryWriter
+     */
+    void finishWrite() throws SQLException, IOException;
 }
@@ -0,0 +1,18 @@
+package ca.fuwafuwa.kaku.XmlParsers.Interfaces;
+
+import java.io.IOException;
+
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryOptimized;
+
+/**
+ * Receives every EntryOptimized a DictParser produces, in parse order. begin and finish run around the writes of each
+ * dictionary, in the same transaction, so a writer shared by several dictionaries sees them more than once.
+ */
+public interface EntryWriter {
+
+    void begin() throws IOException;
+
+    void write(EntryOptimized entry) throws IOException;
+
+    void finish() throws IOException;
+}
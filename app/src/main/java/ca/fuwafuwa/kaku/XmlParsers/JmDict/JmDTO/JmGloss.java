@@ -4,7 +4,6 @@ import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
-import java.util.HashMap;
 
 import ca.fuwafuwa.kaku.XmlParsers.CommonParser;
 import ca.fuwafuwa.kaku.XmlParsers.JmDict.JmConsts;
@@ -25,14 +24,13 @@ public class JmGloss {
     public JmGloss(XmlPullParser parser) throws IOException, XmlPullParserException {
         parser.require(XmlPullParser.START_TAG, null, XMLTAG);
 
-        HashMap<String, String> attrMap = CommonParser.parseAttributes(parser);
-        g_gend = attrMap.get(JmConsts.G_GEND);
-        if (attrMap.get(JmConsts.XML_LANG) == null){
+        g_gend = CommonParser.intern(CommonParser.getAttribute(parser, JmConsts.G_GEND));
+        lang = CommonParser.intern(CommonParser.getAttribute(parser, JmConsts.XML_LANG));
+        if (lang == null){
             lang = "eng";
             isEnglish = true;
         }
         else {
-            lang = attrMap.get(JmConsts.XML_LANG);
             isEnglish = "eng".equals(lang);
         }
 
@@ -4,7 +4,6 @@ import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
 
 import ca.fuwafuwa.kaku.XmlParsers.CommonParser;
@@ -31,8 +30,8 @@ public class JmKEle {
     private static final String XMLTAG = JmConsts.K_ELE;
 
     private String keb = null;
-    private List<String> ke_inf = new ArrayList<>();
-    private List<String> ke_pri = new ArrayList<>();
+    private List<String> ke_inf;
+    private List<String> ke_pri;
 
     public JmKEle(XmlPullParser parser) throws IOException, XmlPullParserException {
         parser.require(XmlPullParser.START_TAG, null, XMLTAG);
@@ -45,10 +44,10 @@ public class JmKEle {
                     keb = CommonParser.parseString(parser);
                     break;
                 case JmConsts.KE_INF:
-                    ke_inf.add(CommonParser.parseString(parser));
+                    ke_inf = CommonParser.append(ke_inf, CommonParser.parseVocabulary(parser));
                     break;
                 case JmConsts.KE_PRI:
-                    ke_pri.add(CommonParser.parseString(parser));
+                    ke_pri = CommonParser.append(ke_pri, CommonParser.parseVocabulary(parser));
                     break;
             }
             parser.nextToken();
@@ -74,7 +73,7 @@ public class JmKEle {
      * aspect, such as okurigana irregularity.
      */
     public List<String> getKeInf(){
-        return this.ke_inf;
+        return CommonParser.orEmpty(this.ke_inf);
     }
 
     /**
@@ -109,7 +108,7 @@ public class JmKEle {
      * kanji/reading pair.
      */
     public List<String> getKePri(){
-        return this.ke_pri;
+        return CommonParser.orEmpty(this.ke_pri);
     }
 }
 
@@ -4,7 +4,6 @@ import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
-import java.util.HashMap;
 
 import ca.fuwafuwa.kaku.XmlParsers.CommonParser;
 import ca.fuwafuwa.kaku.XmlParsers.JmDict.JmConsts;
@@ -24,10 +23,12 @@ public class JmLsource {
     public JmLsource(XmlPullParser parser) throws IOException, XmlPullParserException {
         parser.require(XmlPullParser.START_TAG, null, XMLTAG);
 
-        HashMap<String, String> attrMap = CommonParser.parseAttributes(parser);
-        lang = attrMap.get(JmConsts.XML_LANG) == null ? "eng" : attrMap.get(JmConsts.XML_LANG);
-        ls_type = attrMap.get(JmConsts.LS_TYPE);
-        ls_wasei = attrMap.get(JmConsts.LS_WASEI);
+        lang = CommonParser.intern(CommonParser.getAttribute(parser, JmConsts.XML_LANG));
+        if (lang == null){
+            lang = "eng";
+        }
+        ls_type = CommonParser.intern(CommonParser.getAttribute(parser, JmConsts.LS_TYPE));
+        ls_wasei = CommonParser.intern(CommonParser.getAttribute(parser, JmConsts.LS_WASEI));
         text = CommonParser.parseString(parser);
     }
 
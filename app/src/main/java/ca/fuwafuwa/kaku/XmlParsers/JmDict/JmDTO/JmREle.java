@@ -6,7 +6,6 @@ import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
 
 import ca.fuwafuwa.kaku.XmlParsers.CommonParser;
@@ -26,9 +25,9 @@ public class JmREle {
 
     private String reb = null;
     private String re_nokanji = null;
-    private List<String> re_restr = new ArrayList<>();
-    private List<String> re_inf = new ArrayList<>();
-    private List<String> re_pri = new ArrayList<>();
+    private List<String> re_restr;
+    private List<String> re_inf;
+    private List<String> re_pri;
 
     public JmREle(XmlPullParser parser) throws IOException, XmlPullParserException {
         parser.require(XmlPullParser.START_TAG, null, XMLTAG);
@@ -44,13 +43,13 @@ public class JmREle {
                     re_nokanji = CommonParser.parseString(parser);
                     break;
                 case JmConsts.RE_RESTR:
-                    re_restr.add(CommonParser.parseString(parser));
+                    re_restr = CommonParser.append(re_restr, CommonParser.parseString(parser));
                     break;
                 case JmConsts.RE_INF:
-                    re_inf.add(CommonParser.parseString(parser));
+                    re_inf = CommonParser.append(re_inf, CommonParser.parseVocabulary(parser));
                     break;
                 case JmConsts.RE_PRI:
-                    re_pri.add(CommonParser.parseString(parser));
+                    re_pri = CommonParser.append(re_pri, CommonParser.parseVocabulary(parser));
                     break;
             }
             parser.nextToken();
@@ -66,9 +65,9 @@ public class JmREle {
         StringBuilder sb = new StringBuilder();
         sb.append(String.format("reb: %s\n", reb));
         sb.append(String.format("re_nokanji: %s\n", re_nokanji));
-        sb.append(String.format("re_restr: [%s]\n", Joiner.on(", ").join(re_restr)));
-        sb.append(String.format("re_inf: [%s]\n", Joiner.on(", ").join(re_inf)));
-        sb.append(String.format("re_pri: [%s]\n", Joiner.on(", ").join(re_pri)));
+        sb.append(String.format("re_restr: [%s]\n", Joiner.on(", ").join(getReRestr())));
+        sb.append(String.format("re_inf: [%s]\n", Joiner.on(", ").join(getReInf())));
+        sb.append(String.format("re_pri: [%s]\n", Joiner.on(", ").join(getRePri())));
         return sb.toString();
     }
 
@@ -100,7 +99,7 @@ public class JmREle {
      * must exactly match those of one of the keb elements.
      */
     public List<String> getReRestr(){
-        return this.re_restr;
+        return CommonParser.orEmpty(this.re_restr);
     }
 
     /**
@@ -109,13 +108,13 @@ public class JmREle {
      * the reading.
      */
     public List<String> getReInf(){
-        return this.re_inf;
+        return CommonParser.orEmpty(this.re_inf);
     }
 
     /**
      * See the comment on ke_pri above.
      */
     public List<String> getRePri(){
-        return this.re_pri;
+        return CommonParser.orEmpty(this.re_pri);
     }
 }
@@ -6,7 +6,7 @@ import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -24,18 +24,18 @@ public class JmSense {
 
     private static final String XMLTAG = JmConsts.SENSE;
 
-    private List<String> stagk = new ArrayList<>();
-    private List<String> stagr = new ArrayList<>();
-    private HashSet<String> pos = new HashSet<>();
-    private List<String> xref = new ArrayList<>();
-    private List<String> ant = new ArrayList<>();
-    private List<String> field = new ArrayList<>();
-    private List<String> misc = new ArrayList<>();
-    private List<String> s_inf = new ArrayList<>();
-    private List<JmLsource> lsource = new ArrayList<>();
-    private List<String> dial = new ArrayList<>();
-    private List<JmGloss> gloss = new ArrayList<>();
-    private List<String> example = new ArrayList<>();
+    private List<String> stagk;
+    private List<String> stagr;
+    private Set<String> pos;
+    private List<String> xref;
+    private List<String> ant;
+    private List<String> field;
+    private List<String> misc;
+    private List<String> s_inf;
+    private List<JmLsource> lsource;
+    private List<String> dial;
+    private List<JmGloss> gloss;
+    private List<String> example;
 
     public JmSense(XmlPullParser parser) throws IOException, XmlPullParserException {
         parser.require(XmlPullParser.START_TAG, null, XMLTAG);
@@ -45,40 +45,43 @@ public class JmSense {
             String name = parser.getName() == null ? "" : parser.getName();
             switch(name){
                 case JmConsts.STAGK:
-                    stagk.add(CommonParser.parseString(parser));
+                    stagk = CommonParser.append(stagk, CommonParser.parseString(parser));
                     break;
                 case JmConsts.STAGR:
-                    stagr.add(CommonParser.parseString(parser));
+                    stagr = CommonParser.append(stagr, CommonParser.parseString(parser));
                     break;
                 case JmConsts.POS:
+                    if (pos == null){
+                        pos = new HashSet<>();
+                    }
                     pos.add(CommonParser.parseOnlyEntityRef(parser));
                     break;
                 case JmConsts.XREF:
-                    xref.add(CommonParser.parseString(parser));
+                    xref = CommonParser.append(xref, CommonParser.parseString(parser));
                     break;
                 case JmConsts.ANT:
-                    ant.add(CommonParser.parseString(parser));
+                    ant = CommonParser.append(ant, CommonParser.parseString(parser));
                     break;
                 case JmConsts.FIELD:
-                    field.add(CommonParser.parseString(parser));
+                    field = CommonParser.append(field, CommonParser.parseVocabulary(parser));
                     break;
                 case JmConsts.MISC:
-                    misc.add(CommonParser.parseString(parser));
+                    misc = CommonParser.append(misc, CommonParser.parseVocabulary(parser));
                     break;
                 case JmConsts.S_INF:
-                    s_inf.add(CommonParser.parseString(parser));
+                    s_inf = CommonParser.append(s_inf, CommonParser.parseString(parser));
                     break;
                 case JmConsts.LSOURCE:
-                    lsource.add(new JmLsource(parser));
+                    lsource = CommonParser.append(lsource, new JmLsource(parser));
                     break;
                 case JmConsts.DIAL:
-                    dial.add(CommonParser.parseString(parser));
+                    dial = CommonParser.append(dial, CommonParser.parseVocabulary(parser));
                     break;
                 case JmConsts.GLOSS:
-                    gloss.add(new JmGloss(parser));
+                    gloss = CommonParser.append(gloss, new JmGloss(parser));
                     break;
                 case JmConsts.EXAMPLE:
-                    example.add(CommonParser.parseString(parser));
+                    example = CommonParser.append(example, CommonParser.parseString(parser));
                     break;
             }
             parser.nextToken();
@@ -89,7 +92,7 @@ public class JmSense {
 
     public String toString(){
         StringBuilder sb = new StringBuilder();
-        sb.append(String.format("gloss: [%s]\n", Joiner.on(", ").join(gloss)));
+        sb.append(String.format("gloss: [%s]\n", Joiner.on(", ").join(getGloss())));
         return sb.toString();
     }
 
@@ -98,10 +101,10 @@ public class JmSense {
      * to the lexeme represented by the keb and/or reb.
      */
     public List<String> getStagk(){
-        return this.stagk;
+        return CommonParser.orEmpty(this.stagk);
     }
     public List<String> getStagr(){
-        return this.stagr;
+        return CommonParser.orEmpty(this.stagr);
     }
 
     /**
@@ -110,8 +113,8 @@ public class JmSense {
      * in an entry, the part-of-speech of an earlier sense will apply to
      * later senses unless there is a new part-of-speech indicated.
      */
-    public HashSet<String> getPos(){
-        return this.pos;
+    public Set<String> getPos(){
+        return this.pos == null ? Collections.<String>emptySet() : this.pos;
     }
 
     /**
@@ -124,7 +127,7 @@ public class JmSense {
      * cross-reference.
      */
     public List<String> getXRef() {
-        return this.xref;
+        return CommonParser.orEmpty(this.xref);
     }
 
     /**
@@ -133,7 +136,7 @@ public class JmSense {
      * must exactly match that of a keb or reb element in another entry.
      */
     public List<String> getAnt(){
-        return this.ant;
+        return CommonParser.orEmpty(this.ant);
     }
 
     /**
@@ -142,7 +145,7 @@ public class JmSense {
      * specific fields of application.
      */
     public List<String> getField(){
-        return this.field;
+        return CommonParser.orEmpty(this.field);
     }
 
     /**
@@ -151,7 +154,7 @@ public class JmSense {
      * apply to several senses.
      */
     public List<String> getMisc(){
-        return this.misc;
+        return CommonParser.orEmpty(this.misc);
     }
 
     /**
@@ -161,7 +164,7 @@ public class JmSense {
      * regional variations, etc.
      */
     public List<String> getSInf(){
-        return this.s_inf;
+        return CommonParser.orEmpty(this.s_inf);
     }
 
     /**
@@ -171,7 +174,7 @@ public class JmSense {
      * The element value (if any) is the source word or phrase.
      */
     public List<JmLsource> getLSource(){
-        return this.lsource;
+        return CommonParser.orEmpty(this.lsource);
     }
 
     /**
@@ -179,7 +182,7 @@ public class JmSense {
      * Japanese, the entity code for that dialect, e.g. ksb for Kansaiben.
      */
     public List<String> getDial(){
-        return this.dial;
+        return CommonParser.orEmpty(this.dial);
     }
 
     /**
@@ -196,7 +199,7 @@ public class JmSense {
      *       used as head-words in a reverse target-language/Japanese relationship.
      */
     public List<JmGloss> getGloss(){
-        return this.gloss;
+        return CommonParser.orEmpty(this.gloss);
     }
 
     /**
@@ -206,6 +209,6 @@ public class JmSense {
      * fields would typically not be indexed by a dictionary application.
      */
     public List<String> getExample(){
-        return this.example;
+        return CommonParser.orEmpty(this.example);
     }
 }
@@ -2,7 +2,10 @@ package ca.fuwafuwa.kaku.XmlParsers.JmDict;
 
 import android.util.Log;
 
+import com.google.common.base.Charsets;
 import com.google.common.base.Joiner;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
@@ -18,6 +21,7 @@ import java.util.Set;
 import ca.fuwafuwa.kaku.Constants;
 import ca.fuwafuwa.kaku.Database.DatabaseHelper;
 import ca.fuwafuwa.kaku.Database.IDatabaseHelper;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.EntryBulkWriter;
 import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.Entry;
 import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryOptimized;
 import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.Kanji;
@@ -41,6 +45,7 @@ import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.ReadingPriority;
 import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.ReadingRestriction;
 import ca.fuwafuwa.kaku.LangUtils;
 import ca.fuwafuwa.kaku.XmlParsers.Interfaces.DictParser;
+import ca.fuwafuwa.kaku.XmlParsers.Interfaces.EntryWriter;
 import ca.fuwafuwa.kaku.XmlParsers.JmDict.JmDTO.JmEntry;
 import ca.fuwafuwa.kaku.XmlParsers.JmDict.JmDTO.JmGloss;
 import ca.fuwafuwa.kaku.XmlParsers.JmDict.JmDTO.JmKEle;
@@ -51,41 +56,114 @@ import ca.fuwafuwa.kaku.XmlParsers.JmDict.JmDTO.JmSense;
 /**
  * Created by 0xbad1d3a5 on 4/30/2016.
  */
-public class JmParser implements DictParser {
+public class JmParser implements DictParser<JmEntry, List<EntryOptimized>> {
 
     private static final String TAG = JmParser.class.getName();
 
     private IDatabaseHelper mDbHelper;
+    private EntryBulkWriter mEntryBulkWriter;
+    private List<EntryWriter> mEntryWriters = new ArrayList<>();
     private int parseCount = 0;
+    private boolean mReadStarted = false;
 
-    public JmParser(IDatabaseHelper dbHelper){
+    public JmParser(IDatabaseHelper dbHelper) throws SQLException {
         mDbHelper = dbHelper;
+        mEntryBulkWriter = new EntryBulkWriter(dbHelper);
+    }
+
+    @Override
+    public void addEntryWriter(EntryWriter entryWriter) {
+        mEntryWriters.add(entryWriter);
     }
 
     @Override
     public void parseDict(XmlPullParser parser) throws IOException, XmlPullParserException, SQLException {
 
-        while (!JmConsts.JMDICT.equals(parser.getName())){
-            parser.nextToken();
+        beginWrite();
+        for (JmEntry jmEntry = readEntry(parser); jmEntry != null; jmEntry = readEntry(parser)){
+            writeRows(toRows(jmEntry));
         }
+        finishWrite();
+    }
+
+    @Override
+    public JmEntry readEntry(XmlPullParser parser) throws IOException, XmlPullParserException {
 
-        parser.require(XmlPullParser.START_TAG, null, JmConsts.JMDICT);
-        parser.nextToken();
+        if (!mReadStarted){
+            while (!JmConsts.JMDICT.equals(parser.getName())){
+                parser.nextToken();
+            }
+
+            parser.require(XmlPullParser.START_TAG, null, JmConsts.JMDICT);
+            parser.nextToken();
+            mReadStarted = true;
+        }
 
         while (!JmConsts.JMDICT.equals(parser.getName())){
             String name = parser.getName() == null ? "" : parser.getName();
+            JmEntry jmEntry = null;
             switch(name){
                 case JmConsts.ENTRY:
-                    parseJmEntry(parser);
+                    jmEntry = new JmEntry(parser);
                     break;
             }
             parser.nextToken();
+
+            if (jmEntry != null){
+                return jmEntry;
+            }
         }
 
         parser.require(XmlPullParser.END_TAG, null, JmConsts.JMDICT);
+        return null;
+    }
+
+    @Override
+    public void beginWrite() throws SQLException, IOException {
+        mEntryBulkWriter.begin();
+        for (EntryWriter entryWriter : mEntryWriters){
+            entryWriter.begin();
+        }
+    }
+
+    @Override
+    public void writeRows(List<EntryOptimized> optimizedEntries) throws SQLException, IOException {
+
+        for (EntryOptimized entryOptimized : optimizedEntries)
+        {
+            mEntryBulkWriter.write(entryOptimized);
+            for (EntryWriter entryWriter : mEntryWriters)
+            {
+                entryWriter.write(entryOptimized);
+            }
+        }
+
+        if (++parseCount % 100 == 0){
+            Log.d(TAG, String.format("Parsed %d entries", parseCount));
+        }
+    }
+
+    @Override
+    public void finishWrite() throws SQLException, IOException {
+        mEntryBulkWriter.finish();
+        for (EntryWriter entryWriter : mEntryWriters){
+            entryWriter.finish();
+        }
     }
 
-    public void parseJmEntryOptimized(JmEntry jmEntry) throws SQLException {
+    @Override
+    public List<EntryOptimized> toRows(JmEntry jmEntry) {
+
+        // Unneeded for now due to optimized entry
+        /*
+        Entry newEntry = new Entry();
+        newEntry.setId(jmEntry.getEntSeq());
+        mDbHelper.getDbDao(Entry.class).create(newEntry);
+
+        parseJmKanji(jmEntry, newEntry);
+        parseJmMeaning(jmEntry, newEntry);
+        parseJmReading(jmEntry, newEntry);
+        */
 
         List<EntryOptimized> optimizedEntries = new ArrayList<>();
 
@@ -191,37 +269,43 @@ public class JmParser implements DictParser {
             entryOptimized.setReadings(Joiner.on(", ").join(eoReadings));
             entryOptimized.setMeanings(Joiner.on(Constants.DB_SPLIT_CHAR).join(eoMeanings));
             entryOptimized.setPos(Joiner.on(Constants.DB_SPLIT_CHAR).join(eoPos));
+            entryOptimized.setPosMask(EntryOptimized.getPosMask(entryOptimized.getPos()));
             entryOptimized.setPriorities(Joiner.on(",").join(eoPriorities));
+            entryOptimized.setPriorityRank(EntryOptimized.getPriorityRank(entryOptimized.getPriorities()));
             entryOptimized.setDictionary(Constants.DB_JMDICT_NAME);
 
             if (eoMeanings.size() != eoPos.size()){
                 throw new RuntimeException();
             }
-
-            mDbHelper.getDbDao(EntryOptimized.class).create(entryOptimized);
         }
-    }
-
-    private void parseJmEntry(XmlPullParser parser) throws IOException, XmlPullParserException, SQLException {
-
-        JmEntry jmEntry = new JmEntry(parser);
 
-        // Unneeded for now due to optimized entry
-        /*
-        Entry newEntry = new Entry();
-        newEntry.setId(jmEntry.getEntSeq());
-        mDbHelper.getDbDao(Entry.class).create(newEntry);
+        long contentHash = getContentHash(optimizedEntries);
+        for (EntryOptimized entryOptimized : optimizedEntries)
+        {
+            entryOptimized.setEntSeq(jmEntry.getEntSeq());
+            entryOptimized.setContentHash(contentHash);
+        }
 
-        parseJmKanji(jmEntry, newEntry);
-        parseJmMeaning(jmEntry, newEntry);
-        parseJmReading(jmEntry, newEntry);
-        */
+        return optimizedEntries;
+    }
 
-        parseJmEntryOptimized(jmEntry);
+    /**
+     * Hashes what ends up in the DB rather than the XML, so a JMdict change that doesn't show in the rows (an
+     * example sentence, a non-English gloss) doesn't count as the entry changing
+     */
+    private static long getContentHash(List<EntryOptimized> optimizedEntries) {
 
-        if (++parseCount % 100 == 0){
-            Log.d(TAG, String.format("Parsed %d entries", parseCount));
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        for (EntryOptimized entryOptimized : optimizedEntries)
+        {
+            hasher.putString(entryOptimized.getKanji(), Charsets.UTF_8).putChar('\0');
+            hasher.putString(entryOptimized.getReadings(), Charsets.UTF_8).putChar('\0');
+            hasher.putString(entryOptimized.getMeanings(), Charsets.UTF_8).putChar('\0');
+            hasher.putString(entryOptimized.getPos(), Charsets.UTF_8).putChar('\0');
+            hasher.putString(entryOptimized.getPriorities(), Charsets.UTF_8).putChar('\0');
+            hasher.putBoolean(entryOptimized.isPrimaryEntry());
         }
+        return hasher.hash().asLong();
     }
 
     private void parseJmKanji(JmEntry jmEntry, Entry entry) throws SQLException {
@@ -0,0 +1,189 @@
+package ca.fuwafuwa.kaku.XmlParsers.JmDict;
+
+import android.util.Log;
+
+import com.j256.ormlite.dao.Dao;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ca.fuwafuwa.kaku.Constants;
+import ca.fuwafuwa.kaku.Database.IDatabaseHelper;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.EntryBulkWriter;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.Conjugation;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryOptimized;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryReading;
+import ca.fuwafuwa.kaku.XmlParsers.Interfaces.DictParser;
+import ca.fuwafuwa.kaku.XmlParsers.Interfaces.EntryWriter;
+import ca.fuwafuwa.kaku.XmlParsers.JmDict.JmDTO.JmEntry;
+
+/**
+ * Brings the JMdict rows of an installed DB up to date with a newer JMdict, without deleting the DB and parsing it
+ * from scratch. Entries are matched up by ent_seq and only the ones whose contentHash differs are rewritten:
+ *
+ *   new ent_seq          rows are inserted
+ *   contentHash changed  the old rows are deleted and the new ones inserted
+ *   ent_seq not in XML   rows are deleted
+ *
+ * Conjugation and EntryReading rows go with the EntryOptimized rows they belong to. EntryWriters only get the rows that
+ * are inserted. KANJIDIC rows aren't touched.
+ *
+ * Reading and converting the XML is the same as JmParser, so it runs in DictBuildPipeline the same way, and the whole
+ * update is one transaction: lookups see either the old dictionary or the new one.
+ */
+public class JmUpdater implements DictParser<JmEntry, List<EntryOptimized>> {
+
+    private static final String TAG = JmUpdater.class.getName();
+
+    // ent_seqs whose installed rows are deleted in finishWrite
+    private static final String STALE_TABLE = "jmupdate_stale";
+
+    private JmParser mJmParser;
+    private Dao<EntryOptimized, Integer> mEntryDao;
+    private EntryBulkWriter mEntryBulkWriter;
+    private List<EntryWriter> mEntryWriters = new ArrayList<>();
+
+    private Map<Integer, Long> mInstalledHashes = new HashMap<>();
+    private int mFirstNewId;
+
+    private int mInsertCount = 0;
+    private int mUpdateCount = 0;
+    private int mDeleteCount = 0;
+    private int mUnchangedCount = 0;
+
+    public JmUpdater(IDatabaseHelper dbHelper) throws SQLException {
+        mJmParser = new JmParser(dbHelper);
+        mEntryDao = dbHelper.getDbDao(EntryOptimized.class);
+        mEntryBulkWriter = new EntryBulkWriter(dbHelper);
+    }
+
+    @Override
+    public void addEntryWriter(EntryWriter entryWriter) {
+        mEntryWriters.add(entryWriter);
+    }
+
+    @Override
+    public void parseDict(XmlPullParser parser) throws IOException, XmlPullParserException, SQLException {
+
+        beginWrite();
+        for (JmEntry jmEntry = readEntry(parser); jmEntry != null; jmEntry = readEntry(parser)){
+            writeRows(toRows(jmEntry));
+        }
+        finishWrite();
+    }
+
+    @Override
+    public JmEntry readEntry(XmlPullParser parser) throws IOException, XmlPullParserException {
+        return mJmParser.readEntry(parser);
+    }
+
+    @Override
+    public List<EntryOptimized> toRows(JmEntry jmEntry) {
+        return mJmParser.toRows(jmEntry);
+    }
+
+    /**
+     * Loads the contentHash of every installed JMdict entry. Rows from before entSeq was stored all have ent_seq 0, so
+     * none of them match and they're all replaced.
+     */
+    @Override
+    public void beginWrite() throws SQLException, IOException {
+
+        mInstalledHashes.clear();
+        List<String[]> installed = mEntryDao.queryRaw(String.format("SELECT DISTINCT %s, %s FROM %s WHERE dictionary = ?",
+                EntryOptimized.ENT_SEQ_COLUMN, EntryOptimized.CONTENT_HASH_COLUMN, EntryOptimized.TABLE_NAME), Constants.DB_JMDICT_NAME).getResults();
+        for (String[] entry : installed){
+            mInstalledHashes.put(Integer.parseInt(entry[0]), Long.parseLong(entry[1]));
+        }
+
+        mEntryDao.executeRaw(String.format("CREATE TEMP TABLE IF NOT EXISTS %s (entSeq INTEGER PRIMARY KEY)", STALE_TABLE));
+        mEntryDao.executeRaw(String.format("DELETE FROM %s", STALE_TABLE));
+
+        // Only a small part of the table changes, the indexes are kept up to date instead of rebuilt
+        mEntryBulkWriter.begin();
+        mFirstNewId = mEntryBulkWriter.getNextId();
+        for (EntryWriter entryWriter : mEntryWriters){
+            entryWriter.begin();
+        }
+
+        Log.d(TAG, String.format("%d JMdict entries installed", mInstalledHashes.size()));
+    }
+
+    @Override
+    public void writeRows(List<EntryOptimized> optimizedEntries) throws SQLException, IOException {
+
+        if (optimizedEntries.isEmpty()){
+            return;
+        }
+
+        int entSeq = optimizedEntries.get(0).getEntSeq();
+        Long installedHash = mInstalledHashes.remove(entSeq);
+
+        if (installedHash != null && installedHash == optimizedEntries.get(0).getContentHash()){
+            mUnchangedCount++;
+            return;
+        }
+
+        if (installedHash != null){
+            markStale(entSeq);
+            mUpdateCount++;
+        }
+        else {
+            mInsertCount++;
+        }
+
+        for (EntryOptimized entryOptimized : optimizedEntries){
+            mEntryBulkWriter.write(entryOptimized);
+            for (EntryWriter entryWriter : mEntryWriters){
+                entryWriter.write(entryOptimized);
+            }
+        }
+    }
+
+    /**
+     * Deletes the rows of every entry that changed or isn't in the new JMdict anymore. Rows inserted by this update
+     * have ids from mFirstNewId on, so the new rows of a changed entry are kept.
+     */
+    @Override
+    public void finishWrite() throws SQLException, IOException {
+
+        for (int entSeq : mInstalledHashes.keySet()){
+            markStale(entSeq);
+        }
+        mDeleteCount = mInstalledHashes.size();
+        mInstalledHashes.clear();
+
+        mEntryBulkWriter.finish();
+        for (EntryWriter entryWriter : mEntryWriters){
+            entryWriter.finish();
+        }
+
+        String staleIds = String.format("SELECT id FROM %s WHERE dictionary = '%s' AND id < %d AND %s IN (SELECT entSeq FROM %s)",
+                EntryOptimized.TABLE_NAME, Constants.DB_JMDICT_NAME, mFirstNewId, EntryOptimized.ENT_SEQ_COLUMN, STALE_TABLE);
+        mEntryDao.executeRaw(String.format("DELETE FROM %s WHERE entryId IN (%s)", Conjugation.TABLE_NAME, staleIds));
+        mEntryDao.executeRaw(String.format("DELETE FROM %s WHERE entryId IN (%s)", EntryReading.TABLE_NAME, staleIds));
+        int deletedRows = mEntryDao.executeRaw(String.format("DELETE FROM %s WHERE id IN (%s)", EntryOptimized.TABLE_NAME, staleIds));
+        mEntryDao.executeRaw(String.format("DROP TABLE %s", STALE_TABLE));
+
+        Log.d(TAG, String.format("Inserted %d, updated %d, deleted %d entries (%d rows), %d unchanged",
+                mInsertCount, mUpdateCount, mDeleteCount, deletedRows, mUnchangedCount));
+    }
+
+    /**
+     * @return Whether the update changed anything, the files built from the DB only need rebuilding if it did
+     */
+    public boolean hasChanges() {
+        return mInsertCount + mUpdateCount + mDeleteCount > 0;
+    }
+
+    private void markStale(int entSeq) throws SQLException {
+        mEntryDao.executeRaw(String.format("INSERT OR IGNORE INTO %s VALUES (?)", STALE_TABLE), String.valueOf(entSeq));
+    }
+}
@@ -0,0 +1,109 @@
+package ca.fuwafuwa.kaku.XmlParsers;
+
+import android.content.Context;
+import android.util.Log;
+import android.util.Xml;
+
+import org.xmlpull.v1.XmlPullParser;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.sql.SQLException;
+
+import ca.fuwafuwa.kaku.Constants;
+import ca.fuwafuwa.kaku.Database.BinaryDictionary.BinaryDictionary;
+import ca.fuwafuwa.kaku.Database.BinaryDictionary.BinaryDictionaryWriter;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.EntryReadingWriter;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.JmDatabaseHelper;
+import ca.fuwafuwa.kaku.Deinflictor.ConjugationIndexWriter;
+import ca.fuwafuwa.kaku.Deinflictor.Deinflector;
+import ca.fuwafuwa.kaku.Search.ConjugationIndex;
+import ca.fuwafuwa.kaku.Search.KeyFilter;
+import ca.fuwafuwa.kaku.Search.LookupBounds;
+import ca.fuwafuwa.kaku.Search.Searcher;
+import ca.fuwafuwa.kaku.Search.TrieDictionary;
+import ca.fuwafuwa.kaku.XmlParsers.JmDict.JmUpdater;
+
+/**
+ * Updates the installed dictionary to the JMdict_e.xml in filesDir with {@link JmUpdater}, instead of rebuilding it
+ * like ParserRunnable does.
+ *
+ * Once the update is committed the files built from the DB are replaced: the binary dictionary is recompiled from the
+ * DB if there is one, the key filter and lookup bounds are deleted and rebuilt from the DB on their next load, and so is
+ * the conjugation index.
+ */
+public class JmUpdateRunnable implements Runnable {
+
+    private static final String TAG = JmUpdateRunnable.class.getName();
+
+    private static final String JMDICT_XML = "JMdict_e.xml";
+
+    private Context mContext;
+
+    public JmUpdateRunnable(Context context)
+    {
+        mContext = context;
+    }
+
+    @Override
+    public void run()
+    {
+        try
+        {
+            long startTime = System.currentTimeMillis();
+
+            JmDatabaseHelper dbHelper = JmDatabaseHelper.instance(mContext);
+            JmUpdater updater = new JmUpdater(dbHelper);
+            // Only a few rows change in tables that are already full, their indexes are kept up to date as they go
+            updater.addEntryWriter(new ConjugationIndexWriter(dbHelper, Deinflector.Companion.instance(mContext), ConjugationIndexWriter.DEFAULT_MAX_DEPTH, false));
+            updater.addEntryWriter(new EntryReadingWriter(dbHelper, false));
+
+            XmlPullParser parser = Xml.newPullParser();
+            parser.setInput(new FileInputStream(new File(mContext.getFilesDir(), JMDICT_XML)), null);
+
+            DictBuildPipeline pipeline = new DictBuildPipeline();
+            pipeline.add(JMDICT_XML, updater, parser, dbHelper.getConnectionSource());
+            pipeline.run();
+
+            if (updater.hasChanges())
+            {
+                rebuildBinaryDictionary(dbHelper);
+                new File(mContext.getFilesDir(), Constants.JMDICT_KEY_FILTER_NAME).delete();
+                new File(mContext.getFilesDir(), Constants.JMDICT_LOOKUP_BOUNDS_NAME).delete();
+                KeyFilter.Companion.clear();
+                LookupBounds.Companion.clear();
+                TrieDictionary.Companion.clear();
+                // Its chain map doesn't have the chains the update added, conjugations using them would be skipped
+                ConjugationIndex.Companion.clear();
+                Searcher.clearCache();
+            }
+
+            Log.d(TAG, String.format("FINISHED UPDATE, TOOK %d", System.currentTimeMillis() - startTime));
+        } catch (Exception e)
+        {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Compiles the binary dictionary from the DB into a new file and swaps it in, lookups still reading the old
+     * mapping keep working
+     */
+    private void rebuildBinaryDictionary(JmDatabaseHelper dbHelper) throws SQLException, IOException
+    {
+        File file = new File(mContext.getFilesDir(), Constants.JMDICT_BINARY_NAME);
+        if (!file.exists())
+        {
+            return;
+        }
+
+        File newFile = new File(mContext.getFilesDir(), Constants.JMDICT_BINARY_NAME + ".new");
+        new BinaryDictionaryWriter(dbHelper).writeTo(newFile);
+        if (!newFile.renameTo(file))
+        {
+            throw new IOException("Unable to replace " + file);
+        }
+        BinaryDictionary.clear();
+    }
+}
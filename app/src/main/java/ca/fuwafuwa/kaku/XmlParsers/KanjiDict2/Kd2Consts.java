@@ -38,6 +38,7 @@ public class Kd2Consts {
     // Attributes
     public static final String CP_TYPE = "cp_type";
     public static final String RAD_TYPE = "rad_type";
+    public static final String RAD_TYPE_CLASSICAL = "classical";
     public static final String VAR_TYPE = "var_type";
     public static final String DR_TYPE = "dr_type";
     public static final String M_VOL = "m_vol";
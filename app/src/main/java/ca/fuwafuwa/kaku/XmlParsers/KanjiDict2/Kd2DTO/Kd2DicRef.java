@@ -4,7 +4,6 @@ import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
-import java.util.HashMap;
 
 import ca.fuwafuwa.kaku.XmlParsers.CommonParser;
 import ca.fuwafuwa.kaku.XmlParsers.KanjiDict2.Kd2Consts;
@@ -24,10 +23,9 @@ public class Kd2DicRef {
     public Kd2DicRef(XmlPullParser parser) throws IOException, XmlPullParserException {
         parser.require(XmlPullParser.START_TAG, null, XMLTAG);
 
-        HashMap<String, String> attrMap = CommonParser.parseAttributes(parser);
-        dr_type = attrMap.get(Kd2Consts.DR_TYPE);
-        m_vol = attrMap.get(Kd2Consts.M_VOL);
-        m_page = attrMap.get(Kd2Consts.M_PAGE);
+        dr_type = CommonParser.getAttribute(parser, Kd2Consts.DR_TYPE);
+        m_vol = CommonParser.getAttribute(parser, Kd2Consts.M_VOL);
+        m_page = CommonParser.getAttribute(parser, Kd2Consts.M_PAGE);
         text = CommonParser.parseString(parser);
     }
 }
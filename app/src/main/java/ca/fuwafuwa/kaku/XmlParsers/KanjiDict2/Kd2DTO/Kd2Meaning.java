@@ -4,7 +4,6 @@ import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
-import java.util.HashMap;
 
 import ca.fuwafuwa.kaku.XmlParsers.CommonParser;
 import ca.fuwafuwa.kaku.XmlParsers.KanjiDict2.Kd2Consts;
@@ -22,8 +21,7 @@ public class Kd2Meaning {
     public Kd2Meaning(XmlPullParser parser) throws IOException, XmlPullParserException {
         parser.require(XmlPullParser.START_TAG, null, XMLTAG);
 
-        HashMap<String, String> attrMap = CommonParser.parseAttributes(parser);
-        m_lang = attrMap.get(Kd2Consts.M_LANG);
+        m_lang = CommonParser.getAttribute(parser, Kd2Consts.M_LANG);
         text = CommonParser.parseString(parser);
     }
 
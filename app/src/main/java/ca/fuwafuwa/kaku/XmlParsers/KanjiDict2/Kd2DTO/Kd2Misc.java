@@ -55,4 +55,12 @@ public class Kd2Misc {
 
         parser.require(XmlPullParser.END_TAG, null, XMLTAG);
     }
+
+    public String getGrade() {
+        return grade;
+    }
+
+    public List<String> getStroke_count() {
+        return stroke_count;
+    }
 }
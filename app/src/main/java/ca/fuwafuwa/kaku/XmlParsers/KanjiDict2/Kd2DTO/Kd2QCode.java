@@ -4,7 +4,6 @@ import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
-import java.util.HashMap;
 
 import ca.fuwafuwa.kaku.XmlParsers.CommonParser;
 import ca.fuwafuwa.kaku.XmlParsers.KanjiDict2.Kd2Consts;
@@ -23,9 +22,8 @@ public class Kd2QCode {
     public Kd2QCode(XmlPullParser parser) throws IOException, XmlPullParserException {
         parser.require(XmlPullParser.START_TAG, null, XMLTAG);
 
-        HashMap<String, String> attrMap = CommonParser.parseAttributes(parser);
-        qc_type = attrMap.get(Kd2Consts.QC_TYPE);
-        skip_misclass = attrMap.get(Kd2Consts.SKIP_MISCLASS);
+        qc_type = CommonParser.getAttribute(parser, Kd2Consts.QC_TYPE);
+        skip_misclass = CommonParser.getAttribute(parser, Kd2Consts.SKIP_MISCLASS);
         text = CommonParser.parseString(parser);
     }
 }
@@ -4,7 +4,6 @@ import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
-import java.util.HashMap;
 
 import ca.fuwafuwa.kaku.XmlParsers.CommonParser;
 import ca.fuwafuwa.kaku.XmlParsers.KanjiDict2.Kd2Consts;
@@ -23,8 +22,15 @@ public class Kd2RadValue {
     public Kd2RadValue(XmlPullParser parser) throws IOException, XmlPullParserException {
         parser.require(XmlPullParser.START_TAG, null, XMLTAG);
 
-        HashMap<String, String> attrMap = CommonParser.parseAttributes(parser);
-        rad_type = attrMap.get(Kd2Consts.RAD_TYPE);
+        rad_type = CommonParser.getAttribute(parser, Kd2Consts.RAD_TYPE);
         text = CommonParser.parseString(parser);
     }
+
+    public String getRad_type() {
+        return rad_type;
+    }
+
+    public String getText() {
+        return text;
+    }
 }
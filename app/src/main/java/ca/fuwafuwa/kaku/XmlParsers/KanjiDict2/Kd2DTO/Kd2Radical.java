@@ -33,4 +33,8 @@ public class Kd2Radical {
 
         parser.require(XmlPullParser.END_TAG, null, XMLTAG);
     }
+
+    public List<Kd2RadValue> getRad_value() {
+        return rad_value;
+    }
 }
@@ -6,7 +6,6 @@ import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
-import java.util.HashMap;
 
 import ca.fuwafuwa.kaku.XmlParsers.CommonParser;
 import ca.fuwafuwa.kaku.XmlParsers.KanjiDict2.Kd2Consts;
@@ -26,10 +25,9 @@ public class Kd2Reading {
     public Kd2Reading(XmlPullParser parser) throws IOException, XmlPullParserException {
         parser.require(XmlPullParser.START_TAG, null, XMLTAG);
 
-        HashMap<String, String> attrMap = CommonParser.parseAttributes(parser);
-        r_type = attrMap.get(Kd2Consts.R_TYPE);
-        on_type = attrMap.get(Kd2Consts.ON_TYPE);
-        r_status = attrMap.get(Kd2Consts.R_STATUS);
+        r_type = CommonParser.getAttribute(parser, Kd2Consts.R_TYPE);
+        on_type = CommonParser.getAttribute(parser, Kd2Consts.ON_TYPE);
+        r_status = CommonParser.getAttribute(parser, Kd2Consts.R_STATUS);
         text = CommonParser.parseString(parser);
 
         //Assert.assertNull("Depreciated", on_type);
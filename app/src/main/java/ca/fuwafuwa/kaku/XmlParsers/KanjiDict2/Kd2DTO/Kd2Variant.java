@@ -4,7 +4,6 @@ import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
-import java.util.HashMap;
 
 import ca.fuwafuwa.kaku.XmlParsers.CommonParser;
 import ca.fuwafuwa.kaku.XmlParsers.KanjiDict2.Kd2Consts;
@@ -22,8 +21,7 @@ public class Kd2Variant {
     public Kd2Variant(XmlPullParser parser) throws IOException, XmlPullParserException {
         parser.require(XmlPullParser.START_TAG, null, XMLTAG);
 
-        HashMap<String, String> attrMap = CommonParser.parseAttributes(parser);
-        var_type = attrMap.get(Kd2Consts.VAR_TYPE);
+        var_type = CommonParser.getAttribute(parser, Kd2Consts.VAR_TYPE);
         text = CommonParser.parseString(parser);
     }
 }
\ No newline at end of file
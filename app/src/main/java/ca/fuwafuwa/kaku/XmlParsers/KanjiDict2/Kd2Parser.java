@@ -12,17 +12,23 @@ import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
 import ca.fuwafuwa.kaku.Constants;
 import ca.fuwafuwa.kaku.Database.DatabaseHelper;
 import ca.fuwafuwa.kaku.Database.IDatabaseHelper;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.EntryBulkWriter;
 import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryOptimized;
 import ca.fuwafuwa.kaku.Database.KanjiDict2Database.Models.CharacterOptimized;
+import ca.fuwafuwa.kaku.XmlParsers.Interfaces.CharacterWriter;
 import ca.fuwafuwa.kaku.XmlParsers.Interfaces.DictParser;
+import ca.fuwafuwa.kaku.XmlParsers.Interfaces.EntryWriter;
 import ca.fuwafuwa.kaku.XmlParsers.KanjiDict2.Kd2DTO.Kd2Character;
 import ca.fuwafuwa.kaku.XmlParsers.KanjiDict2.Kd2DTO.Kd2Meaning;
+import ca.fuwafuwa.kaku.XmlParsers.KanjiDict2.Kd2DTO.Kd2Misc;
+import ca.fuwafuwa.kaku.XmlParsers.KanjiDict2.Kd2DTO.Kd2RadValue;
 import ca.fuwafuwa.kaku.XmlParsers.KanjiDict2.Kd2DTO.Kd2Reading;
 import ca.fuwafuwa.kaku.XmlParsers.KanjiDict2.Kd2DTO.Kd2RmGroup;
 
@@ -30,39 +36,131 @@ import ca.fuwafuwa.kaku.XmlParsers.KanjiDict2.Kd2DTO.Kd2RmGroup;
  * Created by 0xbad1d3a5 on 12/1/2016.
  */
 
-public class Kd2Parser implements DictParser {
+public class Kd2Parser implements DictParser<Kd2Character, Kd2Parser.Rows> {
 
     private static final String TAG = Kd2Parser.class.getName();
 
     private IDatabaseHelper mDbHelper;
+    private EntryBulkWriter mEntryBulkWriter;
+    private List<EntryWriter> mEntryWriters = new ArrayList<>();
+    private List<CharacterWriter> mCharacterWriters = new ArrayList<>();
     private int parseCount = 0;
+    private boolean mReadStarted = false;
 
-    Kd2Parser(IDatabaseHelper dbHelper){
+    /**
+     * Everything one character is written as
+     */
+    public static class Rows {
+
+        private List<EntryOptimized> mEntries;
+        private CharacterOptimized mCharacter;
+
+        Rows(List<EntryOptimized> entries, CharacterOptimized character){
+            mEntries = entries;
+            mCharacter = character;
+        }
+    }
+
+    public Kd2Parser(IDatabaseHelper dbHelper) throws SQLException {
         mDbHelper = dbHelper;
+        mEntryBulkWriter = new EntryBulkWriter(dbHelper);
+    }
+
+    @Override
+    public void addEntryWriter(EntryWriter entryWriter) {
+        mEntryWriters.add(entryWriter);
+    }
+
+    /**
+     * Characters aren't written to the DB, KANJIDIC also goes into EntryOptimized so JmLookup can rank it with JMdict
+     */
+    public void addCharacterWriter(CharacterWriter characterWriter) {
+        mCharacterWriters.add(characterWriter);
     }
 
     @Override
     public void parseDict(XmlPullParser parser) throws IOException, XmlPullParserException, SQLException {
 
-        while (!Kd2Consts.KANJIDIC2.equals(parser.getName())){
-            parser.nextToken();
+        beginWrite();
+        for (Kd2Character kd2Character = readEntry(parser); kd2Character != null; kd2Character = readEntry(parser)){
+            writeRows(toRows(kd2Character));
         }
+        finishWrite();
+    }
 
-        parser.require(XmlPullParser.START_TAG, null, Kd2Consts.KANJIDIC2);
-        parser.nextToken();
-        parseHeader(parser);
+    @Override
+    public Kd2Character readEntry(XmlPullParser parser) throws IOException, XmlPullParserException {
+
+        if (!mReadStarted){
+            while (!Kd2Consts.KANJIDIC2.equals(parser.getName())){
+                parser.nextToken();
+            }
+
+            parser.require(XmlPullParser.START_TAG, null, Kd2Consts.KANJIDIC2);
+            parser.nextToken();
+            parseHeader(parser);
+            mReadStarted = true;
+        }
 
         while (!Kd2Consts.KANJIDIC2.equals(parser.getName())){
             String name = parser.getName() == null ? "" : parser.getName();
+            Kd2Character kd2Character = null;
             switch (name) {
                 case Kd2Consts.CHARACTER:
-                    parseKd2Character(parser);
+                    kd2Character = new Kd2Character(parser);
                     break;
             }
             parser.nextToken();
+
+            if (kd2Character != null){
+                return kd2Character;
+            }
         }
 
         parser.require(XmlPullParser.END_TAG, null, Kd2Consts.KANJIDIC2);
+        return null;
+    }
+
+    @Override
+    public Rows toRows(Kd2Character kd2Character) {
+        return new Rows(parseKd2CharacterOptimized(kd2Character), mCharacterWriters.isEmpty() ? null : toCharacterOptimized(kd2Character));
+    }
+
+    @Override
+    public void beginWrite() throws SQLException, IOException {
+        mEntryBulkWriter.begin();
+        for (EntryWriter entryWriter : mEntryWriters){
+            entryWriter.begin();
+        }
+    }
+
+    @Override
+    public void writeRows(Rows rows) throws SQLException, IOException {
+
+        for (EntryOptimized eo : rows.mEntries){
+            mEntryBulkWriter.write(eo);
+            for (EntryWriter entryWriter : mEntryWriters){
+                entryWriter.write(eo);
+            }
+        }
+
+        if (rows.mCharacter != null){
+            for (CharacterWriter characterWriter : mCharacterWriters){
+                characterWriter.write(rows.mCharacter);
+            }
+        }
+
+        if (++parseCount % 100 == 0){
+            Log.d(TAG, String.format("Parsed %d entries", parseCount));
+        }
+    }
+
+    @Override
+    public void finishWrite() throws SQLException, IOException {
+        mEntryBulkWriter.finish();
+        for (EntryWriter entryWriter : mEntryWriters){
+            entryWriter.finish();
+        }
     }
 
     // Skip the header, we don't care
@@ -82,21 +180,11 @@ public class Kd2Parser implements DictParser {
         parser.require(XmlPullParser.END_TAG, null, Kd2Consts.HEADER);
     }
 
-    private void parseKd2Character(XmlPullParser parser) throws IOException, XmlPullParserException, SQLException {
-
-        Kd2Character kd2Character = new Kd2Character(parser);
-
-        parseKd2CharacterOptimized(kd2Character);
-
-        if (++parseCount % 100 == 0){
-            Log.d(TAG, String.format("Parsed %d entries", parseCount));
-        }
-    }
-
-    private void parseKd2CharacterOptimized(Kd2Character character) throws SQLException {
+    private List<EntryOptimized> parseKd2CharacterOptimized(Kd2Character character) {
 
+        List<EntryOptimized> optimizedEntries = new ArrayList<>();
         if (character.getReading_meaning() == null){
-            return;
+            return optimizedEntries;
         }
 
         List<Kd2RmGroup> kd2RmGroups = character.getReading_meaning().getRmGroups();
@@ -110,7 +198,67 @@ public class Kd2Parser implements DictParser {
             eo.setMeanings(parseKd2CharacterOptimizedMeaning(rmGroup));
             eo.setDictionary(Constants.DB_KANJIDICT_NAME);
 
-            mDbHelper.getDbDao(EntryOptimized.class).create(eo);
+            optimizedEntries.add(eo);
+        }
+
+        return optimizedEntries;
+    }
+
+    /**
+     * One CharacterOptimized per literal, readings and meanings of every rmGroup are joined together
+     */
+    private CharacterOptimized toCharacterOptimized(Kd2Character character) {
+
+        CharacterOptimized co = new CharacterOptimized();
+        co.setKanji(character.getLiteral());
+
+        if (character.getReading_meaning() != null){
+
+            List<String> onyomi = new ArrayList<>();
+            List<String> kunyomi = new ArrayList<>();
+            List<String> meanings = new ArrayList<>();
+
+            for (Kd2RmGroup rmGroup : character.getReading_meaning().getRmGroups()){
+                addIfNotEmpty(onyomi, parseKd2CharacterOptimizedOnyomi(rmGroup));
+                addIfNotEmpty(kunyomi, parseKd2CharacterOptimizedKunyomi(rmGroup));
+                addIfNotEmpty(meanings, parseKd2CharacterOptimizedMeaning(rmGroup));
+            }
+
+            co.setOnyomi(Joiner.on(", ").join(onyomi));
+            co.setKunyomi(Joiner.on(", ").join(kunyomi));
+            co.setMeaning(Joiner.on(Constants.DB_SPLIT_CHAR).join(meanings));
+        }
+
+        Kd2Misc misc = character.getMisc();
+        if (misc != null){
+            // The first stroke count is the accepted one, the rest are common miscounts
+            co.setStrokeCount(misc.getStroke_count().isEmpty() ? 0 : parseInt(misc.getStroke_count().get(0)));
+            co.setGrade(misc.getGrade() == null ? 0 : parseInt(misc.getGrade()));
+        }
+
+        if (character.getRadical() != null){
+            for (Kd2RadValue radValue : character.getRadical().getRad_value()){
+                if (Kd2Consts.RAD_TYPE_CLASSICAL.equals(radValue.getRad_type())){
+                    co.setRadical(parseInt(radValue.getText()));
+                }
+            }
+        }
+
+        return co;
+    }
+
+    private void addIfNotEmpty(List<String> list, String s){
+        if (!s.isEmpty()){
+            list.add(s);
+        }
+    }
+
+    private int parseInt(String s){
+        try {
+            return Integer.parseInt(s.trim());
+        }
+        catch (NumberFormatException e){
+            return 0;
         }
     }
 
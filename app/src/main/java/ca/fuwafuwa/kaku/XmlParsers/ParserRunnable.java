@@ -4,23 +4,37 @@ import android.content.Context;
 import android.util.Log;
 import android.util.Xml;
 
-import com.j256.ormlite.misc.TransactionManager;
-
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
-import java.sql.SQLException;
-import java.util.concurrent.Callable;
+import java.util.List;
 
+import ca.fuwafuwa.kaku.Constants;
+import ca.fuwafuwa.kaku.Database.BinaryDictionary.BinaryDictionary;
+import ca.fuwafuwa.kaku.Database.BinaryDictionary.BinaryDictionaryWriter;
 import ca.fuwafuwa.kaku.Database.DatabaseHelper;
 import ca.fuwafuwa.kaku.Database.DbHelperFactory;
 import ca.fuwafuwa.kaku.Database.IDatabaseHelper;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.EntryBulkWriter;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.EntryReadingWriter;
 import ca.fuwafuwa.kaku.Database.JmDictDatabase.JmDatabaseHelper;
+import ca.fuwafuwa.kaku.Database.KanjiDict2Database.KanjiTable;
+import ca.fuwafuwa.kaku.Database.KanjiDict2Database.KanjiTableWriter;
 import ca.fuwafuwa.kaku.Database.KanjiDict2Database.Kd2DatabaseHelper;
+import ca.fuwafuwa.kaku.Deinflictor.ConjugationIndexWriter;
+import ca.fuwafuwa.kaku.Deinflictor.Deinflector;
+import ca.fuwafuwa.kaku.Search.ConjugationIndex;
+import ca.fuwafuwa.kaku.Search.KeyFilter;
+import ca.fuwafuwa.kaku.Search.KeyFilterWriter;
+import ca.fuwafuwa.kaku.Search.LookupBounds;
+import ca.fuwafuwa.kaku.Search.LookupBoundsWriter;
+import ca.fuwafuwa.kaku.Search.Searcher;
+import ca.fuwafuwa.kaku.Search.TrieDictionary;
 import ca.fuwafuwa.kaku.XmlParsers.Interfaces.DictParser;
 import ca.fuwafuwa.kaku.XmlParsers.JmDict.JmParser;
 import ca.fuwafuwa.kaku.XmlParsers.KanjiDict2.Kd2Parser;
@@ -35,11 +49,15 @@ public class ParserRunnable implements Runnable {
 
     Context mContext;
     DbHelperFactory mDbHelperFactory;
+    KanjiTableWriter mKanjiTableWriter = new KanjiTableWriter();
+    KeyFilterWriter mKeyFilterWriter = new KeyFilterWriter();
+    LookupBoundsWriter mLookupBoundsWriter;
 
     public ParserRunnable(Context context) throws NoSuchMethodException, IllegalAccessException, InvocationTargetException, InstantiationException, FileNotFoundException
     {
         mContext = context;
         mDbHelperFactory = new DbHelperFactory(context);
+        mLookupBoundsWriter = new LookupBoundsWriter(Deinflector.Companion.instance(context));
     }
 
     @Override
@@ -47,34 +65,85 @@ public class ParserRunnable implements Runnable {
     {
         try
         {
-            parseDictionary(JmDatabaseHelper.class, JmParser.class, "JMdict_e.xml");
-            parseDictionary(Kd2DatabaseHelper.class, Kd2Parser.class, "kanjidic2.xml");
+            long startTime = System.currentTimeMillis();
+
+            DictBuildPipeline pipeline = new DictBuildPipeline();
+            addDictionary(pipeline, JmDatabaseHelper.class, JmParser.class, "JMdict_e.xml");
+            addDictionary(pipeline, Kd2DatabaseHelper.class, Kd2Parser.class, "kanjidic2.xml");
+
+            // Both dictionaries go into the same table, it's indexed once after the last of them
+            JmDatabaseHelper dbHelper = JmDatabaseHelper.instance(mContext);
+            List<String> entryIndexSql = EntryBulkWriter.dropIndexes(dbHelper);
+            try
+            {
+                pipeline.run();
+            }
+            finally
+            {
+                EntryBulkWriter.createIndexes(dbHelper, entryIndexSql);
+            }
+
+            Log.d(TAG, String.format("FINISHED DICTS, TOOK %d", System.currentTimeMillis() - startTime));
+
+            // Lookups can still be reading the old files through their mappings, so they're replaced, never rewritten
+            new BinaryDictionaryWriter(JmDatabaseHelper.instance(mContext)).writeTo(getNewFile(Constants.JMDICT_BINARY_NAME));
+            mKanjiTableWriter.writeTo(getNewFile(Constants.KANJIDIC_TABLE_NAME));
+            mKeyFilterWriter.writeTo(getNewFile(Constants.JMDICT_KEY_FILTER_NAME));
+            mLookupBoundsWriter.writeTo(getNewFile(Constants.JMDICT_LOOKUP_BOUNDS_NAME));
+            replaceFile(Constants.JMDICT_BINARY_NAME);
+            replaceFile(Constants.KANJIDIC_TABLE_NAME);
+            replaceFile(Constants.JMDICT_KEY_FILTER_NAME);
+            replaceFile(Constants.JMDICT_LOOKUP_BOUNDS_NAME);
+
+            // Everything built from the old DB
+            BinaryDictionary.clear();
+            KanjiTable.clear();
+            TrieDictionary.Companion.clear();
+            ConjugationIndex.Companion.clear();
+            KeyFilter.Companion.clear();
+            LookupBounds.Companion.clear();
+            Searcher.clearCache();
         } catch (Exception e)
         {
             e.printStackTrace();
         }
     }
 
-    private void parseDictionary(Class dbHelperClass, Class dictParserClass, String fileName) throws NoSuchMethodException, IllegalAccessException, InvocationTargetException, InstantiationException, FileNotFoundException, XmlPullParserException, SQLException
+    private void addDictionary(DictBuildPipeline pipeline, Class dbHelperClass, Class dictParserClass, String fileName) throws NoSuchMethodException, IllegalAccessException, InvocationTargetException, InstantiationException, FileNotFoundException, XmlPullParserException
     {
-        long startTime = System.currentTimeMillis();
-
         DatabaseHelper mDbHelper = mDbHelperFactory.instance(dbHelperClass);
-        final DictParser mDictParser = (DictParser) dictParserClass.getConstructor(IDatabaseHelper.class).newInstance(mDbHelper);
+        DictParser mDictParser = (DictParser) dictParserClass.getConstructor(IDatabaseHelper.class).newInstance(mDbHelper);
+        mDictParser.addEntryWriter(mKeyFilterWriter);
+        mDictParser.addEntryWriter(mLookupBoundsWriter);
+        if (mDictParser instanceof JmParser)
+        {
+            mDictParser.addEntryWriter(new ConjugationIndexWriter(mDbHelper, Deinflector.Companion.instance(mContext)));
+            mDictParser.addEntryWriter(new EntryReadingWriter(mDbHelper));
+        }
+        if (mDictParser instanceof Kd2Parser)
+        {
+            ((Kd2Parser) mDictParser).addCharacterWriter(mKanjiTableWriter);
+        }
         FileInputStream mDictXml = new FileInputStream(new File(mContext.getFilesDir(), fileName));
 
-        final XmlPullParser mParser = Xml.newPullParser();
+        XmlPullParser mParser = Xml.newPullParser();
         mDbHelper.deleteDatabase();
         mParser.setInput(mDictXml, null);
 
-        TransactionManager.callInTransaction(mDbHelper.getConnectionSource(), new Callable<Void>() {
-            @Override
-            public Void call() throws Exception {
-                mDictParser.parseDict(mParser);
-                return null;
-            }
-        });
+        pipeline.add(fileName, mDictParser, mParser, mDbHelper.getConnectionSource());
+    }
+
+    private File getNewFile(String fileName)
+    {
+        return new File(mContext.getFilesDir(), fileName + ".new");
+    }
 
-        Log.d(TAG, String.format("FINISHED DICT, TOOK %d", System.currentTimeMillis() - startTime));
+    private void replaceFile(String fileName) throws IOException
+    {
+        File file = new File(mContext.getFilesDir(), fileName);
+        if (!getNewFile(fileName).renameTo(file))
+        {
+            throw new IOException("Unable to replace " + file);
+        }
     }
 }
@@ -0,0 +1,154 @@
+package ca.fuwafuwa.kaku;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import ca.fuwafuwa.kaku.Database.BinaryDictionary.BinaryDictionary;
+import ca.fuwafuwa.kaku.Database.BinaryDictionary.BinaryDictionaryWriter;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryOptimized;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BinaryDictionaryTest
+{
+    private TempDictionaryDb mDb;
+    private File mBinaryFile;
+    private List<EntryOptimized> mEntries = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception
+    {
+        mDb = new TempDictionaryDb();
+        mBinaryFile = File.createTempFile("kaku_test", ".bin");
+        mBinaryFile.deleteOnExit();
+
+        // Two entries for one key, a key outside the BMP and one in U+FF00-U+FFEF, which SQLite sorts the other way
+        // around, a kana only entry and a kanjidic entry sharing a key with JMdict
+        mEntries.add(mDb.addEntry("食べる", "たべる", "to eat", "v1,vt", "ichi1,news1,nf05", Constants.DB_JMDICT_NAME, true));
+        mEntries.add(mDb.addEntry("食べる", "たべる", "to live on", "v1", null, Constants.DB_JMDICT_NAME, false));
+        mEntries.add(mDb.addEntry("𠮟る", "しかる", "to scold", "v5r,vt", "spec1", Constants.DB_JMDICT_NAME, true));
+        mEntries.add(mDb.addEntry("ｱｲｽ", "", "ice", "n", null, Constants.DB_JMDICT_NAME, true));
+        mEntries.add(mDb.addEntry("すごい", "", "amazing", "adj-i", "ichi1", Constants.DB_JMDICT_NAME, true));
+        mEntries.add(mDb.addEntry("食", "ショク,た.べる", "eat,food", null, null, Constants.DB_KANJIDICT_NAME, true));
+        mEntries.add(mDb.addEntry("食", "しょく", "food", "n", "news1,nf10", Constants.DB_JMDICT_NAME, true));
+
+        new BinaryDictionaryWriter(mDb.getDbHelper()).writeTo(mBinaryFile);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        mDb.close();
+        mBinaryFile.delete();
+    }
+
+    @Test
+    public void findsEveryEntryInIdOrder() throws Exception
+    {
+        BinaryDictionary binaryDictionary = BinaryDictionary.open(mBinaryFile);
+
+        assertEquals(5, binaryDictionary.getKeyCount());
+        assertEquals(mEntries.size(), binaryDictionary.getEntryCount());
+
+        for (EntryOptimized expected : mEntries)
+        {
+            List<Integer> expectedIds = new ArrayList<>();
+            for (EntryOptimized entry : mEntries)
+            {
+                if (entry.getKanji().equals(expected.getKanji()))
+                {
+                    expectedIds.add(entry.getId());
+                }
+            }
+
+            List<Integer> ids = new ArrayList<>();
+            for (EntryOptimized entry : binaryDictionary.find(expected.getKanji()))
+            {
+                ids.add(entry.getId());
+                if (entry.getId().equals(expected.getId()))
+                {
+                    assertSameEntry(expected, entry);
+                }
+            }
+            assertEquals(expected.getKanji(), expectedIds, ids);
+        }
+    }
+
+    @Test
+    public void keysAreSortedLikeStrings() throws Exception
+    {
+        BinaryDictionary binaryDictionary = BinaryDictionary.open(mBinaryFile);
+
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < binaryDictionary.getKeyCount(); i++)
+        {
+            keys.add(binaryDictionary.getKey(i));
+        }
+        assertEquals(Arrays.asList("すごい", "食", "食べる", "𠮟る", "ｱｲｽ"), keys);
+    }
+
+    @Test
+    public void onlyJmDictEntriesWithoutReadingsAreKanaOnly() throws Exception
+    {
+        BinaryDictionary binaryDictionary = BinaryDictionary.open(mBinaryFile);
+
+        assertTrue(binaryDictionary.find("すごい").get(0).isOnlyKana());
+        assertTrue(binaryDictionary.find("ｱｲｽ").get(0).isOnlyKana());
+        assertFalse(binaryDictionary.find("食べる").get(0).isOnlyKana());
+        for (EntryOptimized entry : binaryDictionary.find("食"))
+        {
+            assertFalse(entry.isOnlyKana());
+        }
+    }
+
+    @Test
+    public void dictionaryIdIsReadFromTheFlags() throws Exception
+    {
+        BinaryDictionary binaryDictionary = BinaryDictionary.open(mBinaryFile);
+
+        List<EntryOptimized> entries = binaryDictionary.find("食");
+        assertEquals(EntryOptimized.DICTIONARY_ID_KANJIDIC, entries.get(0).getDictionaryId());
+        assertEquals(EntryOptimized.DICTIONARY_ID_JMDICT, entries.get(1).getDictionaryId());
+        assertEquals(EntryOptimized.DICTIONARY_ID_JMDICT, binaryDictionary.find("𠮟る").get(0).getDictionaryId());
+    }
+
+    @Test
+    public void missesKeysThatArentThere() throws Exception
+    {
+        BinaryDictionary binaryDictionary = BinaryDictionary.open(mBinaryFile);
+
+        for (String key : new String[] { "食べ", "食べるな", "𠮟", "アイス", "" })
+        {
+            assertEquals(key, -1, binaryDictionary.findKey(key));
+            assertTrue(key, binaryDictionary.find(key).isEmpty());
+        }
+
+        assertTrue(binaryDictionary.hasKeyWithPrefix("食べ"));
+        assertTrue(binaryDictionary.hasKeyWithPrefix("𠮟"));
+        assertFalse(binaryDictionary.hasKeyWithPrefix("食べるな"));
+        assertFalse(binaryDictionary.hasKeyWithPrefix("アイ"));
+    }
+
+    private void assertSameEntry(EntryOptimized expected, EntryOptimized actual)
+    {
+        String message = expected.getKanji() + " " + expected.getId();
+        assertEquals(message, expected.getKanji(), actual.getKanji());
+        assertEquals(message, expected.getReadings(), actual.getReadings());
+        assertEquals(message, expected.getMeanings(), actual.getMeanings());
+        assertEquals(message, expected.getPos(), actual.getPos());
+        assertEquals(message, expected.getPosMask(), actual.getPosMask());
+        assertEquals(message, expected.getPriorities(), actual.getPriorities());
+        assertEquals(message, expected.getPriorityRank(), actual.getPriorityRank());
+        assertEquals(message, expected.getDictionary(), actual.getDictionary());
+        assertEquals(message, expected.getDictionaryId(), actual.getDictionaryId());
+        assertEquals(message, expected.isPrimaryEntry(), actual.isPrimaryEntry());
+    }
+}
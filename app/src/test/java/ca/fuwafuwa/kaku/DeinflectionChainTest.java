@@ -0,0 +1,93 @@
+package ca.fuwafuwa.kaku;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.util.List;
+
+import ca.fuwafuwa.kaku.Deinflictor.DeinflectionChain;
+import ca.fuwafuwa.kaku.Deinflictor.DeinflectionInfo;
+import ca.fuwafuwa.kaku.Deinflictor.Deinflector;
+
+import static org.junit.Assert.assertEquals;
+
+public class DeinflectionChainTest
+{
+    private static final String[] WORDS = { "食べなかった", "行きませんでした", "読まれていた", "高くなかった", "勉強させられた",
+                                            "見てしまった", "書かせてください", "走っている", "美しければ", "来なくちゃ",
+                                            "食べさせられなかった", "静かでした", "泳いでいない", "する", "食" };
+
+    private Deinflector mDeinflector;
+    private LegacyDeinflector mLegacyDeinflector;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        try (BufferedReader reader = LegacyDeinflector.openRules())
+        {
+            mDeinflector = new Deinflector(reader);
+        }
+        mLegacyDeinflector = new LegacyDeinflector();
+    }
+
+    @Test
+    public void matchesRuleByRuleDeinflection()
+    {
+        for (String word : WORDS)
+        {
+            List<DeinflectionInfo> expected = mLegacyDeinflector.deinflect(word);
+            DeinflectionChain chain = mDeinflector.deinflect(word, new DeinflectionChain());
+
+            assertEquals(word, expected.size(), chain.getSize());
+            for (int i = 0; i < expected.size(); i++)
+            {
+                String message = word + " " + i;
+                assertEquals(message, expected.get(i).getWord(), chain.getWord(i).toString());
+                assertEquals(message, expected.get(i).getType(), chain.getType(i));
+
+                DeinflectionInfo info = chain.getDeinflectionInfo(i);
+                assertEquals(message, expected.get(i).getWord(), info.getWord());
+                assertEquals(message, expected.get(i).getType(), info.getType());
+                assertEquals(message, expected.get(i).getReason(), info.getReason());
+            }
+        }
+    }
+
+    @Test
+    public void reusedChainMatchesNewChain()
+    {
+        // JmLookup reuses one chain for every word, nothing from the previous word may leak into the next
+        DeinflectionChain reused = new DeinflectionChain();
+        for (String word : WORDS)
+        {
+            mDeinflector.deinflect(word, reused);
+            DeinflectionChain chain = mDeinflector.deinflect(word, new DeinflectionChain());
+
+            assertEquals(word, chain.getSize(), reused.getSize());
+            for (int i = 0; i < chain.getSize(); i++)
+            {
+                assertEquals(word, chain.getWord(i).toString(), reused.getWord(i).toString());
+                assertEquals(word, chain.getType(i), reused.getType(i));
+                assertEquals(word, chain.getDeinflectionInfo(i).getReason(), reused.getDeinflectionInfo(i).getReason());
+            }
+        }
+    }
+
+    @Test
+    public void potentialDeinflectionsMatchChain()
+    {
+        for (String word : WORDS)
+        {
+            List<DeinflectionInfo> expected = mLegacyDeinflector.deinflect(word);
+            List<DeinflectionInfo> deinflections = mDeinflector.getPotentialDeinflections(word);
+
+            assertEquals(word, expected.size(), deinflections.size());
+            for (int i = 0; i < expected.size(); i++)
+            {
+                assertEquals(word, expected.get(i).getWord(), deinflections.get(i).getWord());
+                assertEquals(word, expected.get(i).getReason(), deinflections.get(i).getReason());
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package ca.fuwafuwa.kaku;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.lang.management.ManagementFactory;
+
+import ca.fuwafuwa.kaku.Deinflictor.DeinflectionChain;
+import ca.fuwafuwa.kaku.Deinflictor.Deinflector;
+
+/**
+ * Not a real test either, times Deinflector.getPotentialDeinflections against the rule-by-rule loop it replaced.
+ * The old loop is kept in LegacyDeinflector as the baseline.
+ */
+public class DeinflectorBenchmark
+{
+    private static final String[] WORDS = { "食べなかった", "行きませんでした", "読まれていた", "高くなかった", "勉強させられた",
+                                            "見てしまった", "書かせてください", "走っている", "美しければ", "来なくちゃ" };
+    private static final int ITERATIONS = 20000;
+
+    private LegacyDeinflector mLegacyDeinflector;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        mLegacyDeinflector = new LegacyDeinflector();
+    }
+
+    @Test
+    public void benchmarkGetPotentialDeinflections() throws Exception
+    {
+        final Deinflector deinflector;
+        try (BufferedReader reader = LegacyDeinflector.openRules())
+        {
+            deinflector = new Deinflector(reader);
+        }
+
+        for (String word : WORDS)
+        {
+            if (deinflector.deinflect(word, new DeinflectionChain()).getSize() != mLegacyDeinflector.deinflect(word).size())
+            {
+                throw new AssertionError(String.format("Deinflections differ for %s", word));
+            }
+        }
+
+        report("Rule by rule", new Runnable() {
+            @Override
+            public void run()
+            {
+                for (String word : WORDS)
+                {
+                    mLegacyDeinflector.deinflect(word);
+                }
+            }
+        });
+
+        report("Suffix trie", new Runnable() {
+            @Override
+            public void run()
+            {
+                for (String word : WORDS)
+                {
+                    deinflector.getPotentialDeinflections(word);
+                }
+            }
+        });
+
+        // What JmTask does, one chain reused for every word and no DeinflectionInfo unless something matched
+        final DeinflectionChain chain = new DeinflectionChain();
+        report("Suffix trie, reused chain", new Runnable() {
+            @Override
+            public void run()
+            {
+                for (String word : WORDS)
+                {
+                    deinflector.deinflect(word, chain);
+                }
+            }
+        });
+    }
+
+    private void report(String name, Runnable op)
+    {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        // Warm up the JIT
+        for (int i = 0; i < ITERATIONS; i++)
+        {
+            op.run();
+        }
+
+        long startBytes = threadBean.getThreadAllocatedBytes(threadId);
+        long startTime = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+        {
+            op.run();
+        }
+        long elapsed = System.nanoTime() - startTime;
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - startBytes;
+
+        long ops = (long) ITERATIONS * WORDS.length;
+        System.out.println(String.format("%s: %d ns/op, %d bytes/op", name, elapsed / ops, allocated / ops));
+    }
+}
@@ -0,0 +1,259 @@
+package ca.fuwafuwa.kaku;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.table.TableUtils;
+
+import org.kxml2.io.KXmlParser;
+import org.xmlpull.v1.XmlPullParser;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import ca.fuwafuwa.kaku.Database.BinaryDictionary.BinaryDictionaryWriter;
+import ca.fuwafuwa.kaku.Database.IDatabaseHelper;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.EntryBulkWriter;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.EntryReadingWriter;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.JmDatabaseHelper;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.Conjugation;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.ConjugationChain;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryOptimized;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryReading;
+import ca.fuwafuwa.kaku.Database.KanjiDict2Database.KanjiTableWriter;
+import ca.fuwafuwa.kaku.Deinflictor.ConjugationIndexWriter;
+import ca.fuwafuwa.kaku.Deinflictor.Deinflector;
+import ca.fuwafuwa.kaku.Search.KeyFilterWriter;
+import ca.fuwafuwa.kaku.Search.LookupBoundsWriter;
+import ca.fuwafuwa.kaku.XmlParsers.DictBuildPipeline;
+import ca.fuwafuwa.kaku.XmlParsers.JmDict.JmParser;
+import ca.fuwafuwa.kaku.XmlParsers.KanjiDict2.Kd2Parser;
+
+/**
+ * Builds the dictionary DB that ships in assets on the JVM, the same way ParserRunnable builds it on a device:
+ *
+ *   ./gradlew :app:compileDictionary --args="--jmdict JMdict_e.gz --kanjidic kanjidic2.xml.gz --out build/dict"
+ *
+ * Writes DB_KakuDict-*.db to the out dir, along with the binary dictionary, kanji table, key filter and lookup bounds
+ * the app otherwise builds from the DB on first run.
+ *
+ * Lives with the tests because the parsers log through android.util.Log, and the unit test classpath is the one with
+ * a stubbed android.jar and the JDBC driver on it.
+ */
+public class DictCompiler
+{
+    private static final String USAGE = "Usage: DictCompiler --jmdict <JMdict_e.xml[.gz]> --kanjidic <kanjidic2.xml[.gz]> --out <dir> [--deinflect <deinflect.dat>]";
+
+    private static final String DEFAULT_DEINFLECT_DAT = "src/main/assets/deinflect.dat";
+
+    // What SQLiteOpenHelper leaves behind, without them the app would run onCreate over the finished tables
+    private static final String ANDROID_METADATA_TABLE = "android_metadata";
+    private static final String ANDROID_LOCALE = "en_US";
+
+    static class JdbcDatabaseHelper implements IDatabaseHelper
+    {
+        ConnectionSource mConnectionSource;
+
+        JdbcDatabaseHelper(ConnectionSource connectionSource)
+        {
+            mConnectionSource = connectionSource;
+        }
+
+        @Override
+        public <T> Dao<T, Integer> getDbDao(Class clazz) throws SQLException
+        {
+            return DaoManager.createDao(mConnectionSource, clazz);
+        }
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        String jmDictPath = null;
+        String kanjiDictPath = null;
+        String outPath = null;
+        String deinflectPath = DEFAULT_DEINFLECT_DAT;
+
+        for (int i = 0; i < args.length - 1; i += 2)
+        {
+            switch (args[i])
+            {
+                case "--jmdict": jmDictPath = args[i + 1]; break;
+                case "--kanjidic": kanjiDictPath = args[i + 1]; break;
+                case "--out": outPath = args[i + 1]; break;
+                case "--deinflect": deinflectPath = args[i + 1]; break;
+                default: exitWithUsage();
+            }
+        }
+
+        if (args.length % 2 != 0 || jmDictPath == null || kanjiDictPath == null || outPath == null)
+        {
+            exitWithUsage();
+        }
+
+        new DictCompiler().compile(new File(jmDictPath), new File(kanjiDictPath), new File(deinflectPath), new File(outPath));
+    }
+
+    /**
+     * Same tables as JmDatabaseHelper.onCreate
+     */
+    static void createTables(ConnectionSource connectionSource) throws SQLException
+    {
+        TableUtils.createTable(connectionSource, EntryOptimized.class);
+        TableUtils.createTable(connectionSource, Conjugation.class);
+        TableUtils.createTable(connectionSource, ConjugationChain.class);
+        TableUtils.createTable(connectionSource, EntryReading.class);
+    }
+
+    private static void exitWithUsage()
+    {
+        System.err.println(USAGE);
+        System.exit(1);
+    }
+
+    private long mPhaseStart;
+    private long mPhaseGcCount;
+    private long mPhaseGcMillis;
+
+    public void compile(File jmDictXml, File kanjiDictXml, File deinflectDat, File outDir) throws Exception
+    {
+        long startTime = System.currentTimeMillis();
+
+        File dbFile = new File(outDir, Constants.JMDICT_DATABASE_NAME);
+        outDir.mkdirs();
+        Files.deleteIfExists(dbFile.toPath());
+        Files.deleteIfExists(new File(outDir, Constants.JMDICT_DATABASE_NAME + "-journal").toPath());
+
+        ConnectionSource connectionSource = new JdbcConnectionSource(String.format("jdbc:sqlite:%s", dbFile.getAbsolutePath()));
+        try
+        {
+            startPhase();
+            IDatabaseHelper dbHelper = new JdbcDatabaseHelper(connectionSource);
+            Dao<EntryOptimized, Integer> entryDao = dbHelper.getDbDao(EntryOptimized.class);
+
+            createTables(connectionSource);
+            entryDao.executeRaw(String.format("CREATE TABLE %s (locale TEXT)", ANDROID_METADATA_TABLE));
+            entryDao.executeRaw(String.format("INSERT INTO %s VALUES ('%s')", ANDROID_METADATA_TABLE, ANDROID_LOCALE));
+            entryDao.executeRaw(String.format("PRAGMA user_version = %d", JmDatabaseHelper.DATABASE_VERSION));
+            // Nothing to recover if the build dies halfway, it starts over from an empty file
+            entryDao.executeRaw("PRAGMA synchronous = OFF");
+            endPhase("Created tables");
+
+            startPhase();
+            Deinflector deinflector = new Deinflector(Files.newBufferedReader(deinflectDat.toPath(), StandardCharsets.UTF_8));
+            KanjiTableWriter kanjiTableWriter = new KanjiTableWriter();
+            KeyFilterWriter keyFilterWriter = new KeyFilterWriter();
+            LookupBoundsWriter lookupBoundsWriter = new LookupBoundsWriter(deinflector);
+            ConjugationIndexWriter conjugationIndexWriter = new ConjugationIndexWriter(dbHelper, deinflector);
+
+            // Same writers as ParserRunnable.addDictionary
+            JmParser jmParser = new JmParser(dbHelper);
+            jmParser.addEntryWriter(keyFilterWriter);
+            jmParser.addEntryWriter(lookupBoundsWriter);
+            jmParser.addEntryWriter(conjugationIndexWriter);
+            jmParser.addEntryWriter(new EntryReadingWriter(dbHelper));
+
+            Kd2Parser kd2Parser = new Kd2Parser(dbHelper);
+            kd2Parser.addEntryWriter(keyFilterWriter);
+            kd2Parser.addEntryWriter(lookupBoundsWriter);
+            kd2Parser.addCharacterWriter(kanjiTableWriter);
+
+            DictBuildPipeline pipeline = new DictBuildPipeline();
+            pipeline.add(jmDictXml.getName(), jmParser, openXml(jmDictXml), connectionSource);
+            pipeline.add(kanjiDictXml.getName(), kd2Parser, openXml(kanjiDictXml), connectionSource);
+            List<String> entryIndexSql = EntryBulkWriter.dropIndexes(dbHelper);
+            pipeline.run();
+            endPhase(String.format("Parsed %s and %s", jmDictXml.getName(), kanjiDictXml.getName()));
+
+            startPhase();
+            EntryBulkWriter.createIndexes(dbHelper, entryIndexSql);
+            endPhase("Indexed entries");
+
+            startPhase();
+            new BinaryDictionaryWriter(dbHelper).writeTo(new File(outDir, Constants.JMDICT_BINARY_NAME));
+            kanjiTableWriter.writeTo(new File(outDir, Constants.KANJIDIC_TABLE_NAME));
+            keyFilterWriter.writeTo(new File(outDir, Constants.JMDICT_KEY_FILTER_NAME));
+            lookupBoundsWriter.writeTo(new File(outDir, Constants.JMDICT_LOOKUP_BOUNDS_NAME));
+            endPhase("Wrote binary dictionary, kanji table, key filter and lookup bounds");
+
+            startPhase();
+            // The indexes dropped and rebuilt during the load leave free pages behind
+            entryDao.executeRaw("VACUUM");
+            endPhase("Vacuumed");
+
+            List<String[]> dictionaryCounts = entryDao.queryRaw(String.format("SELECT dictionary, COUNT(*) FROM %s GROUP BY dictionary ORDER BY dictionary",
+                    EntryOptimized.TABLE_NAME)).getResults();
+            for (String[] dictionaryCount : dictionaryCounts)
+            {
+                System.out.println(String.format("%-12s %8s entries", dictionaryCount[0], dictionaryCount[1]));
+            }
+            System.out.println(String.format("%-12s %8d rows", Conjugation.TABLE_NAME, conjugationIndexWriter.getConjugationCount()));
+            System.out.println(String.format("%-12s %8d rows", EntryReading.TABLE_NAME, dbHelper.getDbDao(EntryReading.class).countOf()));
+        }
+        finally
+        {
+            connectionSource.close();
+        }
+
+        System.out.println(String.format("Built %s (%d bytes) in %dms", dbFile.getPath(), dbFile.length(), System.currentTimeMillis() - startTime));
+    }
+
+    private XmlPullParser openXml(File xml) throws Exception
+    {
+        InputStream input = new BufferedInputStream(new FileInputStream(xml));
+        if (xml.getName().endsWith(".gz"))
+        {
+            input = new GZIPInputStream(input);
+        }
+
+        // Android's Xml.newPullParser() is a KXmlParser too, so entities and whitespace come out the same
+        XmlPullParser parser = new KXmlParser();
+        parser.setInput(input, null);
+        return parser;
+    }
+
+    private void startPhase()
+    {
+        mPhaseStart = System.currentTimeMillis();
+        mPhaseGcCount = getGcCount();
+        mPhaseGcMillis = getGcMillis();
+    }
+
+    /**
+     * Prints the time the phase took, and how much of it went to garbage collection
+     */
+    private void endPhase(String phase)
+    {
+        System.out.println(String.format("%s in %dms, %d GCs taking %dms", phase, System.currentTimeMillis() - mPhaseStart,
+                getGcCount() - mPhaseGcCount, getGcMillis() - mPhaseGcMillis));
+    }
+
+    private static long getGcCount()
+    {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            count += Math.max(gc.getCollectionCount(), 0);
+        }
+        return count;
+    }
+
+    private static long getGcMillis()
+    {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            millis += Math.max(gc.getCollectionTime(), 0);
+        }
+        return millis;
+    }
+}
@@ -0,0 +1,477 @@
+package ca.fuwafuwa.kaku;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.dao.GenericRawResults;
+import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import com.j256.ormlite.misc.TransactionManager;
+import com.j256.ormlite.table.TableUtils;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import ca.fuwafuwa.kaku.Database.BinaryDictionary.BinaryDictionary;
+import ca.fuwafuwa.kaku.Database.BinaryDictionary.BinaryDictionaryWriter;
+import ca.fuwafuwa.kaku.Database.IDatabaseHelper;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.Conjugation;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.ConjugationChain;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryOptimized;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryReading;
+import ca.fuwafuwa.kaku.Deinflictor.ConjugationIndexWriter;
+import ca.fuwafuwa.kaku.Deinflictor.DeinflectionChain;
+import ca.fuwafuwa.kaku.Deinflictor.Deinflector;
+import ca.fuwafuwa.kaku.Search.BinaryEntrySource;
+import ca.fuwafuwa.kaku.Search.ConjugationIndex;
+import ca.fuwafuwa.kaku.Search.EntrySource;
+import ca.fuwafuwa.kaku.Search.JmLookup;
+import ca.fuwafuwa.kaku.Search.KeyFilter;
+import ca.fuwafuwa.kaku.Search.LookupBounds;
+import ca.fuwafuwa.kaku.Search.SearchInfo;
+import ca.fuwafuwa.kaku.Search.Segmenter;
+import ca.fuwafuwa.kaku.Search.SqliteEntrySource;
+import ca.fuwafuwa.kaku.Search.TrieDictionary;
+import ca.fuwafuwa.kaku.Search.TrieEntrySource;
+
+/**
+ * These aren't real tests. They time the lookup classes the app uses against the DB that ships in assets, so the
+ * engines, strategies and filters can be compared on the same data.
+ *
+ * Point KAKU_DB at a copy of DB_KakuDict-*.db to run them, otherwise they're skipped.
+ */
+public class DictionaryBenchmark
+{
+    private static final int ITERATIONS = 20;
+
+    // Typical OCR capture, every offset gets looked up
+    private static final String SAMPLE_TEXT = "今日は朝から雨が降っていたので、駅まで歩いて行くのをやめてバスに乗ることにした。";
+
+    private static final String[] INFLECTED_WORDS = { "食べなかった", "行きませんでした", "読まれていた", "高くなかった", "勉強させられた",
+                                                      "見てしまった", "書かせて", "走っている", "美しければ", "来なかった" };
+
+    private static final int SEGMENTATION_PARAGRAPHS = 300;
+    private static final String[] PARAGRAPH_SENTENCES = {
+            SAMPLE_TEXT,
+            "「どうしてそんなことを言うの？」と彼女は不思議そうに首をかしげた。",
+            "この村には古くから伝わる言い伝えがあって、誰も森の奥へは近づこうとしなかった。",
+            "勇者よ、魔王を倒すために旅立つのだ。",
+            "昨日買ったばかりの本をもう読み終わってしまった。",
+            "明日までにこの報告書を書かなければならない。",
+            "扉を開けると、見たこともない景色が広がっていた。",
+            "すみません、駅はどちらですか。",
+            "彼は何も言わずに部屋を出て行った。",
+            "まさかこんなところで会えるとは思わなかったよ。" };
+
+    private File mDbFile;
+    private JdbcConnectionSource mConnectionSource;
+    private IDatabaseHelper mDbHelper;
+    private Dao<EntryOptimized, Integer> mEntryDao;
+    private Deinflector mDeinflector;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        String dbPath = System.getenv("KAKU_DB");
+        Assume.assumeTrue("KAKU_DB not set, skipping benchmark", dbPath != null && new File(dbPath).exists());
+
+        // Work on a copy so creating/dropping indexes doesn't touch the original
+        mDbFile = File.createTempFile("kaku_benchmark", ".db");
+        mDbFile.deleteOnExit();
+        Files.copy(new File(dbPath).toPath(), mDbFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        mConnectionSource = new JdbcConnectionSource(String.format("jdbc:sqlite:%s", mDbFile.getAbsolutePath()));
+        mDbHelper = new DictCompiler.JdbcDatabaseHelper(mConnectionSource);
+        mEntryDao = mDbHelper.getDbDao(EntryOptimized.class);
+
+        try (BufferedReader reader = LegacyDeinflector.openRules())
+        {
+            mDeinflector = new Deinflector(reader);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        if (mConnectionSource != null)
+        {
+            mConnectionSource.close();
+        }
+    }
+
+    @Test
+    public void benchmarkEntrySources() throws Exception
+    {
+        int[] textOffsets = textOffsets(SAMPLE_TEXT);
+
+        long trieStart = System.nanoTime();
+        TrieDictionary trieDictionary = TrieDictionary.Companion.build(mDbHelper);
+        System.out.println(String.format("Trie: %d keys, %d slots, %.2fMB, built in %.0fms",
+                trieDictionary.getKeyCount(),
+                trieDictionary.getTrie().getSize(),
+                trieDictionary.getMemoryBytes() / (1024.0 * 1024.0),
+                (System.nanoTime() - trieStart) / 1e6));
+
+        File binaryFile = writeBinaryDictionary();
+        long binaryStart = System.nanoTime();
+        BinaryDictionary binaryDictionary = BinaryDictionary.open(binaryFile);
+        binaryDictionary.find(SAMPLE_TEXT.substring(0, 1));
+        System.out.println(String.format("Binary dictionary: %.2fMB, DB: %.2fMB, opened and first lookup in %.3fms",
+                binaryFile.length() / (1024.0 * 1024.0),
+                mDbFile.length() / (1024.0 * 1024.0),
+                (System.nanoTime() - binaryStart) / 1e6));
+
+        // What JmLookup does with each source: build it for the capture, then probe every prefix of every window
+        long sqliteStart = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+        {
+            probeEveryPrefix(new SqliteEntrySource(mEntryDao, SAMPLE_TEXT, textOffsets), SAMPLE_TEXT, textOffsets);
+        }
+        System.out.println(String.format("SqliteEntrySource: %.3fms per capture", (System.nanoTime() - sqliteStart) / 1e6 / ITERATIONS));
+
+        long trieLookupStart = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+        {
+            probeEveryPrefix(new TrieEntrySource(trieDictionary, mEntryDao, SAMPLE_TEXT, textOffsets), SAMPLE_TEXT, textOffsets);
+        }
+        System.out.println(String.format("TrieEntrySource: %.3fms per capture", (System.nanoTime() - trieLookupStart) / 1e6 / ITERATIONS));
+
+        long binaryLookupStart = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+        {
+            probeEveryPrefix(new BinaryEntrySource(binaryDictionary), SAMPLE_TEXT, textOffsets);
+        }
+        System.out.println(String.format("BinaryEntrySource: %.3fms per capture", (System.nanoTime() - binaryLookupStart) / 1e6 / ITERATIONS));
+
+        // The range queries of SqliteEntrySource lean on the kanji index, see what it's worth
+        mEntryDao.executeRaw(String.format("DROP INDEX IF EXISTS %s", EntryOptimized.KANJI_INDEX_NAME));
+        long noIndexStart = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+        {
+            probeEveryPrefix(new SqliteEntrySource(mEntryDao, SAMPLE_TEXT, textOffsets), SAMPLE_TEXT, textOffsets);
+        }
+        System.out.println(String.format("SqliteEntrySource, no kanji index: %.3fms per capture", (System.nanoTime() - noIndexStart) / 1e6 / ITERATIONS));
+    }
+
+    @Test
+    public void benchmarkLookupEngines() throws Exception
+    {
+        BinaryDictionary binaryDictionary = BinaryDictionary.open(writeBinaryDictionary());
+        TrieDictionary trieDictionary = TrieDictionary.Companion.build(mDbHelper);
+
+        timeSearchAll("SQLite", new JmLookup(mEntryDao, mDeinflector, null, null, null));
+        timeSearchAll("Trie", new JmLookup(mEntryDao, mDeinflector, trieDictionary, null, null));
+        timeSearchAll("Binary", new JmLookup(mEntryDao, mDeinflector, null, binaryDictionary, null));
+    }
+
+    @Test
+    public void benchmarkConjugationIndex() throws Exception
+    {
+        long sizeBefore = mDbFile.length();
+        TableUtils.createTableIfNotExists(mConnectionSource, Conjugation.class);
+        TableUtils.createTableIfNotExists(mConnectionSource, ConjugationChain.class);
+        TableUtils.clearTable(mConnectionSource, Conjugation.class);
+        TableUtils.clearTable(mConnectionSource, ConjugationChain.class);
+
+        long buildStart = System.nanoTime();
+        final ConjugationIndexWriter writer = new ConjugationIndexWriter(mDbHelper, mDeinflector);
+        TransactionManager.callInTransaction(mConnectionSource, new Callable<Void>() {
+            @Override
+            public Void call() throws Exception
+            {
+                writer.begin();
+                for (EntryOptimized entry : mEntryDao.queryForAll())
+                {
+                    writer.write(entry);
+                }
+                writer.finish();
+                return null;
+            }
+        });
+        System.out.println(String.format("Conjugation index: %d forms in %.0fms, DB grew by %.2fMB", writer.getConjugationCount(),
+                (System.nanoTime() - buildStart) / 1e6, (mDbFile.length() - sizeBefore) / (1024.0 * 1024.0)));
+
+        long loadStart = System.nanoTime();
+        ConjugationIndex conjugationIndex = ConjugationIndex.Companion.load(mDbHelper, mDeinflector);
+        System.out.println(String.format("Conjugation index: chains loaded in %.0fms", (System.nanoTime() - loadStart) / 1e6));
+
+        BinaryDictionary binaryDictionary = BinaryDictionary.open(writeBinaryDictionary());
+        JmLookup runtime = new JmLookup(mEntryDao, mDeinflector, null, binaryDictionary, null);
+        JmLookup index = new JmLookup(mEntryDao, mDeinflector, null, binaryDictionary, conjugationIndex);
+
+        for (JmLookup lookup : new JmLookup[] { runtime, index })
+        {
+            long start = System.nanoTime();
+            int found = 0;
+            for (int i = 0; i < ITERATIONS; i++)
+            {
+                for (String word : INFLECTED_WORDS)
+                {
+                    found += lookup.search(word, 0, null, 0).size();
+                }
+            }
+            System.out.println(String.format("%s: %.3fms per word (%d results)", lookup == index ? "Conjugation index" : "Runtime deinflection",
+                    (System.nanoTime() - start) / 1e6 / ITERATIONS / INFLECTED_WORDS.length, found / ITERATIONS));
+        }
+    }
+
+    @Test
+    public void benchmarkSegmentation() throws Exception
+    {
+        BinaryDictionary binaryDictionary = BinaryDictionary.open(writeBinaryDictionary());
+        JmLookup lookup = new JmLookup(null, mDeinflector, null, binaryDictionary, null);
+
+        // Stand-in for OCR'd paragraphs, 1 to 12 sentences each so the cost per char can be compared across lengths
+        List<String> paragraphs = new ArrayList<>();
+        for (int i = 0; i < SEGMENTATION_PARAGRAPHS; i++)
+        {
+            StringBuilder sb = new StringBuilder();
+            for (int s = 0; s <= i % 12; s++)
+            {
+                sb.append(PARAGRAPH_SENTENCES[(i + s) % PARAGRAPH_SENTENCES.length]);
+            }
+            paragraphs.add(sb.toString());
+        }
+
+        for (Segmenter.Segment segment : segment(lookup, SAMPLE_TEXT))
+        {
+            System.out.print(segment.getWord() + (segment.getResults().isEmpty() ? "? " : " | "));
+        }
+        System.out.println();
+
+        long shortNanos = 0, longNanos = 0;
+        int shortChars = 0, longChars = 0;
+        long start = System.nanoTime();
+        for (String paragraph : paragraphs)
+        {
+            long paragraphStart = System.nanoTime();
+            segment(lookup, paragraph);
+            long elapsed = System.nanoTime() - paragraphStart;
+
+            if (paragraph.length() < 150)
+            {
+                shortNanos += elapsed;
+                shortChars += paragraph.length();
+            }
+            else
+            {
+                longNanos += elapsed;
+                longChars += paragraph.length();
+            }
+        }
+        System.out.println(String.format("Segmentation: %d paragraphs in %.0fms, %.1fus/char under 150 chars, %.1fus/char over",
+                paragraphs.size(), (System.nanoTime() - start) / 1e6, shortNanos / 1e3 / shortChars, longNanos / 1e3 / longChars));
+    }
+
+    @Test
+    public void benchmarkKeyFilter() throws Exception
+    {
+        long buildStart = System.nanoTime();
+        KeyFilter keyFilter = KeyFilter.Companion.build(mDbHelper);
+        System.out.println(String.format("Key filter: %d keys in %.0fms, %.2fMB, %.2f%% expected false positives",
+                keyFilter.getKeyCount(), (System.nanoTime() - buildStart) / 1e6, keyFilter.getMemoryBytes() / (1024.0 * 1024.0), keyFilter.getExpectedFalsePositiveRate() * 100));
+
+        Set<String> keys = queryStrings(String.format("SELECT DISTINCT kanji FROM %s WHERE kanji IS NOT NULL", EntryOptimized.TABLE_NAME));
+        Set<String> readings = queryStrings(String.format("SELECT DISTINCT readingKey FROM %s", EntryReading.TABLE_NAME));
+
+        // The words JmLookup actually probes: every deinflection of every prefix at every offset
+        List<String> probes = new ArrayList<>();
+        DeinflectionChain chain = new DeinflectionChain();
+        for (String sentence : PARAGRAPH_SENTENCES)
+        {
+            for (int offset : textOffsets(sentence))
+            {
+                for (int end = Math.min(sentence.length(), offset + SearchInfo.MAX_LOOKUP_LENGTH); end > offset; end--)
+                {
+                    mDeinflector.deinflect(sentence.substring(offset, end), chain);
+                    for (int c = 0; c < chain.getSize(); c++)
+                    {
+                        probes.add(chain.getWord(c).toString());
+                    }
+                }
+            }
+        }
+
+        int keyNegatives = 0, keyFalsePositives = 0, readingNegatives = 0, readingFalsePositives = 0;
+        for (String probe : probes)
+        {
+            if (!keys.contains(probe))
+            {
+                keyNegatives++;
+                keyFalsePositives += keyFilter.mightContain(probe) ? 1 : 0;
+            }
+            if (EntryReading.isKana(probe) && !readings.contains(EntryReading.toReadingKey(probe)))
+            {
+                readingNegatives++;
+                readingFalsePositives += keyFilter.mightContainReading(probe) ? 1 : 0;
+            }
+        }
+        System.out.println(String.format("Key filter: %d probes, %d not keys (%.2f%% false positives), %d not readings (%.2f%% false positives)",
+                probes.size(), keyNegatives, 100.0 * keyFalsePositives / keyNegatives, readingNegatives, 100.0 * readingFalsePositives / readingNegatives));
+
+        BinaryDictionary binaryDictionary = BinaryDictionary.open(writeBinaryDictionary());
+        timeSearchAll("Binary, no key filter", new JmLookup(mEntryDao, mDeinflector, null, binaryDictionary, null));
+        timeSearchAll("Binary, key filter", new JmLookup(mEntryDao, mDeinflector, null, binaryDictionary, null, keyFilter));
+        timeSearchAll("SQLite, no key filter", new JmLookup(mEntryDao, mDeinflector, null, null, null));
+        timeSearchAll("SQLite, key filter", new JmLookup(mEntryDao, mDeinflector, null, null, null, keyFilter));
+    }
+
+    @Test
+    public void benchmarkLookupBounds() throws Exception
+    {
+        BinaryDictionary binaryDictionary = BinaryDictionary.open(writeBinaryDictionary());
+
+        long buildStart = System.nanoTime();
+        LookupBounds lookupBounds = LookupBounds.Companion.build(mDbHelper, mDeinflector);
+        System.out.println(String.format("Lookup bounds: built in %.0fms, inflections add up to %d chars", (System.nanoTime() - buildStart) / 1e6, lookupBounds.getMaxInflectionTail()));
+
+        // Long OCR pages, every sentence once
+        List<String> pages = new ArrayList<>();
+        for (int i = 0; i < PARAGRAPH_SENTENCES.length; i++)
+        {
+            StringBuilder sb = new StringBuilder();
+            for (int s = 0; s < PARAGRAPH_SENTENCES.length; s++)
+            {
+                sb.append(PARAGRAPH_SENTENCES[(i + s) % PARAGRAPH_SENTENCES.length]);
+            }
+            pages.add(sb.toString());
+        }
+
+        int windowChars = 0, boundedChars = 0;
+        for (String page : pages)
+        {
+            for (int offset : textOffsets(page))
+            {
+                String window = SearchInfo.getLookupWindow(page, offset);
+                windowChars += window.length();
+                boundedChars += Math.min(window.length(), lookupBounds.getMaxLength(window.charAt(0)));
+            }
+        }
+        System.out.println(String.format("Lookup bounds: %d of %d prefixes left by the first char bound alone", boundedChars, windowChars));
+
+        JmLookup unbounded = new JmLookup(null, mDeinflector, null, binaryDictionary, null);
+        JmLookup bounded = new JmLookup(null, mDeinflector, null, binaryDictionary, null, null, lookupBounds);
+        for (String page : pages)
+        {
+            if (!segmentWords(unbounded, page).equals(segmentWords(bounded, page)))
+            {
+                System.out.println("Lookup bounds: segments differ for " + page);
+            }
+        }
+
+        for (JmLookup lookup : new JmLookup[] { unbounded, bounded })
+        {
+            long start = System.nanoTime();
+            int chars = 0;
+            for (int i = 0; i < ITERATIONS; i++)
+            {
+                for (String page : pages)
+                {
+                    lookup.searchAll(page, textOffsets(page), null);
+                    chars += page.length();
+                }
+            }
+            System.out.println(String.format("%s: %.1fus/char", lookup == bounded ? "Bounded windows" : "Full windows", (System.nanoTime() - start) / 1e3 / chars));
+        }
+    }
+
+    /**
+     * Prints the time JmLookup.searchAll takes over every offset of the sample text, after one run to warm up
+     */
+    private void timeSearchAll(String name, JmLookup lookup) throws SQLException
+    {
+        int[] textOffsets = textOffsets(SAMPLE_TEXT);
+        lookup.searchAll(SAMPLE_TEXT, textOffsets, null);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+        {
+            lookup.searchAll(SAMPLE_TEXT, textOffsets, null);
+        }
+        System.out.println(String.format("%s: %.3fms per capture", name, (System.nanoTime() - start) / 1e6 / ITERATIONS));
+    }
+
+    private int probeEveryPrefix(EntrySource entrySource, String text, int[] textOffsets)
+    {
+        int found = 0;
+        for (int offset : textOffsets)
+        {
+            for (int end = Math.min(offset + SearchInfo.MAX_LOOKUP_LENGTH, text.length()); end > offset; end--)
+            {
+                for (EntryOptimized entry : entrySource.find(text.substring(offset, end)))
+                {
+                    // Read like JmLookup does to validate deinflections
+                    found += entry.getPosMask() >= 0 ? 1 : 0;
+                }
+            }
+        }
+        return found;
+    }
+
+    private List<String> segmentWords(JmLookup lookup, String text) throws SQLException
+    {
+        List<String> words = new ArrayList<>();
+        for (Segmenter.Segment segment : segment(lookup, text))
+        {
+            words.add(segment.getWord());
+        }
+        return words;
+    }
+
+    /**
+     * Same lookups as JmBatchTask, in one go
+     */
+    private List<Segmenter.Segment> segment(JmLookup lookup, String text) throws SQLException
+    {
+        int[] textOffsets = textOffsets(text);
+        return lookup.segment(text, textOffsets, lookup.matchAll(text, textOffsets));
+    }
+
+    private int[] textOffsets(String text)
+    {
+        int[] offsets = new int[text.codePointCount(0, text.length())];
+        for (int i = 0, offset = 0; i < offsets.length; i++)
+        {
+            offsets[i] = offset;
+            offset += Character.charCount(text.codePointAt(offset));
+        }
+        return offsets;
+    }
+
+    private Set<String> queryStrings(String query) throws SQLException, IOException
+    {
+        Set<String> strings = new HashSet<>();
+        GenericRawResults<String[]> rows = mEntryDao.queryRaw(query);
+        try
+        {
+            for (String[] row : rows)
+            {
+                strings.add(row[0]);
+            }
+        }
+        finally
+        {
+            rows.close();
+        }
+        return strings;
+    }
+
+    private File writeBinaryDictionary() throws Exception
+    {
+        File binaryFile = File.createTempFile("kaku_benchmark", ".bin");
+        binaryFile.deleteOnExit();
+        new BinaryDictionaryWriter(mDbHelper).writeTo(binaryFile);
+        return binaryFile;
+    }
+}
@@ -0,0 +1,128 @@
+package ca.fuwafuwa.kaku;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+import ca.fuwafuwa.kaku.Search.DoubleArrayTrie;
+import kotlin.Unit;
+import kotlin.jvm.functions.Function2;
+
+import static org.junit.Assert.assertEquals;
+
+public class DoubleArrayTrieTest
+{
+    private static final List<String> KEYS = sorted("あ", "あい", "あいう", "か", "漢字", "漢字検定", "食べる", "𠮟る", "ｱｲｽ");
+
+    @Test
+    public void exactMatchFindsEveryKey()
+    {
+        DoubleArrayTrie trie = DoubleArrayTrie.Companion.build(KEYS);
+
+        for (int i = 0; i < KEYS.size(); i++)
+        {
+            assertEquals(KEYS.get(i), i, trie.exactMatch(KEYS.get(i)));
+        }
+    }
+
+    @Test
+    public void exactMatchMissesPrefixesAndExtensions()
+    {
+        DoubleArrayTrie trie = DoubleArrayTrie.Companion.build(KEYS);
+
+        for (String word : new String[] { "あいうえ", "漢", "食べ", "食べるな", "𠮟", "い", "アイス", "ｱｲ" })
+        {
+            assertEquals(word, -1, trie.exactMatch(word));
+        }
+    }
+
+    @Test
+    public void commonPrefixSearchFindsEveryPrefixShortestFirst()
+    {
+        DoubleArrayTrie trie = DoubleArrayTrie.Companion.build(KEYS);
+
+        assertEquals(Arrays.asList(1, 2, 3), prefixLengths(trie, "あいうえお", 0, 5));
+        assertEquals(Arrays.asList(2, 4), prefixLengths(trie, "漢字検定試験", 0, 6));
+        assertEquals(Collections.singletonList(3), prefixLengths(trie, "𠮟るな", 0, 4));
+    }
+
+    @Test
+    public void commonPrefixSearchStaysInRange()
+    {
+        DoubleArrayTrie trie = DoubleArrayTrie.Companion.build(KEYS);
+
+        // Starts partway into the text and stops at end, あいう is in the text but past end
+        assertEquals(Arrays.asList(1, 2), prefixLengths(trie, "今あいう", 1, 3));
+        assertEquals(Collections.<Integer>emptyList(), prefixLengths(trie, "今あいう", 0, 4));
+    }
+
+    @Test
+    public void matchesMapForRandomKeys()
+    {
+        Random random = new Random(42);
+        String alphabet = "あいうかきく漢字食𠮟";
+
+        TreeSet<String> keySet = new TreeSet<>();
+        while (keySet.size() < 2000)
+        {
+            keySet.add(randomWord(random, alphabet));
+        }
+        List<String> keys = new ArrayList<>(keySet);
+
+        Map<String, Integer> expected = new HashMap<>();
+        for (int i = 0; i < keys.size(); i++)
+        {
+            expected.put(keys.get(i), i);
+        }
+
+        DoubleArrayTrie trie = DoubleArrayTrie.Companion.build(keys);
+
+        for (int i = 0; i < 10000; i++)
+        {
+            String word = randomWord(random, alphabet);
+            Integer value = expected.get(word);
+            assertEquals(word, value == null ? -1 : value, trie.exactMatch(word));
+        }
+    }
+
+    private static String randomWord(Random random, String alphabet)
+    {
+        StringBuilder sb = new StringBuilder();
+        int length = 1 + random.nextInt(6);
+        for (int i = 0; i < length; i++)
+        {
+            // Only whole code points, so the surrogate pair stays together
+            int codePoint = alphabet.codePointAt(alphabet.offsetByCodePoints(0, random.nextInt(alphabet.codePointCount(0, alphabet.length()))));
+            sb.appendCodePoint(codePoint);
+        }
+        return sb.toString();
+    }
+
+    private static List<Integer> prefixLengths(DoubleArrayTrie trie, String text, int start, int end)
+    {
+        final List<Integer> lengths = new ArrayList<>();
+        trie.commonPrefixSearch(text, start, end, new Function2<Integer, Integer, Unit>() {
+            @Override
+            public Unit invoke(Integer length, Integer value)
+            {
+                lengths.add(length);
+                return Unit.INSTANCE;
+            }
+        });
+        return lengths;
+    }
+
+    private static List<String> sorted(String... keys)
+    {
+        List<String> list = new ArrayList<>(Arrays.asList(keys));
+        Collections.sort(list);
+        return list;
+    }
+}
@@ -0,0 +1,134 @@
+package ca.fuwafuwa.kaku;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import ca.fuwafuwa.kaku.Database.BinaryDictionary.BinaryDictionary;
+import ca.fuwafuwa.kaku.Database.BinaryDictionary.BinaryDictionaryWriter;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryOptimized;
+import ca.fuwafuwa.kaku.Deinflictor.Deinflector;
+import ca.fuwafuwa.kaku.Search.JmLookup;
+import ca.fuwafuwa.kaku.Search.JmSearchResult;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs JmLookup over a binary dictionary of a few entries and checks the order its results are ranked in
+ */
+public class JmLookupRankTest
+{
+    private TempDictionaryDb mDb;
+    private File mBinaryFile;
+    private Deinflector mDeinflector;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        mDb = new TempDictionaryDb();
+        mBinaryFile = File.createTempFile("kaku_test", ".bin");
+        mBinaryFile.deleteOnExit();
+
+        try (BufferedReader reader = LegacyDeinflector.openRules())
+        {
+            mDeinflector = new Deinflector(reader);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        mDb.close();
+        mBinaryFile.delete();
+    }
+
+    @Test
+    public void ranksByDictionaryLengthPrimaryThenPriority() throws Exception
+    {
+        EntryOptimized noPriority = mDb.addEntry("食べる", "たべる", "to eat", "v1", null, Constants.DB_JMDICT_NAME, true);
+        EntryOptimized sameAsNoPriority = mDb.addEntry("食べる", "たべる", "to live on", "v1", null, Constants.DB_JMDICT_NAME, true);
+        EntryOptimized notPrimary = mDb.addEntry("食べる", "たべる", "to eat", "v1", "nf01", Constants.DB_JMDICT_NAME, false);
+        EntryOptimized shorter = mDb.addEntry("食", "しょく", "food", "n", "news1,nf01", Constants.DB_JMDICT_NAME, true);
+        EntryOptimized kanjiDict = mDb.addEntry("食", "ショク", "eat,food", null, null, Constants.DB_KANJIDICT_NAME, true);
+        EntryOptimized best = mDb.addEntry("食べる", "たべる", "to eat", "v1", "ichi1,news1,nf05", Constants.DB_JMDICT_NAME, true);
+
+        List<Integer> ids = getIds(buildLookup().search("食べるもの", 0, null, 0));
+
+        // Equal keys keep the order they were found in, which is id order
+        assertEquals(Arrays.asList(best.getId(), noPriority.getId(), sameAsNoPriority.getId(), notPrimary.getId(), shorter.getId(), kanjiDict.getId()), ids);
+    }
+
+    @Test
+    public void pagesContinueTheRanking() throws Exception
+    {
+        // Added in shuffled order, so ids say nothing about the rank
+        List<Integer> ranks = new ArrayList<>();
+        for (int rank = 1; rank <= 2 * JmLookup.PAGE_SIZE + 5; rank++)
+        {
+            ranks.add(rank);
+        }
+        Collections.shuffle(ranks, new Random(3));
+
+        List<EntryOptimized> expected = new ArrayList<>();
+        for (int rank : ranks)
+        {
+            expected.add(mDb.addEntry("食", "しょく", "food " + rank, "n", String.format("nf%02d", rank), Constants.DB_JMDICT_NAME, true));
+        }
+        Collections.sort(expected, new Comparator<EntryOptimized>() {
+            @Override
+            public int compare(EntryOptimized o1, EntryOptimized o2)
+            {
+                return Integer.compare(o1.getPriorityRank(), o2.getPriorityRank());
+            }
+        });
+
+        JmLookup lookup = buildLookup();
+        List<Integer> ids = new ArrayList<>();
+        for (int page = 0; ; page++)
+        {
+            List<JmSearchResult> results = lookup.search("食", 0, null, page);
+            ids.addAll(getIds(results));
+            if (results.size() < JmLookup.PAGE_SIZE)
+            {
+                break;
+            }
+        }
+
+        assertEquals(getEntryIds(expected), ids);
+    }
+
+    private JmLookup buildLookup() throws Exception
+    {
+        new BinaryDictionaryWriter(mDb.getDbHelper()).writeTo(mBinaryFile);
+        return new JmLookup(null, mDeinflector, null, BinaryDictionary.open(mBinaryFile), null);
+    }
+
+    private static List<Integer> getIds(List<JmSearchResult> results)
+    {
+        List<Integer> ids = new ArrayList<>();
+        for (JmSearchResult result : results)
+        {
+            ids.add(result.getEntry().getId());
+        }
+        return ids;
+    }
+
+    private static List<Integer> getEntryIds(List<EntryOptimized> entries)
+    {
+        List<Integer> ids = new ArrayList<>();
+        for (EntryOptimized entry : entries)
+        {
+            ids.add(entry.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,295 @@
+package ca.fuwafuwa.kaku;
+
+import com.j256.ormlite.dao.Dao;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kxml2.io.KXmlParser;
+import org.xmlpull.v1.XmlPullParser;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.EntryBulkWriter;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.EntryReadingWriter;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.Conjugation;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.ConjugationChain;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryOptimized;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryReading;
+import ca.fuwafuwa.kaku.Deinflictor.ConjugationIndexWriter;
+import ca.fuwafuwa.kaku.Deinflictor.DeinflectionCandidates;
+import ca.fuwafuwa.kaku.Deinflictor.Deinflector;
+import ca.fuwafuwa.kaku.Search.ConjugationIndex;
+import ca.fuwafuwa.kaku.XmlParsers.DictBuildPipeline;
+import ca.fuwafuwa.kaku.XmlParsers.JmDict.JmParser;
+import ca.fuwafuwa.kaku.XmlParsers.JmDict.JmUpdater;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Builds a DB from one JMdict with JmParser, then brings it up to date with another through JmUpdater, the way
+ * ParserRunnable and JmUpdateRunnable do
+ */
+public class JmUpdaterTest
+{
+    private static final String JMDICT_OLD =
+            "<JMdict>" +
+            entry(1000010, "猫", "ねこ", "n", "cat") +
+            entry(1000020, "走る", "はしる", "v5r", "to run") +
+            entry(1000030, "犬", "いぬ", "n", "dog") +
+            "</JMdict>";
+
+    // 猫 is unchanged, 走る has a new gloss, 犬 is gone and 食べる is new
+    private static final String JMDICT_NEW =
+            "<JMdict>" +
+            entry(1000010, "猫", "ねこ", "n", "cat") +
+            entry(1000020, "走る", "はしる", "v5r", "to run; to dash") +
+            entry(1000040, "食べる", "たべる", "v1", "to eat") +
+            "</JMdict>";
+
+    private TempDictionaryDb mDb;
+    private Dao<EntryOptimized, Integer> mEntryDao;
+    private Deinflector mDeinflector;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        mDb = new TempDictionaryDb();
+        mEntryDao = mDb.getEntryDao();
+
+        try (BufferedReader reader = LegacyDeinflector.openRules())
+        {
+            mDeinflector = new Deinflector(reader);
+        }
+
+        // Same as ParserRunnable
+        JmParser jmParser = new JmParser(mDb.getDbHelper());
+        jmParser.addEntryWriter(new ConjugationIndexWriter(mDb.getDbHelper(), mDeinflector));
+        jmParser.addEntryWriter(new EntryReadingWriter(mDb.getDbHelper()));
+
+        DictBuildPipeline pipeline = new DictBuildPipeline();
+        pipeline.add("JMdict_old", jmParser, openXml(JMDICT_OLD), mDb.getConnectionSource());
+        List<String> entryIndexSql = EntryBulkWriter.dropIndexes(mDb.getDbHelper());
+        pipeline.run();
+        EntryBulkWriter.createIndexes(mDb.getDbHelper(), entryIndexSql);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        mDb.close();
+    }
+
+    @Test
+    public void buildKeepsEveryIndex() throws Exception
+    {
+        assertIndexesExist();
+        assertEquals(3, mEntryDao.countOf());
+        assertEquals(getEntry("走る").getId().intValue(), getReadingEntryId("はしる"));
+        assertEquals(getEntry("走る").getId().intValue(), getConjugationEntryId("走った"));
+    }
+
+    @Test
+    public void insertsUpdatesAndDeletesChangedEntries() throws Exception
+    {
+        EntryOptimized cat = getEntry("猫");
+        EntryOptimized run = getEntry("走る");
+        EntryOptimized dog = getEntry("犬");
+
+        JmUpdater updater = update(JMDICT_NEW);
+        assertTrue(updater.hasChanges());
+
+        // Unchanged, the row is left as it was
+        EntryOptimized newCat = getEntry("猫");
+        assertEquals(cat.getId(), newCat.getId());
+        assertEquals(cat.getContentHash(), newCat.getContentHash());
+
+        // Changed, replaced by a new row along with its readings and conjugations
+        EntryOptimized newRun = getEntry("走る");
+        assertNotEquals(run.getId(), newRun.getId());
+        assertEquals("to run; to dash", newRun.getMeanings());
+        assertNotEquals(run.getContentHash(), newRun.getContentHash());
+        assertEquals(newRun.getId().intValue(), getReadingEntryId("はしる"));
+        assertEquals(newRun.getId().intValue(), getConjugationEntryId("走った"));
+
+        // Gone from JMdict
+        assertTrue(mEntryDao.queryForEq("kanji", "犬").isEmpty());
+        assertEquals(-1, getReadingEntryId("いぬ"));
+        assertEquals(0, countRowsOf(dog.getId()));
+
+        // New
+        EntryOptimized eat = getEntry("食べる");
+        assertEquals(1000040, eat.getEntSeq());
+        assertEquals(eat.getId().intValue(), getReadingEntryId("たべる"));
+        assertEquals(eat.getId().intValue(), getConjugationEntryId("食べた"));
+
+        assertEquals(3, mEntryDao.countOf());
+        assertNoOrphans();
+        assertIndexesExist();
+    }
+
+    @Test
+    public void replacesRowsWithoutEntSeq() throws Exception
+    {
+        // A DB from before entSeq was stored, its rows all have 0
+        mEntryDao.executeRaw(String.format("UPDATE %s SET %s = 0, %s = 0",
+                EntryOptimized.TABLE_NAME, EntryOptimized.ENT_SEQ_COLUMN, EntryOptimized.CONTENT_HASH_COLUMN));
+        List<Integer> legacyIds = new ArrayList<>();
+        for (EntryOptimized entry : mEntryDao.queryForAll())
+        {
+            legacyIds.add(entry.getId());
+        }
+
+        JmUpdater updater = update(JMDICT_NEW);
+        assertTrue(updater.hasChanges());
+
+        for (int legacyId : legacyIds)
+        {
+            assertEquals(0, countRowsOf(legacyId));
+        }
+        for (EntryOptimized entry : mEntryDao.queryForAll())
+        {
+            assertNotEquals(0, entry.getEntSeq());
+            assertFalse(legacyIds.contains(entry.getId()));
+        }
+
+        assertEquals(3, mEntryDao.countOf());
+        assertNoOrphans();
+    }
+
+    @Test
+    public void secondUpdateChangesNothing() throws Exception
+    {
+        update(JMDICT_NEW);
+        List<EntryOptimized> before = mEntryDao.queryForAll();
+
+        JmUpdater updater = update(JMDICT_NEW);
+
+        assertFalse(updater.hasChanges());
+        List<EntryOptimized> after = mEntryDao.queryForAll();
+        assertEquals(before.size(), after.size());
+        for (int i = 0; i < before.size(); i++)
+        {
+            assertEquals(before.get(i).getId(), after.get(i).getId());
+        }
+    }
+
+    @Test
+    public void reloadedConjugationIndexFindsNewEntries() throws Exception
+    {
+        update(JMDICT_NEW);
+
+        // The update added chains for v1 verbs, only an index loaded after it knows them
+        ConjugationIndex conjugationIndex = ConjugationIndex.Companion.load(mDb.getDbHelper(), mDeinflector);
+        assertNotNull(conjugationIndex);
+
+        DeinflectionCandidates candidates = conjugationIndex.find("食べた");
+        List<Integer> entryIds = new ArrayList<>();
+        for (int i = 0; i < candidates.getSize(); i++)
+        {
+            entryIds.add(candidates.getEntryId(i));
+        }
+        assertTrue(entryIds.contains(getEntry("食べる").getId()));
+    }
+
+    @Test
+    public void buildsConjugationIndexOfMigratedDb() throws Exception
+    {
+        // A DB migrated from version 1 has the tables but nothing in them
+        mEntryDao.executeRaw(String.format("DELETE FROM %s", Conjugation.TABLE_NAME));
+        mEntryDao.executeRaw(String.format("DELETE FROM %s", ConjugationChain.TABLE_NAME));
+        assertNull(ConjugationIndex.Companion.load(mDb.getDbHelper(), mDeinflector));
+
+        assertTrue(ConjugationIndex.Companion.build(mDb.getDbHelper(), mDb.getConnectionSource(), mDeinflector));
+
+        ConjugationIndex conjugationIndex = ConjugationIndex.Companion.load(mDb.getDbHelper(), mDeinflector);
+        assertNotNull(conjugationIndex);
+        assertEquals(getEntry("走る").getId().intValue(), getConjugationEntryId("走った"));
+        assertIndexesExist();
+    }
+
+    /**
+     * Same as JmUpdateRunnable
+     */
+    private JmUpdater update(String jmDict) throws Exception
+    {
+        JmUpdater updater = new JmUpdater(mDb.getDbHelper());
+        updater.addEntryWriter(new ConjugationIndexWriter(mDb.getDbHelper(), mDeinflector, ConjugationIndexWriter.DEFAULT_MAX_DEPTH, false));
+        updater.addEntryWriter(new EntryReadingWriter(mDb.getDbHelper(), false));
+
+        DictBuildPipeline pipeline = new DictBuildPipeline();
+        pipeline.add("JMdict_new", updater, openXml(jmDict), mDb.getConnectionSource());
+        pipeline.run();
+
+        return updater;
+    }
+
+    private EntryOptimized getEntry(String kanji) throws Exception
+    {
+        List<EntryOptimized> entries = mEntryDao.queryForEq("kanji", kanji);
+        assertEquals(kanji, 1, entries.size());
+        return entries.get(0);
+    }
+
+    private int getReadingEntryId(String readingKey) throws Exception
+    {
+        String[] row = mEntryDao.queryRaw(String.format("SELECT entryId FROM %s WHERE readingKey = ?", EntryReading.TABLE_NAME), readingKey).getFirstResult();
+        return row == null ? -1 : Integer.parseInt(row[0]);
+    }
+
+    private int getConjugationEntryId(String surface) throws Exception
+    {
+        String[] row = mEntryDao.queryRaw(String.format("SELECT entryId FROM %s WHERE surface = ?", Conjugation.TABLE_NAME), surface).getFirstResult();
+        return row == null ? -1 : Integer.parseInt(row[0]);
+    }
+
+    private long countRowsOf(int entryId) throws Exception
+    {
+        return mEntryDao.queryRawValue(String.format("SELECT COUNT(*) FROM %s WHERE id = %d", EntryOptimized.TABLE_NAME, entryId))
+                + mEntryDao.queryRawValue(String.format("SELECT COUNT(*) FROM %s WHERE entryId = %d", EntryReading.TABLE_NAME, entryId))
+                + mEntryDao.queryRawValue(String.format("SELECT COUNT(*) FROM %s WHERE entryId = %d", Conjugation.TABLE_NAME, entryId));
+    }
+
+    private void assertNoOrphans() throws Exception
+    {
+        for (String table : new String[] { EntryReading.TABLE_NAME, Conjugation.TABLE_NAME })
+        {
+            assertEquals(table, 0, mEntryDao.queryRawValue(String.format("SELECT COUNT(*) FROM %s WHERE entryId NOT IN (SELECT id FROM %s)",
+                    table, EntryOptimized.TABLE_NAME)));
+        }
+    }
+
+    private void assertIndexesExist() throws Exception
+    {
+        for (String index : new String[] { EntryOptimized.KANJI_INDEX_NAME, EntryReading.READING_KEY_INDEX_NAME, Conjugation.SURFACE_INDEX_NAME })
+        {
+            assertEquals(index, 1, mEntryDao.queryRawValue("SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' AND name = ?", index));
+        }
+    }
+
+    private static String entry(int entSeq, String keb, String reb, String pos, String gloss)
+    {
+        return "<entry>" +
+               "<ent_seq>" + entSeq + "</ent_seq>" +
+               "<k_ele><keb>" + keb + "</keb></k_ele>" +
+               "<r_ele><reb>" + reb + "</reb></r_ele>" +
+               "<sense><pos>&" + pos + ";</pos><gloss>" + gloss + "</gloss></sense>" +
+               "</entry>";
+    }
+
+    private static XmlPullParser openXml(String xml) throws Exception
+    {
+        // Android's Xml.newPullParser() is a KXmlParser too
+        XmlPullParser parser = new KXmlParser();
+        parser.setInput(new StringReader(xml));
+        return parser;
+    }
+}
@@ -0,0 +1,149 @@
+package ca.fuwafuwa.kaku;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryOptimized;
+import ca.fuwafuwa.kaku.Search.KeyFilter;
+import ca.fuwafuwa.kaku.Search.KeyFilterWriter;
+
+import static org.junit.Assert.assertTrue;
+
+public class KeyFilterTest
+{
+    private static final String KANJI = "日本語食飲見行来高安静書読話聞走泳遊学生先私";
+    private static final String HIRAGANA = "あいうえおかきくけこさしすせそたちつてとなにぬねのまみむめもやゆよらりるれろわん";
+    private static final int ENTRIES = 5000;
+
+    private Set<String> mKeys = new HashSet<>();
+    private Set<String> mReadings = new HashSet<>();
+    private KeyFilterWriter mWriter = new KeyFilterWriter();
+
+    @Before
+    public void setUp()
+    {
+        Random random = new Random(7);
+        for (int i = 0; i < ENTRIES; i++)
+        {
+            String kanji = randomWord(random, KANJI);
+            String reading = randomWord(random, HIRAGANA);
+
+            mKeys.add(kanji);
+            mReadings.add(reading);
+            mWriter.write(entry(kanji, reading, Constants.DB_JMDICT_NAME));
+        }
+
+        // Kanjidic entries only add their key, on and kun readings aren't words
+        mKeys.add("漢");
+        mWriter.write(entry("漢", "かん", Constants.DB_KANJIDICT_NAME));
+    }
+
+    @Test
+    public void hasNoFalseNegatives()
+    {
+        KeyFilter keyFilter = mWriter.build();
+
+        for (String key : mKeys)
+        {
+            assertTrue(key, keyFilter.mightContain(key));
+        }
+        for (String reading : mReadings)
+        {
+            assertTrue(reading, keyFilter.mightContainReading(reading));
+            // Readings are folded to hiragana, the katakana spelling has to pass as well
+            assertTrue(reading, keyFilter.mightContainReading(toKatakana(reading)));
+        }
+    }
+
+    @Test
+    public void rulesOutMostOtherWords()
+    {
+        KeyFilter keyFilter = mWriter.build();
+
+        Random random = new Random(11);
+        int negatives = 0;
+        int falsePositives = 0;
+        while (negatives < 10000)
+        {
+            String word = randomWord(random, KANJI + HIRAGANA);
+            // A hiragana reading folds to itself, so it sets the same bits as the key would
+            if (mKeys.contains(word) || mReadings.contains(word))
+            {
+                continue;
+            }
+            negatives++;
+            falsePositives += keyFilter.mightContain(word) ? 1 : 0;
+        }
+
+        // About 1% expected, a lot more means the hashes aren't independent
+        assertTrue(String.format("%d false positives", falsePositives), falsePositives < 300);
+    }
+
+    @Test
+    public void readsBackWhatWasWritten() throws Exception
+    {
+        KeyFilter keyFilter = mWriter.build();
+
+        File file = File.createTempFile("kaku_test", ".bloom");
+        file.deleteOnExit();
+        try
+        {
+            keyFilter.writeTo(file);
+            KeyFilter readFilter = KeyFilter.Companion.open(file);
+
+            Random random = new Random(13);
+            List<String> words = new ArrayList<>(mKeys);
+            for (int i = 0; i < 10000; i++)
+            {
+                words.add(randomWord(random, KANJI + HIRAGANA));
+            }
+
+            for (String word : words)
+            {
+                assertTrue(word, keyFilter.mightContain(word) == readFilter.mightContain(word));
+                assertTrue(word, keyFilter.mightContainReading(word) == readFilter.mightContainReading(word));
+            }
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    private static EntryOptimized entry(String kanji, String readings, String dictionary)
+    {
+        EntryOptimized entry = new EntryOptimized();
+        entry.setKanji(kanji);
+        entry.setReadings(readings);
+        entry.setDictionary(dictionary);
+        return entry;
+    }
+
+    private static String randomWord(Random random, String alphabet)
+    {
+        StringBuilder sb = new StringBuilder();
+        int length = 1 + random.nextInt(5);
+        for (int i = 0; i < length; i++)
+        {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+
+    private static String toKatakana(String hiragana)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < hiragana.length(); i++)
+        {
+            sb.append((char) (hiragana.charAt(i) + 0x60));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,141 @@
+package ca.fuwafuwa.kaku;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ca.fuwafuwa.kaku.Deinflictor.DeinflectionInfo;
+
+/**
+ * The rule-by-rule Deinflector loop that the suffix trie replaced, kept as the baseline it's timed and checked against
+ */
+class LegacyDeinflector
+{
+    static final String DEINFLECT_DAT = "src/main/assets/deinflect.dat";
+
+    private static class LegacyRule
+    {
+        String from;
+        String to;
+        int type;
+        String reason;
+    }
+
+    // Rules grouped by consecutive runs of the same from length, like the old DeinflectionRuleGroup
+    private List<List<LegacyRule>> mRuleGroups = new ArrayList<>();
+
+    LegacyDeinflector() throws IOException
+    {
+        try (BufferedReader reader = openRules())
+        {
+            reader.readLine();
+
+            List<String> reasons = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                String[] fields = line.split("\t");
+                if (fields.length == 1)
+                {
+                    reasons.add(fields[0].trim());
+                }
+                else if (fields.length == 4)
+                {
+                    LegacyRule rule = new LegacyRule();
+                    rule.from = fields[0].trim();
+                    rule.to = fields[1].trim();
+                    rule.type = Integer.parseInt(fields[2].trim());
+                    rule.reason = reasons.get(Integer.parseInt(fields[3].trim()));
+
+                    if (mRuleGroups.isEmpty() || mRuleGroups.get(mRuleGroups.size() - 1).get(0).from.length() != rule.from.length())
+                    {
+                        mRuleGroups.add(new ArrayList<LegacyRule>());
+                    }
+                    mRuleGroups.get(mRuleGroups.size() - 1).add(rule);
+                }
+            }
+        }
+    }
+
+    static BufferedReader openRules() throws IOException
+    {
+        return new BufferedReader(new InputStreamReader(new FileInputStream(new File(DEINFLECT_DAT)), "UTF-8"));
+    }
+
+    /**
+     * The old Deinflector loop: for every word in the chain, take the tail of the word for each rule length and compare
+     * it against every rule of that length
+     *
+     * @return Every deinflection found, starting with the word itself
+     */
+    List<DeinflectionInfo> deinflect(String word)
+    {
+        List<String> words = new ArrayList<>();
+        List<Integer> types = new ArrayList<>();
+        List<String> reasons = new ArrayList<>();
+        Map<String, Integer> seen = new HashMap<>();
+
+        words.add(word);
+        types.add(0xFF);
+        reasons.add("");
+        seen.put(word, 0);
+
+        int index = 0;
+        do
+        {
+            String currWord = words.get(index);
+            int currType = types.get(index);
+            String currReason = reasons.get(index);
+
+            for (List<LegacyRule> ruleGroup : mRuleGroups)
+            {
+                int fromLength = ruleGroup.get(0).from.length();
+                if (fromLength > currWord.length())
+                {
+                    continue;
+                }
+
+                String wordTail = currWord.substring(currWord.length() - fromLength);
+
+                for (LegacyRule rule : ruleGroup)
+                {
+                    if ((currType & rule.type) == 0 || !wordTail.equals(rule.from))
+                    {
+                        continue;
+                    }
+
+                    String newWord = currWord.substring(0, currWord.length() - fromLength) + rule.to;
+                    if (newWord.length() <= 1)
+                    {
+                        continue;
+                    }
+
+                    Integer prevSeen = seen.get(newWord);
+                    if (prevSeen != null)
+                    {
+                        types.set(prevSeen, types.get(prevSeen) | (rule.type >> 8));
+                        continue;
+                    }
+
+                    seen.put(newWord, words.size());
+                    words.add(newWord);
+                    types.add(rule.type >> 8);
+                    reasons.add(currReason.isEmpty() ? "< " + rule.reason : "< " + rule.reason + " " + currReason);
+                }
+            }
+        } while (++index < words.size());
+
+        List<DeinflectionInfo> deinflections = new ArrayList<>(words.size());
+        for (int i = 0; i < words.size(); i++)
+        {
+            deinflections.add(new DeinflectionInfo(words.get(i), types.get(i), reasons.get(i)));
+        }
+        return deinflections;
+    }
+}
@@ -0,0 +1,152 @@
+package ca.fuwafuwa.kaku;
+
+import android.os.CancellationSignal;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import ca.fuwafuwa.kaku.Search.SearchScheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Results are delivered straight on the scheduler thread instead of the main thread. The stubbed android.jar's
+ * CancellationSignal never reports being cancelled, so a preempted task runs to the end here, it's still run again and
+ * only the second run is delivered.
+ */
+public class SearchSchedulerTest
+{
+    private final List<String> mEvents = Collections.synchronizedList(new ArrayList<String>());
+
+    private final SearchScheduler mScheduler = new SearchScheduler(new Executor() {
+        @Override
+        public void execute(Runnable command)
+        {
+            command.run();
+        }
+    });
+
+    private final Object mPrefetchChannel = new Object();
+    private final Object mTapChannel = new Object();
+
+    @Test
+    public void foregroundTaskPreemptsRunningBackgroundTask() throws Exception
+    {
+        CountDownLatch done = new CountDownLatch(2);
+        BlockingTask prefetch = new BlockingTask("prefetch", SearchScheduler.Priority.BACKGROUND, done);
+
+        mScheduler.submit(mPrefetchChannel, prefetch);
+        prefetch.awaitStarted();
+        mScheduler.submit(mTapChannel, new Task("tap", SearchScheduler.Priority.FOREGROUND, done));
+        prefetch.release();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("run prefetch", "run tap", "result tap", "run prefetch", "result prefetch"), mEvents);
+    }
+
+    @Test
+    public void preemptedTaskMadeStaleIsNotRunAgain() throws Exception
+    {
+        CountDownLatch done = new CountDownLatch(2);
+        BlockingTask prefetch = new BlockingTask("prefetch", SearchScheduler.Priority.BACKGROUND, done);
+
+        mScheduler.submit(mPrefetchChannel, prefetch);
+        prefetch.awaitStarted();
+        mScheduler.submit(mTapChannel, new Task("tap", SearchScheduler.Priority.FOREGROUND, done));
+        mScheduler.submit(mPrefetchChannel, new Task("next prefetch", SearchScheduler.Priority.BACKGROUND, done));
+        prefetch.release();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("run prefetch", "run tap", "result tap", "run next prefetch", "result next prefetch"), mEvents);
+    }
+
+    @Test
+    public void foregroundTaskWaitsForRunningForegroundTask() throws Exception
+    {
+        CountDownLatch done = new CountDownLatch(2);
+        BlockingTask tap = new BlockingTask("tap", SearchScheduler.Priority.FOREGROUND, done);
+
+        mScheduler.submit(mTapChannel, tap);
+        tap.awaitStarted();
+        mScheduler.submit(mPrefetchChannel, new Task("other tap", SearchScheduler.Priority.FOREGROUND, done));
+        tap.release();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("run tap", "result tap", "run other tap", "result other tap"), mEvents);
+    }
+
+    private class Task implements SearchScheduler.Task<String>
+    {
+        private final String mName;
+        private final SearchScheduler.Priority mPriority;
+        private final CountDownLatch mDone;
+
+        Task(String name, SearchScheduler.Priority priority, CountDownLatch done)
+        {
+            mName = name;
+            mPriority = priority;
+            mDone = done;
+        }
+
+        @Override
+        public SearchScheduler.Priority getPriority()
+        {
+            return mPriority;
+        }
+
+        @Override
+        public String run(CancellationSignal signal) throws Exception
+        {
+            mEvents.add("run " + mName);
+            return mName;
+        }
+
+        @Override
+        public void onResult(String result)
+        {
+            mEvents.add("result " + result);
+            mDone.countDown();
+        }
+    }
+
+    /**
+     * Holds the scheduler thread on its first run until released, later runs go straight through
+     */
+    private class BlockingTask extends Task
+    {
+        private final CountDownLatch mStarted = new CountDownLatch(1);
+        private final CountDownLatch mReleased = new CountDownLatch(1);
+
+        BlockingTask(String name, SearchScheduler.Priority priority, CountDownLatch done)
+        {
+            super(name, priority, done);
+        }
+
+        void awaitStarted() throws InterruptedException
+        {
+            assertTrue(mStarted.await(5, TimeUnit.SECONDS));
+        }
+
+        void release()
+        {
+            mReleased.countDown();
+        }
+
+        @Override
+        public String run(CancellationSignal signal) throws Exception
+        {
+            String result = super.run(signal);
+            mStarted.countDown();
+            mReleased.await();
+            return result;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package ca.fuwafuwa.kaku;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import com.j256.ormlite.support.ConnectionSource;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+
+import ca.fuwafuwa.kaku.Database.IDatabaseHelper;
+import ca.fuwafuwa.kaku.Database.JmDictDatabase.Models.EntryOptimized;
+
+/**
+ * Empty dictionary DB in a temp file, with the same tables the app creates, for the tests that run the production
+ * lookups and writers over a handful of entries
+ */
+class TempDictionaryDb implements Closeable
+{
+    private File mFile;
+    private ConnectionSource mConnectionSource;
+    private IDatabaseHelper mDbHelper;
+    private Dao<EntryOptimized, Integer> mEntryDao;
+
+    TempDictionaryDb() throws IOException, SQLException
+    {
+        mFile = File.createTempFile("kaku_test", ".db");
+        mFile.deleteOnExit();
+        mConnectionSource = new JdbcConnectionSource(String.format("jdbc:sqlite:%s", mFile.getAbsolutePath()));
+        DictCompiler.createTables(mConnectionSource);
+        mDbHelper = new DictCompiler.JdbcDatabaseHelper(mConnectionSource);
+        mEntryDao = mDbHelper.getDbDao(EntryOptimized.class);
+    }
+
+    File getFile()
+    {
+        return mFile;
+    }
+
+    ConnectionSource getConnectionSource()
+    {
+        return mConnectionSource;
+    }
+
+    IDatabaseHelper getDbHelper()
+    {
+        return mDbHelper;
+    }
+
+    Dao<EntryOptimized, Integer> getEntryDao()
+    {
+        return mEntryDao;
+    }
+
+    /**
+     * Creates an entry the way the parsers would, posMask and priorityRank are derived from pos and priorities
+     */
+    EntryOptimized addEntry(String kanji, String readings, String meanings, String pos, String priorities, String dictionary, boolean primaryEntry) throws SQLException
+    {
+        EntryOptimized entry = new EntryOptimized();
+        entry.setKanji(kanji);
+        entry.setReadings(readings);
+        entry.setMeanings(meanings);
+        entry.setPos(pos);
+        entry.setPosMask(EntryOptimized.getPosMask(pos));
+        entry.setPriorities(priorities);
+        entry.setPriorityRank(EntryOptimized.getPriorityRank(priorities));
+        entry.setDictionary(dictionary);
+        entry.setPrimaryEntry(primaryEntry);
+        mEntryDao.create(entry);
+        return entry;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        mConnectionSource.close();
+        mFile.delete();
+    }
+}